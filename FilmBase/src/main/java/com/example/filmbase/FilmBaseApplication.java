@@ -2,8 +2,13 @@ package com.example.filmbase;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// R2DBC подключается только в реактивном режиме и своим пулом (ReactiveCatalogService):
+// бин ConnectionFactory отключил бы DataSource, на котором работает JPA
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@EnableScheduling
 public class FilmBaseApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(FilmBaseApplication.class, args);
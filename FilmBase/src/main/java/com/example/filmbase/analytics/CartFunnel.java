@@ -0,0 +1,82 @@
+package com.example.filmbase.analytics;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Воронка корзины одного товара или категории: добавления, изменения
+ * количества и удаления во всех скользящих окнах
+ */
+public class CartFunnel {
+
+    public static final int ADDED = 0;
+    public static final int UPDATED = 1;
+    public static final int REMOVED = 2;
+    public static final int KINDS = 3;
+
+    private final Map<FunnelWindow, SlidingWindowCounter> counters = new EnumMap<>(FunnelWindow.class);
+    private volatile String name;
+
+    public CartFunnel(String name) {
+        this.name = name;
+        for (FunnelWindow window : FunnelWindow.values()) {
+            counters.put(window, window.newCounter(KINDS));
+        }
+    }
+
+    /**
+     * Вид события по типу CartEvent
+     * @return вид или -1 для неизвестного типа
+     */
+    public static int kindOf(String eventType) {
+        if ("ADDED".equals(eventType)) {
+            return ADDED;
+        }
+        if ("UPDATED".equals(eventType)) {
+            return UPDATED;
+        }
+        if ("REMOVED".equals(eventType)) {
+            return REMOVED;
+        }
+        return -1;
+    }
+
+    public void record(int kind, long timeMillis, long nowMillis) {
+        for (SlidingWindowCounter counter : counters.values()) {
+            counter.add(kind, timeMillis, nowMillis);
+        }
+    }
+
+    /**
+     * @return суммы ADDED, UPDATED, REMOVED за окно
+     */
+    public long[] totals(FunnelWindow window, long nowMillis) {
+        return counters.get(window).totals(nowMillis);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Map<String, SlidingWindowCounter.State> state() {
+        Map<String, SlidingWindowCounter.State> state = new HashMap<>();
+        for (Map.Entry<FunnelWindow, SlidingWindowCounter> entry : counters.entrySet()) {
+            state.put(entry.getKey().name(), entry.getValue().state());
+        }
+        return state;
+    }
+
+    public void restore(Map<String, SlidingWindowCounter.State> state, long nowMillis) {
+        if (state == null) {
+            return;
+        }
+        for (Map.Entry<FunnelWindow, SlidingWindowCounter> entry : counters.entrySet()) {
+            entry.getValue().restore(state.get(entry.getKey().name()), nowMillis);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.filmbase.analytics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скользящие окна аналитики: длина корзины и их количество
+ */
+public enum FunnelWindow {
+    MINUTE(TimeUnit.SECONDS.toMillis(1), 60),
+    HOUR(TimeUnit.MINUTES.toMillis(1), 60),
+    DAY(TimeUnit.HOURS.toMillis(1), 24);
+
+    private final long bucketMillis;
+    private final int bucketCount;
+
+    FunnelWindow(long bucketMillis, int bucketCount) {
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+    }
+
+    public SlidingWindowCounter newCounter(int kinds) {
+        return new SlidingWindowCounter(bucketMillis, bucketCount, kinds);
+    }
+
+    /**
+     * Разобрать окно из параметра запроса (без учета регистра)
+     * @return окно или null, если значение не распознано
+     */
+    public static FunnelWindow parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return HOUR;
+        }
+        for (FunnelWindow window : values()) {
+            if (window.name().equalsIgnoreCase(value)) {
+                return window;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.filmbase.analytics;
+
+import com.example.filmbase.dto.OrderEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ключи и элементы временного ряда событий заказов в Redis.
+ *
+ * На каждые сутки два отсортированных множества:
+ * orders:ts:{yyyyMMdd} - оценка равна времени события в мс, элемент "orderId|eventType|amount|userId";
+ * выборка за интервал - ZRANGEBYSCORE.
+ * orders:byorder:{yyyyMMdd} - оценки нулевые, элемент "orderId|время|eventType|amount|status",
+ * номер заказа и время дополнены нулями слева; история заказа - ZRANGEBYLEX по префиксу номера,
+ * элементы уже упорядочены по времени.
+ *
+ * Элемент целиком определяется событием, поэтому повторная доставка из Kafka не создает дубликатов.
+ */
+public final class OrderTimeline {
+
+    public static final String TIME_KEY_PREFIX = "orders:ts:";
+    public static final String ORDER_KEY_PREFIX = "orders:byorder:";
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final char SEPARATOR = '|';
+    // Символ сразу после '|' - верхняя граница префикса при ZRANGEBYLEX
+    private static final char AFTER_SEPARATOR = '}';
+    private static final int ORDER_ID_DIGITS = 10;
+    private static final int MILLIS_DIGITS = 13;
+
+    private OrderTimeline() {
+    }
+
+    public static String timeKey(LocalDate day) {
+        return TIME_KEY_PREFIX + DAY_FORMAT.format(day);
+    }
+
+    public static String orderKey(LocalDate day) {
+        return ORDER_KEY_PREFIX + DAY_FORMAT.format(day);
+    }
+
+    /**
+     * Сутки интервала по возрастанию, включая обе границы
+     */
+    public static List<LocalDate> days(LocalDate from, LocalDate to) {
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            days.add(day);
+        }
+        return days;
+    }
+
+    /**
+     * Элемент множества по времени; время события хранится в оценке
+     */
+    public static String timeMember(OrderEvent event) {
+        return new StringBuilder(32)
+                .append(event.getOrderId()).append(SEPARATOR)
+                .append(event.getEventType()).append(SEPARATOR)
+                .append(formatAmount(event.getTotalAmount())).append(SEPARATOR)
+                .append(event.getUserId() != null ? event.getUserId().toString() : "")
+                .toString();
+    }
+
+    /**
+     * Элемент множества по номеру заказа
+     * @param millis время события в мс
+     */
+    public static String orderMember(OrderEvent event, long millis) {
+        return new StringBuilder(64)
+                .append(pad(event.getOrderId(), ORDER_ID_DIGITS)).append(SEPARATOR)
+                .append(pad(millis, MILLIS_DIGITS)).append(SEPARATOR)
+                .append(event.getEventType()).append(SEPARATOR)
+                .append(formatAmount(event.getTotalAmount())).append(SEPARATOR)
+                .append(event.getStatus() != null ? event.getStatus() : "")
+                .toString();
+    }
+
+    /**
+     * Нижняя граница (включительно) элементов заказа для ZRANGEBYLEX
+     */
+    public static String orderRangeMin(int orderId) {
+        return pad(orderId, ORDER_ID_DIGITS) + SEPARATOR;
+    }
+
+    /**
+     * Верхняя граница (не включительно) элементов заказа для ZRANGEBYLEX
+     */
+    public static String orderRangeMax(int orderId) {
+        return pad(orderId, ORDER_ID_DIGITS) + AFTER_SEPARATOR;
+    }
+
+    /**
+     * Разобрать элемент множества по времени
+     * @param millis оценка элемента
+     * @return событие или null, если элемент не в этом формате
+     */
+    public static Entry parseTimeMember(String member, long millis) {
+        String[] parts = member.split("\\|", 4);
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            return new Entry(Integer.parseInt(parts[0]), parseInteger(parts[3]), parts[1], null,
+                    parseAmount(parts[2]), millis);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Разобрать элемент множества по номеру заказа
+     * @return событие или null, если элемент не в этом формате
+     */
+    public static Entry parseOrderMember(String member) {
+        String[] parts = member.split("\\|", 5);
+        if (parts.length != 5) {
+            return null;
+        }
+        try {
+            return new Entry(Integer.parseInt(parts[0]), null, parts[2], parts[4].isEmpty() ? null : parts[4],
+                    parseAmount(parts[3]), Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String formatAmount(Double amount) {
+        return amount == null ? "" : BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static BigDecimal parseAmount(String value) {
+        return value.isEmpty() ? null : new BigDecimal(value);
+    }
+
+    private static Integer parseInteger(String value) {
+        return value.isEmpty() ? null : Integer.valueOf(value);
+    }
+
+    private static String pad(long value, int digits) {
+        String text = Long.toString(value);
+        if (text.length() >= digits) {
+            return text;
+        }
+        StringBuilder padded = new StringBuilder(digits);
+        for (int i = text.length(); i < digits; i++) {
+            padded.append('0');
+        }
+        return padded.append(text).toString();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private Integer orderId;
+        private Integer userId;
+        private String eventType;
+        private String status;
+        private BigDecimal amount;
+        private long millis;
+    }
+}
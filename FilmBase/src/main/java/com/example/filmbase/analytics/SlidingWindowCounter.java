@@ -0,0 +1,150 @@
+package com.example.filmbase.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики событий нескольких видов в скользящем окне.
+ * Окно разбито на кольцо корзин фиксированной длины; в корзине по LongAdder
+ * на каждый вид события, поэтому запись из многих потоков идет без блокировок.
+ * Блокировка берется только при переходе корзины на новый интервал.
+ * Точность - одна корзина: событие выпадает из окна вместе со своей корзиной.
+ */
+public class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int kinds;
+    private final AtomicLongArray epochs;
+    private final LongAdder[][] counts;
+    private final Object[] rotationLocks;
+
+    /**
+     * @param bucketMillis длина корзины в миллисекундах
+     * @param bucketCount количество корзин (окно = bucketMillis * bucketCount)
+     * @param kinds количество видов событий
+     */
+    public SlidingWindowCounter(long bucketMillis, int bucketCount, int kinds) {
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.kinds = kinds;
+        this.epochs = new AtomicLongArray(bucketCount);
+        this.counts = new LongAdder[bucketCount][kinds];
+        this.rotationLocks = new Object[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            epochs.set(i, -1);
+            rotationLocks[i] = new Object();
+            for (int k = 0; k < kinds; k++) {
+                counts[i][k] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Учесть событие
+     * @param kind вид события, от 0 до kinds - 1
+     * @param timeMillis время события
+     * @param nowMillis текущее время; события старше окна отбрасываются, из будущего - считаются сейчас
+     */
+    public void add(int kind, long timeMillis, long nowMillis) {
+        long now = nowMillis / bucketMillis;
+        long epoch = Math.min(timeMillis / bucketMillis, now);
+        if (epoch <= now - bucketCount) {
+            return;
+        }
+        int index = (int) (epoch % bucketCount);
+        long seen = epochs.get(index);
+        if (seen != epoch) {
+            if (seen > epoch) {
+                return;
+            }
+            synchronized (rotationLocks[index]) {
+                seen = epochs.get(index);
+                if (seen > epoch) {
+                    return;
+                }
+                if (seen < epoch) {
+                    for (LongAdder count : counts[index]) {
+                        count.reset();
+                    }
+                    epochs.set(index, epoch);
+                }
+            }
+        }
+        counts[index][kind].increment();
+    }
+
+    /**
+     * Суммы по видам событий за окно, заканчивающееся в nowMillis
+     */
+    public long[] totals(long nowMillis) {
+        long now = nowMillis / bucketMillis;
+        long[] totals = new long[kinds];
+        for (int i = 0; i < bucketCount; i++) {
+            long epoch = epochs.get(i);
+            if (epoch > now - bucketCount && epoch <= now) {
+                for (int k = 0; k < kinds; k++) {
+                    totals[k] += counts[i][k].sum();
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Снимок корзин для сохранения
+     */
+    public State state() {
+        long[] stateEpochs = new long[bucketCount];
+        long[][] stateCounts = new long[bucketCount][kinds];
+        for (int i = 0; i < bucketCount; i++) {
+            stateEpochs[i] = epochs.get(i);
+            for (int k = 0; k < kinds; k++) {
+                stateCounts[i][k] = counts[i][k].sum();
+            }
+        }
+        return new State(stateEpochs, stateCounts);
+    }
+
+    /**
+     * Добавить сохраненные корзины; корзины, уже вышедшие из окна, пропускаются
+     */
+    public void restore(State state, long nowMillis) {
+        if (state == null || state.getEpochs() == null || state.getEpochs().length != bucketCount) {
+            return;
+        }
+        long now = nowMillis / bucketMillis;
+        for (int i = 0; i < bucketCount; i++) {
+            long epoch = state.getEpochs()[i];
+            if (epoch <= now - bucketCount || epoch > now || (int) (epoch % bucketCount) != i) {
+                continue;
+            }
+            synchronized (rotationLocks[i]) {
+                if (epochs.get(i) > epoch) {
+                    continue;
+                }
+                if (epochs.get(i) < epoch) {
+                    for (LongAdder count : counts[i]) {
+                        count.reset();
+                    }
+                    epochs.set(i, epoch);
+                }
+                for (int k = 0; k < kinds && k < state.getCounts()[i].length; k++) {
+                    counts[i][k].add(state.getCounts()[i][k]);
+                }
+            }
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class State {
+        private long[] epochs;
+        private long[][] counts;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.filmbase.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фильтр Блума над строками: "точно нет" или "возможно есть".
+ * Размер массива бит и число хеш-функций подбираются по ожидаемому количеству
+ * элементов и допустимой доле ложных срабатываний. Позиции бит - двойное
+ * хеширование (h1 + i * h2) от 64-битного FNV-1a с перемешиванием splitmix64.
+ *
+ * Добавление и проверка потокобезопасны и выполняются без блокировок.
+ * Биты можно выгрузить и слить в формате битовой строки Redis (SETBIT/GET),
+ * чтобы несколько экземпляров видели регистрации друг друга.
+ */
+public class BloomFilter {
+
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLongArray words;
+    private final LongAdder insertions = new LongAdder();
+
+    /**
+     * @param expectedInsertions ожидаемое количество элементов
+     * @param fpp допустимая доля ложных срабатываний при таком количестве, от 0 до 1
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Некорректные параметры фильтра");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, (bits + 63) / 64 * 64);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.words = new AtomicLongArray((int) (bitCount / 64));
+    }
+
+    /**
+     * Добавить строку
+     */
+    public void put(String value) {
+        for (long bit : bitsOf(value)) {
+            setBit(bit);
+        }
+        insertions.increment();
+    }
+
+    /**
+     * @return false, если строка точно не добавлялась; true - возможно добавлялась
+     */
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Позиции бит строки - для записи в Redis через SETBIT
+     */
+    public long[] bitsOf(String value) {
+        long hash = hash(value);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        long[] bits = new long[hashCount];
+        for (int i = 0; i < hashCount; i++) {
+            bits[i] = Math.floorMod(h1 + i * h2, bitCount);
+        }
+        return bits;
+    }
+
+    /**
+     * Ожидаемая доля ложных срабатываний при текущем заполнении: (доля единиц)^k
+     */
+    public double expectedFpp() {
+        return Math.pow((double) setBitCount() / bitCount, hashCount);
+    }
+
+    /**
+     * Количество единичных бит
+     */
+    public long setBitCount() {
+        long count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * Количество вызовов put в этом процессе (без слитых извне бит)
+     */
+    public long insertions() {
+        return insertions.sum();
+    }
+
+    public long bitCount() {
+        return bitCount;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Память массива бит в байтах
+     */
+    public long sizeInBytes() {
+        return bitCount / 8;
+    }
+
+    /**
+     * Биты в формате битовой строки Redis: бит n лежит в байте n/8, отсчет бит от старшего
+     */
+    public byte[] toRedisBytes() {
+        byte[] bytes = new byte[(int) (bitCount / 8)];
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            for (int b = 0; b < 8; b++) {
+                bytes[i * 8 + b] = (byte) (Integer.reverse((int) (word >>> (b * 8)) & 0xFF) >>> 24);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Слить биты из битовой строки Redis (побитовое ИЛИ). Лишние байты игнорируются,
+     * недостающие считаются нулевыми.
+     */
+    public void mergeRedisBytes(byte[] bytes) {
+        if (bytes == null) {
+            return;
+        }
+        int length = (int) Math.min(bytes.length, bitCount / 8);
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == 0) {
+                continue;
+            }
+            long bits = (long) (Integer.reverse(bytes[i] & 0xFF) >>> 24) << ((i % 8) * 8);
+            int index = i / 8;
+            long current;
+            do {
+                current = words.get(index);
+            } while ((current | bits) != current && !words.compareAndSet(index, current, current | bits));
+        }
+    }
+
+    private void setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        do {
+            current = words.get(index);
+        } while ((current & mask) == 0 && !words.compareAndSet(index, current, current | mask));
+    }
+
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
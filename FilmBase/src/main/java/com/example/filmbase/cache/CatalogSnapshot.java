@@ -0,0 +1,135 @@
+package com.example.filmbase.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Готовое к отдаче представление каталога: JSON и его gzip-версия.
+ * ETag вычисляется по содержимому, поэтому пересборка без изменений
+ * не заставляет клиентов скачивать каталог заново.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final byte[] json;
+    private final byte[] gzip;
+    private final String etag;
+    private final long builtAt;
+
+    private CatalogSnapshot(long version, byte[] json, byte[] gzip, String etag, long builtAt) {
+        this.version = version;
+        this.json = json;
+        this.gzip = gzip;
+        this.etag = etag;
+        this.builtAt = builtAt;
+    }
+
+    /**
+     * Собрать снимок из уже сериализованного JSON
+     * @param version номер версии снимка
+     * @param json каталог в JSON
+     * @return снимок с gzip-версией и ETag
+     */
+    public static CatalogSnapshot of(long version, byte[] json) {
+        return new CatalogSnapshot(version, json, gzip(json), etag(json), System.nanoTime());
+    }
+
+    /**
+     * Тот же снимок с обновленным временем сборки: содержимое не изменилось,
+     * поэтому JSON, gzip и ETag берутся готовыми, без повторного сжатия и хеширования
+     */
+    public CatalogSnapshot renewed() {
+        return new CatalogSnapshot(version, json, gzip, etag, System.nanoTime());
+    }
+
+    /**
+     * Совпадает ли снимок с одним из тегов заголовка If-None-Match.
+     * Заголовок - список тегов через запятую или *, теги сравниваются
+     * слабым сравнением (W/ не учитывается), как требует RFC 7232 для If-None-Match.
+     * @param ifNoneMatch значение заголовка или null
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        int length = ifNoneMatch.length();
+        int i = 0;
+        while (i < length) {
+            char c = ifNoneMatch.charAt(i);
+            if (c == ' ' || c == '\t' || c == ',') {
+                i++;
+                continue;
+            }
+            if (c == '*') {
+                return true;
+            }
+            if (ifNoneMatch.startsWith("W/", i)) {
+                i += 2;
+            }
+            if (i >= length || ifNoneMatch.charAt(i) != '"') {
+                // Не тег: пропускаем элемент списка целиком
+                while (i < length && ifNoneMatch.charAt(i) != ',') {
+                    i++;
+                }
+                continue;
+            }
+            int end = ifNoneMatch.indexOf('"', i + 1);
+            if (end < 0) {
+                return false;
+            }
+            if (etag.length() == end + 1 - i && etag.regionMatches(0, ifNoneMatch, i, etag.length())) {
+                return true;
+            }
+            i = end + 1;
+        }
+        return false;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    public byte[] getGzip() {
+        return gzip;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public boolean isOlderThan(long ageNanos) {
+        return System.nanoTime() - builtAt >= ageNanos;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etag(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder("\"");
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.filmbase.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Небольшой потокобезопасный кеш в памяти процесса с ограничением
+ * по количеству записей и временем жизни записи.
+ * Используется как ближний кеш перед Redis.
+ * Ведет счетчики попаданий, промахов, записей и вытеснений.
+ */
+public class LocalCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize максимальное количество записей
+     * @param ttl время жизни записи
+     * @param unit единица измерения времени жизни
+     */
+    public LocalCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize должен быть положительным");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * Получить значение из кеша
+     * @param key ключ
+     * @return значение или null, если записи нет или она устарела
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Сохранить значение в кеше
+     * @param key ключ
+     * @param value значение
+     */
+    public void put(K key, V value) {
+        if (entries.size() >= maxSize && !entries.containsKey(key)) {
+            evict();
+        }
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        puts.increment();
+    }
+
+    /**
+     * Удалить значение из кеша
+     * @param key ключ
+     */
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Очистить кеш полностью
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long putCount() {
+        return puts.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Освобождает место: сначала удаляются устаревшие записи,
+     * если их нет - запись, которая устареет раньше остальных
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        evictions.add(Math.max(0, before - entries.size()));
+        if (entries.size() < maxSize) {
+            return;
+        }
+
+        K oldestKey = null;
+        long oldestExpiry = Long.MAX_VALUE;
+        for (Map.Entry<K, Entry<V>> candidate : entries.entrySet()) {
+            if (oldestKey == null || candidate.getValue().expiresAt - oldestExpiry < 0) {
+                oldestKey = candidate.getKey();
+                oldestExpiry = candidate.getValue().expiresAt;
+            }
+        }
+        if (oldestKey != null && entries.remove(oldestKey) != null) {
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
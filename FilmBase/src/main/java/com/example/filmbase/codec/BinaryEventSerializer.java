@@ -0,0 +1,60 @@
+package com.example.filmbase.codec;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сериализатор событий: в топики из BINARY_TOPICS_CONFIG события пишутся
+ * в двоичном формате EventCodec, в остальные - JSON, как раньше.
+ * Так формат переключается по топику после того, как все потребители
+ * перешли на BinaryEventDeserializer.
+ */
+public class BinaryEventSerializer implements Serializer<Object> {
+
+    /** Топики с двоичным форматом: строка через запятую или коллекция */
+    public static final String BINARY_TOPICS_CONFIG = "filmbase.codec.binary-topics";
+
+    private final JsonSerializer<Object> json = new JsonSerializer<>();
+    private final Set<String> binaryTopics = new HashSet<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+        Object topics = configs.get(BINARY_TOPICS_CONFIG);
+        if (topics instanceof Collection) {
+            for (Object topic : (Collection<?>) topics) {
+                binaryTopics.add(String.valueOf(topic).trim());
+            }
+        } else if (topics instanceof String) {
+            for (String topic : ((String) topics).split(",")) {
+                if (!topic.trim().isEmpty()) {
+                    binaryTopics.add(topic.trim());
+                }
+            }
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (binaryTopics.contains(topic) && EventCodec.supports(data)) {
+            return EventCodec.encode(data);
+        }
+        return headers == null ? json.serialize(topic, data) : json.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.filmbase.codec;
+
+import com.example.filmbase.dto.CartEvent;
+import com.example.filmbase.dto.OrderEvent;
+import com.example.filmbase.dto.ProductEvent;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Компактный двоичный формат событий OrderEvent, CartEvent и ProductEvent.
+ *
+ * Запись: MAGIC, версия схемы, тип события, битовая маска заполненных полей
+ * и значения заполненных полей в порядке объявления. Целые - varint (zigzag),
+ * дробные - 8 байт IEEE 754, строки - длина varint и UTF-8, время - секунды
+ * и наносекунды от эпохи (LocalDateTime считается в UTC). Частые значения
+ * (тип события, статус заказа) кодируются номером в словаре, прочие - строкой.
+ *
+ * Первый байт JSON - '{' или пробел, поэтому MAGIC однозначно отличает
+ * двоичную запись от JSON и оба формата можно читать из одного топика.
+ * Новые поля добавляются в конец с повышением версии; старые версии читаются
+ * по своей схеме, записи более новой версии отклоняются.
+ */
+public final class EventCodec {
+
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final byte VERSION = 1;
+
+    private static final byte TYPE_ORDER = 1;
+    private static final byte TYPE_CART = 2;
+    private static final byte TYPE_PRODUCT = 3;
+
+    // Словари частых значений; новые значения дописываются только в конец
+    private static final String[] EVENT_TYPES = {
+            "CREATED", "UPDATED", "DELETED", "CANCELLED", "DELIVERED", "ADDED", "REMOVED"
+    };
+    private static final String[] ORDER_STATUSES = {
+            "В обработке", "Отправлен", "Доставлен", "Отменен"
+    };
+
+    private EventCodec() {
+    }
+
+    /**
+     * @return true, если событие может быть записано в двоичном формате
+     */
+    public static boolean supports(Object event) {
+        return event instanceof OrderEvent || event instanceof CartEvent || event instanceof ProductEvent;
+    }
+
+    /**
+     * @return true, если данные - двоичная запись этого формата, а не JSON
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(Object event) {
+        Writer out = new Writer();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        if (event instanceof OrderEvent) {
+            OrderEvent e = (OrderEvent) event;
+            out.writeByte(TYPE_ORDER);
+            out.writeMask(e.getEventType(), e.getOrderId(), e.getUserId(), e.getUserLogin(),
+                    e.getTotalAmount(), e.getStatus(), e.getDeliveryAddress(), e.getTimestamp());
+            out.writeToken(e.getEventType(), EVENT_TYPES);
+            out.writeInt(e.getOrderId());
+            out.writeInt(e.getUserId());
+            out.writeString(e.getUserLogin());
+            out.writeDouble(e.getTotalAmount());
+            out.writeToken(e.getStatus(), ORDER_STATUSES);
+            out.writeString(e.getDeliveryAddress());
+            out.writeTimestamp(e.getTimestamp());
+        } else if (event instanceof CartEvent) {
+            CartEvent e = (CartEvent) event;
+            out.writeByte(TYPE_CART);
+            out.writeMask(e.getEventType(), e.getUserId(), e.getUserLogin(), e.getProductId(),
+                    e.getProductName(), e.getQuantity(), e.getPrice(), e.getTimestamp());
+            out.writeToken(e.getEventType(), EVENT_TYPES);
+            out.writeInt(e.getUserId());
+            out.writeString(e.getUserLogin());
+            out.writeInt(e.getProductId());
+            out.writeString(e.getProductName());
+            out.writeInt(e.getQuantity());
+            out.writeDouble(e.getPrice());
+            out.writeTimestamp(e.getTimestamp());
+        } else if (event instanceof ProductEvent) {
+            ProductEvent e = (ProductEvent) event;
+            out.writeByte(TYPE_PRODUCT);
+            out.writeMask(e.getEventType(), e.getProductId(), e.getProductName(), e.getPrice(),
+                    e.getCategoryId(), e.getCategoryName(), e.getStockQuantity(), e.getTimestamp());
+            out.writeToken(e.getEventType(), EVENT_TYPES);
+            out.writeInt(e.getProductId());
+            out.writeString(e.getProductName());
+            out.writeDouble(e.getPrice());
+            out.writeInt(e.getCategoryId());
+            out.writeString(e.getCategoryName());
+            out.writeInt(e.getStockQuantity());
+            out.writeTimestamp(e.getTimestamp());
+        } else {
+            throw new SerializationException("Unsupported event type " +
+                    (event == null ? null : event.getClass().getName()));
+        }
+        return out.toByteArray();
+    }
+
+    public static Object decode(byte[] data) {
+        if (!isBinary(data)) {
+            throw new SerializationException("Not a binary event record");
+        }
+        Reader in = new Reader(data);
+        in.readByte();
+        byte version = in.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new SerializationException("Unsupported event schema version " + version);
+        }
+        byte type = in.readByte();
+        in.readMask();
+        switch (type) {
+            case TYPE_ORDER:
+                return new OrderEvent(in.readToken(EVENT_TYPES), in.readInt(), in.readInt(), in.readString(),
+                        in.readDouble(), in.readToken(ORDER_STATUSES), in.readString(), in.readTimestamp());
+            case TYPE_CART:
+                return new CartEvent(in.readToken(EVENT_TYPES), in.readInt(), in.readString(), in.readInt(),
+                        in.readString(), in.readInt(), in.readDouble(), in.readTimestamp());
+            case TYPE_PRODUCT:
+                return new ProductEvent(in.readToken(EVENT_TYPES), in.readInt(), in.readString(), in.readDouble(),
+                        in.readInt(), in.readString(), in.readInt(), in.readTimestamp());
+            default:
+                throw new SerializationException("Unknown event type " + type);
+        }
+    }
+
+    /**
+     * Запись в растущий массив. Каждое write* пропускает значение, если оно null:
+     * о пропуске читатель узнает из маски полей.
+     */
+    private static final class Writer {
+        private byte[] buffer = new byte[64];
+        private int size;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeMask(Object... fields) {
+            long mask = 0;
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] != null) {
+                    mask |= 1L << i;
+                }
+            }
+            writeVarLong(mask);
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeInt(Integer value) {
+            if (value != null) {
+                writeVarLong(zigZag(value));
+            }
+        }
+
+        void writeDouble(Double value) {
+            if (value != null) {
+                long bits = Double.doubleToLongBits(value);
+                ensure(8);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    buffer[size++] = (byte) (bits >>> shift);
+                }
+            }
+        }
+
+        void writeString(String value) {
+            if (value != null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(bytes.length);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buffer, size, bytes.length);
+                size += bytes.length;
+            }
+        }
+
+        void writeToken(String value, String[] dictionary) {
+            if (value == null) {
+                return;
+            }
+            for (int i = 0; i < dictionary.length; i++) {
+                if (dictionary[i].equals(value)) {
+                    writeVarLong(i + 1);
+                    return;
+                }
+            }
+            writeVarLong(0);
+            writeString(value);
+        }
+
+        void writeTimestamp(LocalDateTime value) {
+            if (value != null) {
+                writeVarLong(zigZag(value.toEpochSecond(ZoneOffset.UTC)));
+                writeVarLong(value.getNano());
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+            }
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    /**
+     * Чтение по маске полей: для отсутствующего поля read* возвращает null
+     */
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+        private long mask;
+        private int field;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        byte readByte() {
+            if (position >= data.length) {
+                throw new SerializationException("Truncated event record");
+            }
+            return data[position++];
+        }
+
+        void readMask() {
+            mask = readVarLong();
+            field = 0;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in event record");
+        }
+
+        Integer readInt() {
+            return present() ? (int) unZigZag(readVarLong()) : null;
+        }
+
+        Double readDouble() {
+            if (!present()) {
+                return null;
+            }
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (readByte() & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        String readString() {
+            return present() ? readStringValue() : null;
+        }
+
+        String readToken(String[] dictionary) {
+            if (!present()) {
+                return null;
+            }
+            int index = (int) readVarLong();
+            if (index == 0) {
+                return readStringValue();
+            }
+            if (index > dictionary.length) {
+                throw new SerializationException("Unknown dictionary value " + index);
+            }
+            return dictionary[index - 1];
+        }
+
+        LocalDateTime readTimestamp() {
+            if (!present()) {
+                return null;
+            }
+            long seconds = unZigZag(readVarLong());
+            int nanos = (int) readVarLong();
+            return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+        }
+
+        private String readStringValue() {
+            int length = (int) readVarLong();
+            if (length < 0 || position + length > data.length) {
+                throw new SerializationException("Truncated event record");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private boolean present() {
+            return (mask & (1L << field++)) != 0;
+        }
+
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package com.example.filmbase.config;
 
+import com.example.filmbase.codec.BinaryEventSerializer;
+import com.example.filmbase.services.SqlStatsService;
+import com.example.filmbase.sql.SqlStatsBatchInterceptor;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.serializer.JsonSerializer;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,10 +32,69 @@ public class KafkaConfig {
     public static final String USER_TOPIC = "users";
     public static final String CART_TOPIC = "cart";
 
+    // Число партиций задает предел параллельной обработки топика
+    public static final int ORDER_PARTITIONS = 3;
+    public static final int PRODUCT_PARTITIONS = 3;
+    public static final int USER_PARTITIONS = 2;
+    public static final int CART_PARTITIONS = 2;
+
+    // Фабрики контейнеров слушателей: по одной на топик, параллельность по числу партиций
+    public static final String ORDER_LISTENER_FACTORY = "orderListenerContainerFactory";
+    public static final String PRODUCT_LISTENER_FACTORY = "productListenerContainerFactory";
+    public static final String CART_LISTENER_FACTORY = "cartListenerContainerFactory";
+
+    // Есть только в режиме виртуальных потоков
+    @Autowired(required = false)
+    private VirtualThreadConfig virtualThreadConfig;
+
+    @Autowired
+    private SqlStatsService sqlStatsService;
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${filmbase.kafka.max-concurrency:0}")
+    private int maxConcurrency;
+
+    @Value("${filmbase.kafka.binary-topics:}")
+    private String binaryTopics;
+
+    @Value("${filmbase.kafka.instance-id:}")
+    private String instanceId;
+
+    /**
+     * Группа слушателя событий товаров: своя у каждого экземпляра, чтобы каждый сбрасывал
+     * свои локальные кеши, и постоянная между перезапусками, как и cartAnalyticsGroupId.
+     */
+    public String catalogGroupId() {
+        return "onlineshop-catalog-" + resolveInstanceId();
+    }
+
+    /**
+     * Группа слушателя аналитики корзины: своя у каждого экземпляра, но постоянная между
+     * его перезапусками, чтобы в брокере не копились брошенные группы со случайными именами.
+     * Экземпляр определяется по filmbase.kafka.instance-id, по умолчанию - по имени хоста.
+     */
+    public String cartAnalyticsGroupId() {
+        return "onlineshop-cart-analytics-" + resolveInstanceId();
+    }
+
+    private String resolveInstanceId() {
+        if (!instanceId.isEmpty()) {
+            return instanceId;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            String hostname = System.getenv("HOSTNAME");
+            return hostname != null && !hostname.isEmpty() ? hostname : "local";
+        }
+    }
+
     @Bean
     public NewTopic orderTopic() {
         return TopicBuilder.name(ORDER_TOPIC)
-                .partitions(3)
+                .partitions(ORDER_PARTITIONS)
                 .replicas(1)
                 .build();
     }
@@ -34,7 +102,7 @@ public class KafkaConfig {
     @Bean
     public NewTopic productTopic() {
         return TopicBuilder.name(PRODUCT_TOPIC)
-                .partitions(3)
+                .partitions(PRODUCT_PARTITIONS)
                 .replicas(1)
                 .build();
     }
@@ -42,7 +110,7 @@ public class KafkaConfig {
     @Bean
     public NewTopic userTopic() {
         return TopicBuilder.name(USER_TOPIC)
-                .partitions(2)
+                .partitions(USER_PARTITIONS)
                 .replicas(1)
                 .build();
     }
@@ -50,17 +118,68 @@ public class KafkaConfig {
     @Bean
     public NewTopic cartTopic() {
         return TopicBuilder.name(CART_TOPIC)
-                .partitions(2)
+                .partitions(CART_PARTITIONS)
                 .replicas(1)
                 .build();
     }
 
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> orderListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        return listenerContainerFactory(configurer, consumerFactory, ORDER_PARTITIONS);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> productListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        return listenerContainerFactory(configurer, consumerFactory, PRODUCT_PARTITIONS);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> cartListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        return listenerContainerFactory(configurer, consumerFactory, CART_PARTITIONS);
+    }
+
+    /**
+     * Фабрика с настройками из spring.kafka.* и параллельностью не больше числа партиций и ядер.
+     * Каждая партиция читается одним потоком, поэтому порядок событий одного ключа сохраняется.
+     * Во время работы параллельность меняет KafkaLagMonitor по отставанию группы.
+     * SQL каждой пачки учитывается отдельной единицей в SqlStatsService.
+     */
+    private ConcurrentKafkaListenerContainerFactory<Object, Object> listenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            int partitions) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        int cores = maxConcurrency > 0 ? maxConcurrency : Runtime.getRuntime().availableProcessors();
+        factory.setConcurrency(Math.min(partitions, cores));
+        factory.setBatchInterceptor(new SqlStatsBatchInterceptor(sqlStatsService));
+        if (virtualThreadConfig != null) {
+            factory.getContainerProperties().setConsumerTaskExecutor(virtualThreadConfig.listenerTaskExecutor());
+        }
+        return factory;
+    }
+
     @Bean
     public ProducerFactory<String, Object> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, BinaryEventSerializer.class);
+        // Топики, в которые события пишутся в двоичном формате вместо JSON
+        configProps.put(BinaryEventSerializer.BINARY_TOPICS_CONFIG, binaryTopics);
+        // Ретранслятор outbox отправляет события пачками: даем продюсеру собрать их в крупные батчи
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 10);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 64 * 1024);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        // Повторная отправка не создает дублей в топике
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
@@ -25,6 +25,19 @@ public class RedisConfig {
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
         
+        // Используем JSON сериализатор для значений с настроенным ObjectMapper
+        GenericJackson2JsonRedisSerializer jsonSerializer = valueSerializer();
+        template.setValueSerializer(jsonSerializer);
+        template.setHashValueSerializer(jsonSerializer);
+        
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * Сериализатор значений RedisTemplate; нужен и реактивному клиенту, который читает те же ключи
+     */
+    public static GenericJackson2JsonRedisSerializer valueSerializer() {
         // Настраиваем ObjectMapper для правильной сериализации LocalDateTime
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
@@ -36,14 +49,7 @@ public class RedisConfig {
             typeValidator,
             com.fasterxml.jackson.databind.ObjectMapper.DefaultTyping.NON_FINAL
         );
-        
-        // Используем JSON сериализатор для значений с настроенным ObjectMapper
-        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
-        template.setValueSerializer(jsonSerializer);
-        template.setHashValueSerializer(jsonSerializer);
-        
-        template.afterPropertiesSet();
-        return template;
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
     }
 }
 
@@ -0,0 +1,42 @@
+package com.example.filmbase.config;
+
+import com.example.filmbase.services.SqlStatsService;
+import com.example.filmbase.sql.SqlStatsDataSource;
+import com.example.filmbase.sql.SqlStatsFilter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Учет SQL по запросам (filmbase.sql.stats.*): DataSource оборачивается в SqlStatsDataSource,
+ * HTTP запросы размечает SqlStatsFilter. Пачки Kafka размечает перехватчик в KafkaConfig.
+ */
+@Configuration
+public class SqlStatsConfig {
+
+    // Статический: постпроцессор создается раньше обычных бинов, сервис берется при первом DataSource
+    @Bean
+    public static BeanPostProcessor sqlStatsDataSourcePostProcessor(ObjectProvider<SqlStatsService> statsProvider) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource) || bean instanceof SqlStatsDataSource) {
+                    return bean;
+                }
+                SqlStatsService stats = statsProvider.getObject();
+                return stats.isEnabled() ? new SqlStatsDataSource((DataSource) bean, stats) : bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlStatsFilter> sqlStatsFilter(SqlStatsService stats) {
+        FilterRegistrationBean<SqlStatsFilter> registration = new FilterRegistrationBean<>(new SqlStatsFilter(stats));
+        registration.setEnabled(stats.isEnabled());
+        return registration;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.filmbase.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncListenableTaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Режим виртуальных потоков (filmbase.threads.virtual=true, профиль virtual, JDK 21+).
+ * Запросы Tomcat и потоки слушателей Kafka выполняются в виртуальных потоках,
+ * поэтому число одновременных запросов не ограничено пулом из server.tomcat.threads.max.
+ * Ограничение задают пулы ресурсов: Hikari (maximum-pool-size, connection-timeout)
+ * и пул соединений Lettuce (max-active, max-wait) - лишние запросы ждут соединения в них.
+ *
+ * Исполнители не регистрируются как бины Executor, чтобы не заменять applicationTaskExecutor.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmbase.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    private final ExecutorService requestExecutor;
+    private final ExecutorService listenerExecutor;
+
+    public VirtualThreadConfig() {
+        if (!VirtualThreads.isSupported()) {
+            throw new IllegalStateException("filmbase.threads.virtual=true requires JDK 21 or newer, running on "
+                    + System.getProperty("java.version"));
+        }
+        this.requestExecutor = VirtualThreads.executor("http-vt-");
+        this.listenerExecutor = VirtualThreads.executor("kafka-vt-");
+        logger.info("Virtual threads enabled for HTTP requests and Kafka listeners");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+
+    /**
+     * Исполнитель потоков потребителей Kafka: обработчики @KafkaListener идут в этих же потоках
+     */
+    public AsyncListenableTaskExecutor listenerTaskExecutor() {
+        return new ConcurrentTaskExecutor(listenerExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        requestExecutor.shutdown();
+        listenerExecutor.shutdown();
+    }
+}
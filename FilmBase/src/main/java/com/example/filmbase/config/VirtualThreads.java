@@ -0,0 +1,56 @@
+package com.example.filmbase.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Доступ к виртуальным потокам (JDK 21+) из кода, собранного под Java 11.
+ * API вызывается через отражение, поэтому сборка не зависит от версии JDK,
+ * а на старой JVM методы просто сообщают, что виртуальных потоков нет.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true, если JVM умеет запускать виртуальные потоки без флагов preview
+     */
+    public static boolean isSupported() {
+        return factory("probe-") != null;
+    }
+
+    /**
+     * Фабрика виртуальных потоков с именами prefix0, prefix1, ...
+     * @return фабрика или null, если JVM не поддерживает виртуальные потоки
+     */
+    public static ThreadFactory factory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Нет API (JDK < 19) или оно в режиме preview (JDK 19-20 без --enable-preview)
+            return null;
+        }
+    }
+
+    /**
+     * Исполнитель, запускающий каждую задачу в новом виртуальном потоке
+     * @return исполнитель или null, если JVM не поддерживает виртуальные потоки
+     */
+    public static ExecutorService executor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        if (factory == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
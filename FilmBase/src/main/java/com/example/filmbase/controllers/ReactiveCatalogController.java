@@ -0,0 +1,42 @@
+package com.example.filmbase.controllers;
+
+import com.example.filmbase.entities.Category;
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.services.ReactiveCatalogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Неблокирующие варианты чтения каталога и категорий. Ответы те же, что у
+ * /api/products, /api/products/category/{id} и /api/categories; запрос освобождает
+ * поток Tomcat, пока ждет Redis или базу, и завершается асинхронно.
+ */
+@RestController
+@RequestMapping("/api/reactive")
+@CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
+@ConditionalOnProperty(name = "filmbase.reactive.enabled", havingValue = "true")
+public class ReactiveCatalogController {
+
+    @Autowired
+    private ReactiveCatalogService reactiveCatalogService;
+
+    @GetMapping("/categories")
+    public Flux<Category> getAllCategories() {
+        return reactiveCatalogService.getAllCategories();
+    }
+
+    @GetMapping("/products")
+    public Mono<List<Product>> getAllProducts() {
+        return reactiveCatalogService.getAllProducts();
+    }
+
+    @GetMapping("/products/category/{categoryId}")
+    public Flux<Product> getProductsByCategory(@PathVariable int categoryId) {
+        return reactiveCatalogService.getProductsByCategory(categoryId);
+    }
+}
@@ -1,23 +1,61 @@
 package com.example.filmbase.controllers;
 
+import com.example.filmbase.analytics.FunnelWindow;
+import com.example.filmbase.cache.CatalogSnapshot;
 import com.example.filmbase.dto.CartEvent;
-import com.example.filmbase.dto.OrderEvent;
+import com.example.filmbase.dto.CartFunnelStats;
+import com.example.filmbase.dto.KeysetPage;
+import com.example.filmbase.dto.ProductSuggestion;
+import com.example.filmbase.dto.SalesRow;
+import com.example.filmbase.dto.SessionUser;
+import com.example.filmbase.dto.SqlShapeStats;
+import com.example.filmbase.dto.UserFilterStats;
+import com.example.filmbase.dto.OrderDetails;
+import com.example.filmbase.dto.OrderHistoryEntry;
+import com.example.filmbase.dto.OrderSeriesFootprint;
+import com.example.filmbase.dto.OrderSeriesStats;
 import com.example.filmbase.dto.ProductEvent;
 import com.example.filmbase.entities.*;
 import com.example.filmbase.repositories.*;
+import com.example.filmbase.services.CartAnalyticsService;
+import com.example.filmbase.services.CartService;
+import com.example.filmbase.services.CatalogCache;
+import com.example.filmbase.services.CheckoutException;
+import com.example.filmbase.services.CheckoutService;
+import com.example.filmbase.services.FlashSaleService;
 import com.example.filmbase.services.KafkaProducerService;
+import com.example.filmbase.services.OrderTimeSeriesService;
+import com.example.filmbase.services.ProductSearchService;
+import com.example.filmbase.services.ProductSuggestService;
 import com.example.filmbase.services.RedisService;
+import com.example.filmbase.services.SalesRollupService;
+import com.example.filmbase.services.SessionService;
+import com.example.filmbase.services.SqlStatsService;
+import com.example.filmbase.services.UserAvailabilityService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 @RestController
 @RequestMapping("/api")
-@CrossOrigin(origins = "http://localhost:3000")
+@CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
 public class ShopController {
 
     @Autowired
@@ -30,7 +68,7 @@ public class ShopController {
     private CategoryRepository categoryRepository;
 
     @Autowired
-    private CartItemRepository cartItemRepository;
+    private CartService cartService;
 
     @Autowired
     private OrderRepository orderRepository;
@@ -44,30 +82,72 @@ public class ShopController {
     @Autowired
     private KafkaProducerService kafkaProducerService;
 
-    private User currentUser;
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private OrderTimeSeriesService orderTimeSeriesService;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private UserAvailabilityService userAvailabilityService;
+
+    @Autowired
+    private SqlStatsService sqlStatsService;
+
+    @Autowired
+    private ProductSearchService productSearchService;
+
+    @Autowired
+    private ProductSuggestService productSuggestService;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Autowired
+    private CartAnalyticsService cartAnalyticsService;
+
+    @Autowired
+    private HttpServletRequest httpRequest;
 
     // ============ АВТОРИЗАЦИЯ И РЕГИСТРАЦИЯ ============
 
     @PostMapping("/register")
     public String register(@RequestBody User user) {
-        if (userRepository.findByLogin(user.getLogin()) != null) {
-            return "ERRORLOGIN";
+        // Свободные логин и email отсекает фильтр в памяти, окончательно уникальность проверяет база
+        String availability = userAvailabilityService.check(user.getLogin(), user.getEmail());
+        if (!UserAvailabilityService.GOOD.equals(availability)) {
+            return availability;
         }
-        if (userRepository.findByEmail(user.getEmail()) != null) {
-            return "ERROREMAIL";
+        try {
+            userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            return userAvailabilityService.conflictOf(user);
         }
-        userRepository.save(user);
+        userAvailabilityService.registered(user);
         return "GOOD";
     }
 
+    @GetMapping("/register/check")
+    public String checkRegistration(@RequestParam(required = false) String login,
+                                    @RequestParam(required = false) String email) {
+        return userAvailabilityService.check(login, email);
+    }
+
     @PostMapping("/login")
-    public String login(@RequestBody User user) {
+    public String login(@RequestBody User user, HttpServletResponse response) {
         User dbUser = userRepository.findByLogin(user.getLogin());
         if (dbUser != null && dbUser.getPassword().equals(user.getPassword())) {
-            currentUser = dbUser;
-            // Сохраняем сессию пользователя в Redis на 30 минут
-            String sessionKey = "session:" + dbUser.getId();
-            redisService.set(sessionKey, dbUser.getId(), 1800);
+            // Токен сессии уходит клиенту в cookie, сама сессия живет в Redis
+            sessionService.startSession(dbUser, response);
             return "AUTH";
         }
         return "NOAUTH";
@@ -75,19 +155,15 @@ public class ShopController {
 
     @GetMapping("/current-user")
     public String getCurrentUser() {
+        SessionUser currentUser = sessionUser();
         if (currentUser == null) return "NULL";
-        if (currentUser.getLogin().equals("admin")) return "ADMIN";
+        if (SessionService.isAdmin(currentUser)) return "ADMIN";
         return "USER";
     }
 
     @GetMapping("/logout")
-    public String logout() {
-        if (currentUser != null) {
-            // Удаляем сессию из Redis
-            String sessionKey = "session:" + currentUser.getId();
-            redisService.delete(sessionKey);
-        }
-        currentUser = null;
+    public String logout(HttpServletResponse response) {
+        sessionService.endSession(httpRequest, response);
         return "DEAUTH";
     }
 
@@ -110,19 +186,26 @@ public class ShopController {
     // ============ ТОВАРЫ ============
 
     @GetMapping("/products")
-    public List<Product> getAllProducts() {
-        // Проверяем кеш в Redis
-        String cacheKey = "products:all";
-        @SuppressWarnings("unchecked")
-        List<Product> cachedProducts = (List<Product>) redisService.get(cacheKey);
-        if (cachedProducts != null) {
-            return cachedProducts;
+    public ResponseEntity<byte[]> getAllProducts(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // Каталог отдается готовым снимком, без повторной сериализации
+        CatalogSnapshot snapshot = catalogCache.getSnapshot();
+        if (snapshot.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getEtag())
+                    .build();
         }
-        
-        List<Product> products = productRepository.findAll();
-        // Сохраняем в кеш на 5 минут
-        redisService.set(cacheKey, products, 300);
-        return products;
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .header("X-Catalog-Version", String.valueOf(snapshot.getVersion()))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzip());
+        }
+        return response.body(snapshot.getJson());
     }
 
     @GetMapping("/products/category/{categoryId}")
@@ -130,24 +213,73 @@ public class ShopController {
         return productRepository.findByCategory_Id(categoryId);
     }
 
+    @GetMapping("/products/page")
+    public KeysetPage<Product> getProductsPage(@RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit) {
+        int pageSize = KeysetPage.normalizeLimit(limit);
+        List<Product> rows = productRepository.findByIdGreaterThanOrderByIdAsc(
+                decodeProductCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return KeysetPage.of(rows, pageSize, product -> KeysetPage.encodeCursor(product.getId()));
+    }
+
+    @GetMapping("/products/category/{categoryId}/page")
+    public KeysetPage<Product> getProductsByCategoryPage(@PathVariable int categoryId,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer limit) {
+        int pageSize = KeysetPage.normalizeLimit(limit);
+        List<Product> rows = productRepository.findByCategory_IdAndIdGreaterThanOrderByIdAsc(
+                categoryId, decodeProductCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return KeysetPage.of(rows, pageSize, product -> KeysetPage.encodeCursor(product.getId()));
+    }
+
     @PostMapping("/products/search")
-    public List<Product> searchProducts(@RequestBody Product search) {
-        return productRepository.findByNameContainingOrDescriptionContaining(
-                search.getName() != null ? search.getName() : "",
-                search.getName() != null ? search.getName() : "");
+    public List<Product> searchProducts(@RequestBody Product search,
+                                        @RequestParam(required = false) String mode,
+                                        @RequestParam(required = false) Integer limit) {
+        String query = search.getName() != null ? search.getName() : "";
+        if (query.trim().isEmpty()) {
+            return catalogCache.getAllProducts();
+        }
+        // Пока индекс не построен, ищем по базе
+        if (!productSearchService.isReady()) {
+            return productRepository.findByNameContainingOrDescriptionContaining(query, query);
+        }
+        return productSearchService.search(query, mode, limit);
+    }
+
+    @GetMapping("/products/suggest")
+    public List<ProductSuggestion> suggestProducts(@RequestParam("q") String query,
+                                                   @RequestParam(required = false) Integer limit) {
+        return productSuggestService.suggest(query, limit);
     }
 
     @PostMapping("/products/add")
     @CacheEvict(value = "products", allEntries = true)
+    @Transactional
     public String addProduct(@RequestBody Product product) {
         productRepository.save(product);
         // Очищаем кеш товаров
-        redisService.delete("products:all");
+        catalogCache.invalidate();
+
+        // Событие в outbox (в той же транзакции), чтобы кеш сбросили все экземпляры
+        ProductEvent event = new ProductEvent();
+        event.setEventType("CREATED");
+        event.setProductId(product.getId());
+        event.setProductName(product.getName());
+        event.setPrice(product.getPrice());
+        event.setStockQuantity(product.getStockQuantity());
+        if (product.getCategory() != null) {
+            event.setCategoryId(product.getCategory().getId());
+            event.setCategoryName(product.getCategory().getName());
+        }
+        kafkaProducerService.sendProductEvent(event);
+
         return "1. Товар успешно добавлен";
     }
 
     @PostMapping("/products/edit")
     @CacheEvict(value = "products", allEntries = true)
+    @Transactional
     public String editProduct(@RequestBody Product product) {
         Product existing = productRepository.findById(product.getId());
         if (existing == null) return "Товар не найден";
@@ -161,9 +293,9 @@ public class ShopController {
 
         productRepository.save(existing);
         // Очищаем кеш товаров
-        redisService.delete("products:all");
+        catalogCache.invalidate();
         
-        // Отправляем событие в Kafka
+        // Событие в outbox, уйдет в Kafka после фиксации транзакции
         ProductEvent event = new ProductEvent();
         event.setEventType("UPDATED");
         event.setProductId(existing.getId());
@@ -181,11 +313,12 @@ public class ShopController {
 
     @PostMapping("/products/delete")
     @CacheEvict(value = "products", allEntries = true)
+    @Transactional
     public String deleteProduct(@RequestBody Product product) {
         Product existing = productRepository.findById(product.getId());
         if (existing == null) return "Товар не найден";
         
-        // Отправляем событие в Kafka перед удалением
+        // Событие в outbox, уйдет в Kafka после фиксации транзакции
         ProductEvent event = new ProductEvent();
         event.setEventType("DELETED");
         event.setProductId(existing.getId());
@@ -199,7 +332,7 @@ public class ShopController {
         
         productRepository.delete(existing);
         // Очищаем кеш товаров
-        redisService.delete("products:all");
+        catalogCache.invalidate();
         return "1. Товар успешно удален";
     }
 
@@ -207,29 +340,28 @@ public class ShopController {
 
     @GetMapping("/cart")
     public List<CartItem> getCart() {
-        return cartItemRepository.findAllByUser(currentUser);
+        User currentUser = currentUser();
+        if (currentUser == null) return new ArrayList<>();
+        return cartService.getItems(currentUser);
     }
 
     @PostMapping("/cart/add")
     public String addToCart(@RequestBody CartItemRequest request) {
+        SessionUser currentUser = sessionUser();
         if (currentUser == null) return "ERRORAUTH";
         
         Product product = productRepository.findById(request.getProductId());
         if (product == null) return "ERRORPRODUCT";
         
-        if (product.getStockQuantity() < request.getQuantity()) {
+        // Сначала атомарно прибавляем, затем проверяем остаток и при нехватке откатываем прибавку
+        int newQuantity = cartService.addQuantity(currentUser.getId(), product.getId(), request.getQuantity());
+        if (!hasStock(product, currentUser.getId(), newQuantity)) {
+            cartService.addQuantity(currentUser.getId(), product.getId(), -request.getQuantity());
             return "ERRORSTOCK";
         }
 
-        CartItem existing = cartItemRepository.findByProductAndUser(product, currentUser);
-        if (existing != null) {
-            int newQuantity = existing.getQuantity() + request.getQuantity();
-            if (product.getStockQuantity() < newQuantity) {
-                return "ERRORSTOCK";
-            }
-            existing.setQuantity(newQuantity);
-            cartItemRepository.save(existing);
-            
+        int existingQuantity = newQuantity - request.getQuantity();
+        if (existingQuantity > 0) {
             // Отправляем событие обновления корзины в Kafka
             CartEvent event = new CartEvent();
             event.setEventType("UPDATED");
@@ -237,16 +369,10 @@ public class ShopController {
             event.setUserLogin(currentUser.getLogin());
             event.setProductId(product.getId());
             event.setProductName(product.getName());
-            event.setQuantity(existing.getQuantity());
+            event.setQuantity(newQuantity);
             event.setPrice(product.getPrice());
             kafkaProducerService.sendCartEvent(event);
         } else {
-            CartItem cartItem = new CartItem();
-            cartItem.setUser(currentUser);
-            cartItem.setProduct(product);
-            cartItem.setQuantity(request.getQuantity());
-            cartItemRepository.save(cartItem);
-            
             // Отправляем событие добавления в корзину в Kafka
             CartEvent event = new CartEvent();
             event.setEventType("ADDED");
@@ -263,24 +389,29 @@ public class ShopController {
 
     @PostMapping("/cart/update")
     public String updateCartItem(@RequestBody CartItem cartItem) {
-        CartItem existing = cartItemRepository.findById(cartItem.getId());
-        if (existing == null || existing.getUser().getId() != currentUser.getId()) {
+        SessionUser currentUser = sessionUser();
+        if (currentUser == null) return "ERRORAUTH";
+        // id позиции корзины - это id товара
+        Product product = productRepository.findById(cartItem.getId());
+        if (product == null || cartService.getQuantity(currentUser.getId(), product.getId()) == 0) {
             return "ERROR";
         }
 
-        if (existing.getProduct().getStockQuantity() < cartItem.getQuantity()) {
+        if (!hasStock(product, currentUser.getId(), cartItem.getQuantity())) {
             return "ERRORSTOCK";
         }
 
-        existing.setQuantity(cartItem.getQuantity());
-        cartItemRepository.save(existing);
+        cartService.setQuantity(currentUser.getId(), product.getId(), cartItem.getQuantity());
         return "GOOD";
     }
 
     @PostMapping("/cart/delete")
     public String deleteFromCart(@RequestBody CartItem cartItem) {
-        CartItem existing = cartItemRepository.findById(cartItem.getId());
-        if (existing == null || existing.getUser().getId() != currentUser.getId()) {
+        SessionUser currentUser = sessionUser();
+        if (currentUser == null) return "ERRORAUTH";
+        Product product = productRepository.findById(cartItem.getId());
+        int quantity = product != null ? cartService.getQuantity(currentUser.getId(), product.getId()) : 0;
+        if (quantity == 0) {
             return "ERROR";
         }
         
@@ -289,86 +420,87 @@ public class ShopController {
         event.setEventType("REMOVED");
         event.setUserId(currentUser.getId());
         event.setUserLogin(currentUser.getLogin());
-        event.setProductId(existing.getProduct().getId());
-        event.setProductName(existing.getProduct().getName());
-        event.setQuantity(existing.getQuantity());
-        event.setPrice(existing.getProduct().getPrice());
+        event.setProductId(product.getId());
+        event.setProductName(product.getName());
+        event.setQuantity(quantity);
+        event.setPrice(product.getPrice());
         kafkaProducerService.sendCartEvent(event);
         
-        cartItemRepository.delete(existing);
+        flashSaleService.reserve(product.getId(), currentUser.getId(), 0);
+        cartService.setQuantity(currentUser.getId(), product.getId(), 0);
         return "GOOD";
     }
 
+    /**
+     * Проверить остаток под нужное количество в корзине.
+     * Товар на распродаже резервируется в Redis, остальные сверяются с остатком в базе.
+     */
+    private boolean hasStock(Product product, int userId, int quantity) {
+        long reserved = flashSaleService.reserve(product.getId(), userId, quantity);
+        if (reserved == FlashSaleService.NOT_ACTIVE) {
+            return product.getStockQuantity() >= quantity;
+        }
+        return reserved != FlashSaleService.INSUFFICIENT;
+    }
+
     // ============ ЗАКАЗЫ ============
 
     @PostMapping("/orders/create")
     public String createOrder(@RequestBody OrderRequest request) {
+        User currentUser = currentUser();
         if (currentUser == null) return "ERRORAUTH";
 
-        List<CartItem> cartItems = cartItemRepository.findAllByUser(currentUser);
-        if (cartItems.isEmpty()) return "ERROREMPTY";
-
-        // Проверка наличия товаров
-        for (CartItem item : cartItems) {
-            if (item.getProduct().getStockQuantity() < item.getQuantity()) {
-                return "ERRORSTOCK_" + item.getProduct().getName();
-            }
+        // Заказ оформляется в одной транзакции с пакетной записью,
+        // событие создания заказа пишется в outbox в той же транзакции
+        try {
+            checkoutService.placeOrder(currentUser, request.getDeliveryAddress());
+        } catch (CheckoutException e) {
+            return e.getCode();
         }
-
-        // Создание заказа
-        Order order = new Order();
-        order.setUser(currentUser);
-        order.setDeliveryAddress(request.getDeliveryAddress());
-        order.setStatus("В обработке");
-        order.setOrderDate(LocalDateTime.now());
-
-        double totalAmount = 0;
-        for (CartItem item : cartItems) {
-            totalAmount += item.getProduct().getPrice() * item.getQuantity();
-        }
-        order.setTotalAmount(totalAmount);
-
-        order = orderRepository.save(order);
-
-        // Создание позиций заказа и обновление количества товаров
-        for (CartItem item : cartItems) {
-            OrderItem orderItem = new OrderItem();
-            orderItem.setOrder(order);
-            orderItem.setProduct(item.getProduct());
-            orderItem.setQuantity(item.getQuantity());
-            orderItem.setPrice(item.getProduct().getPrice());
-            orderItemRepository.save(orderItem);
-
-            // Уменьшаем количество товара на складе
-            Product product = item.getProduct();
-            product.setStockQuantity(product.getStockQuantity() - item.getQuantity());
-            productRepository.save(product);
-
-            // Удаляем из корзины
-            cartItemRepository.delete(item);
-        }
-
-        // Отправляем событие создания заказа в Kafka
-        OrderEvent orderEvent = new OrderEvent();
-        orderEvent.setEventType("CREATED");
-        orderEvent.setOrderId(order.getId());
-        orderEvent.setUserId(currentUser.getId());
-        orderEvent.setUserLogin(currentUser.getLogin());
-        orderEvent.setTotalAmount(order.getTotalAmount());
-        orderEvent.setStatus(order.getStatus());
-        orderEvent.setDeliveryAddress(order.getDeliveryAddress());
-        kafkaProducerService.sendOrderEvent(orderEvent);
-
         return "GOOD";
     }
 
     @GetMapping("/orders")
     public List<Order> getMyOrders() {
+        User currentUser = currentUser();
+        if (currentUser == null) return new ArrayList<>();
         return orderRepository.findAllByUserOrderByOrderDateDesc(currentUser);
     }
 
+    @GetMapping("/orders/page")
+    public KeysetPage<Order> getMyOrdersPage(@RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit) {
+        User currentUser = currentUser();
+        int pageSize = KeysetPage.normalizeLimit(limit);
+        if (currentUser == null) {
+            return KeysetPage.of(new ArrayList<>(), pageSize,
+                    order -> KeysetPage.encodeCursor(order.getOrderDate(), order.getId()));
+        }
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+
+        List<Order> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = orderRepository.findAllByUserOrderByOrderDateDescIdDesc(currentUser, pageRequest);
+        } else {
+            String[] key = KeysetPage.decodeCursor(cursor, 2);
+            if (key == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный курсор");
+            }
+            try {
+                rows = orderRepository.findPageByUserBefore(currentUser,
+                        LocalDateTime.parse(key[0]), Integer.parseInt(key[1]), pageRequest);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный курсор");
+            }
+        }
+        return KeysetPage.of(rows, pageSize,
+                order -> KeysetPage.encodeCursor(order.getOrderDate(), order.getId()));
+    }
+
     @GetMapping("/orders/{orderId}")
     public Order getOrder(@PathVariable int orderId) {
+        SessionUser currentUser = sessionUser();
+        if (currentUser == null) return null;
         Order order = orderRepository.findById(orderId);
         if (order == null || order.getUser().getId() != currentUser.getId()) {
             return null;
@@ -378,45 +510,43 @@ public class ShopController {
 
     @GetMapping("/orders/{orderId}/items")
     public List<OrderItem> getOrderItems(@PathVariable int orderId) {
+        SessionUser currentUser = sessionUser();
+        if (currentUser == null) return null;
         Order order = orderRepository.findById(orderId);
         if (order == null || order.getUser().getId() != currentUser.getId()) {
             return null;
         }
-        return orderItemRepository.findAllByOrder(order);
+        return orderItemRepository.findAllByOrderWithProduct(order);
+    }
+
+    @GetMapping("/orders/{orderId}/full")
+    public OrderDetails getOrderFull(@PathVariable int orderId) {
+        SessionUser currentUser = sessionUser();
+        if (currentUser == null) return null;
+        // Заказ, позиции и товары одним запросом
+        Order order = orderRepository.findFullById(orderId);
+        if (order == null || order.getUser().getId() != currentUser.getId()) {
+            return null;
+        }
+        return OrderDetails.of(order);
     }
 
     @PostMapping("/orders/{orderId}/cancel")
     public String cancelOrder(@PathVariable int orderId) {
+        SessionUser currentUser = sessionUser();
+        if (currentUser == null) return "ERRORAUTH";
         Order order = orderRepository.findById(orderId);
         if (order == null || order.getUser().getId() != currentUser.getId()) {
             return "ERROR";
         }
-        if (!order.getStatus().equals("В обработке")) {
-            return "ERRORSTATUS";
-        }
 
-        // Возвращаем товары на склад
-        List<OrderItem> items = orderItemRepository.findAllByOrder(order);
-        for (OrderItem item : items) {
-            Product product = item.getProduct();
-            product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-            productRepository.save(product);
+        // Статус меняется условно, а товары возвращаются на склад одним запросом;
+        // событие отмены пишется в outbox в той же транзакции
+        try {
+            checkoutService.cancelOrder(order);
+        } catch (CheckoutException e) {
+            return e.getCode();
         }
-
-        order.setStatus("Отменен");
-        orderRepository.save(order);
-        
-        // Отправляем событие отмены заказа в Kafka
-        OrderEvent orderEvent = new OrderEvent();
-        orderEvent.setEventType("CANCELLED");
-        orderEvent.setOrderId(order.getId());
-        orderEvent.setUserId(order.getUser().getId());
-        orderEvent.setUserLogin(order.getUser().getLogin());
-        orderEvent.setTotalAmount(order.getTotalAmount());
-        orderEvent.setStatus(order.getStatus());
-        orderEvent.setDeliveryAddress(order.getDeliveryAddress());
-        kafkaProducerService.sendOrderEvent(orderEvent);
-        
         return "GOOD";
     }
 
@@ -424,6 +554,8 @@ public class ShopController {
 
     @GetMapping("/account")
     public User getAccount() {
+        User currentUser = currentUser();
+        if (currentUser == null) return null;
         User user = userRepository.findById(currentUser.getId());
         user.setPassword(""); // Не возвращаем пароль
         return user;
@@ -431,6 +563,8 @@ public class ShopController {
 
     @PostMapping("/account/update")
     public String updateAccount(@RequestBody User settings) {
+        User currentUser = currentUser();
+        if (currentUser == null) return "ERRORAUTH";
         currentUser.setFullName(settings.getFullName());
         currentUser.setPhone(settings.getPhone());
         currentUser.setAddress(settings.getAddress());
@@ -440,6 +574,8 @@ public class ShopController {
 
     @PostMapping("/account/password")
     public String changePassword(@RequestBody PasswordChangeRequest request) {
+        User currentUser = currentUser();
+        if (currentUser == null) return "ERRORAUTH";
         if (!currentUser.getPassword().equals(request.getOldPassword())) {
             return "2. Старый пароль введен неверно";
         }
@@ -453,6 +589,210 @@ public class ShopController {
         return "1. Пароль успешно изменен";
     }
 
+    // ============ РАСПРОДАЖА ============
+
+    @PostMapping("/admin/flash-sale/{productId}/start")
+    public String startFlashSale(@PathVariable int productId,
+                                 @RequestParam(required = false) Integer quantity) {
+        SessionUser currentUser = sessionUser();
+        if (!SessionService.isAdmin(currentUser)) return "ERRORAUTH";
+        if (!flashSaleService.isEnabled()) return "ERRORDISABLED";
+        if (productRepository.findById(productId) == null) return "ERRORPRODUCT";
+
+        long started = flashSaleService.start(productId, quantity);
+        if (started == FlashSaleService.ALREADY_ACTIVE) return "ERRORACTIVE";
+        if (started == FlashSaleService.INSUFFICIENT) return "ERRORSTOCK";
+        return "GOOD";
+    }
+
+    @PostMapping("/admin/flash-sale/{productId}/stop")
+    public String stopFlashSale(@PathVariable int productId) {
+        SessionUser currentUser = sessionUser();
+        if (!SessionService.isAdmin(currentUser)) return "ERRORAUTH";
+        if (!flashSaleService.isEnabled()) return "ERRORDISABLED";
+
+        flashSaleService.stop(productId);
+        return "GOOD";
+    }
+
+    // ============ ВИТРИНЫ ПРОДАЖ ============
+
+    @PostMapping("/admin/sales/rebuild")
+    public String rebuildSales(@RequestParam(required = false) String from,
+                               @RequestParam(required = false) String to) {
+        SessionUser currentUser = sessionUser();
+        if (!SessionService.isAdmin(currentUser)) return "ERRORAUTH";
+
+        LocalDate fromDay;
+        LocalDate toDay;
+        try {
+            fromDay = from == null || from.isEmpty() ? salesRollupService.firstOrderDay() : LocalDate.parse(from);
+            toDay = to == null || to.isEmpty() ? LocalDate.now() : LocalDate.parse(to);
+        } catch (DateTimeParseException e) {
+            return "ERRORDATE";
+        }
+        if (fromDay == null) return "GOOD";
+        if (fromDay.isAfter(toDay)) return "ERRORDATE";
+
+        salesRollupService.rebuild(fromDay, toDay);
+        return "GOOD";
+    }
+
+    @PostMapping("/admin/sql/reset")
+    public String resetSqlStats() {
+        SessionUser currentUser = sessionUser();
+        if (!SessionService.isAdmin(currentUser)) return "ERRORAUTH";
+
+        sqlStatsService.reset();
+        return "GOOD";
+    }
+
+    // ============ АНАЛИТИКА ============
+
+    @GetMapping("/analytics/cart")
+    public List<CartFunnelStats> getCartFunnel(@RequestParam(required = false) String window,
+                                               @RequestParam(required = false) String by,
+                                               @RequestParam(required = false) Integer limit) {
+        if (!SessionService.isAdmin(sessionUser())) return new ArrayList<>();
+        FunnelWindow funnelWindow = FunnelWindow.parse(window);
+        String dimension = by == null || by.isEmpty() ? CartAnalyticsService.DIMENSION_PRODUCT : by;
+        if (funnelWindow == null || !(CartAnalyticsService.DIMENSION_PRODUCT.equals(dimension)
+                || CartAnalyticsService.DIMENSION_CATEGORY.equals(dimension))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректное окно или разрез");
+        }
+        return cartAnalyticsService.report(funnelWindow, dimension, limit);
+    }
+
+    /**
+     * Заказы и выручка за интервал [from, to); по умолчанию - с начала текущих суток
+     */
+    @GetMapping("/analytics/orders")
+    public OrderSeriesStats getOrderStats(@RequestParam(required = false) String from,
+                                          @RequestParam(required = false) String to) {
+        if (!SessionService.isAdmin(sessionUser())) return null;
+        LocalDateTime toTime;
+        LocalDateTime fromTime;
+        try {
+            toTime = to == null || to.isEmpty() ? LocalDateTime.now() : LocalDateTime.parse(to);
+            fromTime = from == null || from.isEmpty() ? toTime.toLocalDate().atStartOfDay() : LocalDateTime.parse(from);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный интервал");
+        }
+        if (fromTime.isAfter(toTime)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный интервал");
+        }
+        return orderTimeSeriesService.stats(fromTime, toTime);
+    }
+
+    @GetMapping("/analytics/orders/{orderId}/events")
+    public List<OrderHistoryEntry> getOrderHistory(@PathVariable Integer orderId) {
+        if (!SessionService.isAdmin(sessionUser())) return new ArrayList<>();
+        return orderTimeSeriesService.history(orderId);
+    }
+
+    @GetMapping("/analytics/orders/footprint")
+    public OrderSeriesFootprint getOrderSeriesFootprint(@RequestParam(required = false) String day) {
+        if (!SessionService.isAdmin(sessionUser())) return null;
+        try {
+            return orderTimeSeriesService.footprint(day == null || day.isEmpty() ? LocalDate.now() : LocalDate.parse(day));
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректная дата");
+        }
+    }
+
+    /**
+     * Продажи из витрин за дни [from, to]; по умолчанию - последние 30 дней
+     * @param by day, category или product
+     * @param categoryId для разреза product - только товары категории
+     */
+    @GetMapping("/analytics/sales")
+    public List<SalesRow> getSales(@RequestParam(required = false) String from,
+                                   @RequestParam(required = false) String to,
+                                   @RequestParam(required = false) String by,
+                                   @RequestParam(required = false) Integer categoryId,
+                                   @RequestParam(required = false) Integer limit) {
+        if (!SessionService.isAdmin(sessionUser())) return new ArrayList<>();
+        String dimension = by == null || by.isEmpty() ? SalesRollupService.DIMENSION_DAY : by;
+        if (!(SalesRollupService.DIMENSION_DAY.equals(dimension)
+                || SalesRollupService.DIMENSION_CATEGORY.equals(dimension)
+                || SalesRollupService.DIMENSION_PRODUCT.equals(dimension))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный разрез");
+        }
+        LocalDate toDay;
+        LocalDate fromDay;
+        try {
+            toDay = to == null || to.isEmpty() ? LocalDate.now() : LocalDate.parse(to);
+            fromDay = from == null || from.isEmpty() ? toDay.minusDays(29) : LocalDate.parse(from);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный интервал");
+        }
+        if (fromDay.isAfter(toDay)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный интервал");
+        }
+        return salesRollupService.report(dimension, fromDay, toDay, categoryId, limit);
+    }
+
+    @GetMapping("/analytics/users-filter")
+    public UserFilterStats getUserFilterStats() {
+        if (!SessionService.isAdmin(sessionUser())) return null;
+        return userAvailabilityService.stats();
+    }
+
+    /**
+     * Самые дорогие формы SQL запросов с запуска или последнего сброса
+     * @param by total (по умолчанию), mean, max или count
+     */
+    @GetMapping("/analytics/sql")
+    public List<SqlShapeStats> getSqlShapes(@RequestParam(required = false) String by,
+                                            @RequestParam(required = false) Integer limit) {
+        if (!SessionService.isAdmin(sessionUser())) return new ArrayList<>();
+        String order = by == null || by.isEmpty() ? SqlStatsService.SORT_TOTAL : by;
+        if (!(SqlStatsService.SORT_TOTAL.equals(order) || SqlStatsService.SORT_MEAN.equals(order)
+                || SqlStatsService.SORT_MAX.equals(order) || SqlStatsService.SORT_COUNT.equals(order))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректная сортировка");
+        }
+        return sqlStatsService.top(order, limit);
+    }
+
+    // ============ СЕССИЯ ============
+
+    /**
+     * Пользователь текущего запроса по токену сессии
+     * @return пользователь или null, если запрос не авторизован
+     */
+    private User currentUser() {
+        return sessionService.currentUser(httpRequest);
+    }
+
+    /**
+     * id, логин и роль пользователя текущего запроса без загрузки сущности из базы
+     * @return пользователь сессии или null, если запрос не авторизован
+     */
+    private SessionUser sessionUser() {
+        return sessionService.resolveUser(httpRequest);
+    }
+
+    // ============ ПАГИНАЦИЯ ============
+
+    /**
+     * Курсор страницы товаров - id последнего товара предыдущей страницы
+     * @return id, после которого продолжается выборка, 0 для первой страницы
+     */
+    private int decodeProductCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        String[] key = KeysetPage.decodeCursor(cursor, 1);
+        if (key == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный курсор");
+        }
+        try {
+            return Integer.parseInt(key[0]);
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный курсор");
+        }
+    }
+
     // ============ ВСПОМОГАТЕЛЬНЫЕ КЛАССЫ ============
 
     public static class CartItemRequest {
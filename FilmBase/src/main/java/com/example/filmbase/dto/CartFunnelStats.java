@@ -0,0 +1,17 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartFunnelStats {
+    private String dimension; // product, category
+    private Integer id;
+    private String name;
+    private Long added;
+    private Long updated;
+    private Long removed;
+}
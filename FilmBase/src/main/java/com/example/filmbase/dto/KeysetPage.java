@@ -0,0 +1,77 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница выборки с курсором на следующую страницу.
+ * Курсор непрозрачен для клиента: это base64 от значений ключа последней строки.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetPage<T> {
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private static final String SEPARATOR = "|";
+
+    private List<T> items;
+    private String nextCursor; // null, если страница последняя
+
+    /**
+     * Собрать страницу из выборки, запрошенной с запасом в одну строку
+     * @param rows строки, не больше limit + 1
+     * @param limit размер страницы
+     * @param cursorOf курсор, указывающий на строку
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new KeysetPage<>(items, cursorOf.apply(items.get(limit - 1)));
+    }
+
+    /**
+     * Привести запрошенный размер страницы к допустимому диапазону
+     */
+    public static int normalizeLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    public static String encodeCursor(Object... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разобрать курсор
+     * @return значения ключа или null, если курсор поврежден
+     */
+    public static String[] decodeCursor(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            return parts.length == expectedParts ? parts : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
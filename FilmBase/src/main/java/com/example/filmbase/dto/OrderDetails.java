@@ -0,0 +1,39 @@
+package com.example.filmbase.dto;
+
+import com.example.filmbase.entities.Order;
+import com.example.filmbase.entities.OrderItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Заказ вместе с позициями для ответа /api/orders/{id}/full
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderDetails {
+    private Integer id;
+    private LocalDateTime orderDate;
+    private String status;
+    private String deliveryAddress;
+    private Double totalAmount;
+    private List<OrderLine> items;
+
+    public static OrderDetails of(Order order) {
+        List<OrderLine> items = new ArrayList<>();
+        if (order.getOrderItems() != null) {
+            for (OrderItem item : order.getOrderItems()) {
+                items.add(OrderLine.of(item));
+            }
+            items.sort(Comparator.comparing(OrderLine::getId));
+        }
+        return new OrderDetails(order.getId(), order.getOrderDate(), order.getStatus(),
+                order.getDeliveryAddress(), order.getTotalAmount(), items);
+    }
+}
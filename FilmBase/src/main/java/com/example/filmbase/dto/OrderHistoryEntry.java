@@ -0,0 +1,17 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderHistoryEntry {
+    private String eventType; // CREATED, CANCELLED, DELIVERED
+    private String status;
+    private Double amount;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,27 @@
+package com.example.filmbase.dto;
+
+import com.example.filmbase.entities.OrderItem;
+import com.example.filmbase.entities.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderLine {
+    private Integer id;
+    private Integer productId;
+    private String productName;
+    private String imageUrl;
+    private String categoryName;
+    private Integer quantity;
+    private Double price; // Цена на момент заказа
+
+    public static OrderLine of(OrderItem item) {
+        Product product = item.getProduct();
+        return new OrderLine(item.getId(), product.getId(), product.getName(), product.getImageUrl(),
+                product.getCategory() != null ? product.getCategory().getName() : null,
+                item.getQuantity(), item.getPrice());
+    }
+}
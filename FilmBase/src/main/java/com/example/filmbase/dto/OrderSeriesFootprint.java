@@ -0,0 +1,17 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSeriesFootprint {
+    private LocalDate day;
+    private Long events;
+    private Long bytes; // MEMORY USAGE обоих множеств за сутки
+    private Long bytesPerEvent;
+}
@@ -0,0 +1,20 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSeriesStats {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Long created;
+    private Double revenue;
+    private Long cancelled;
+    private Double cancelledAmount;
+    private Long delivered;
+}
@@ -0,0 +1,14 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSuggestion {
+    private Integer productId;
+    private String name;
+    private Long weight; // остаток на складе или популярность
+}
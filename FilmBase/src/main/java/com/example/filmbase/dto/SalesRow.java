@@ -0,0 +1,20 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRow {
+    private String dimension; // day, category, product
+    private LocalDate day; // для разреза day
+    private Integer id; // для category и product; 0 - без категории
+    private String name;
+    private Double revenue;
+    private Long units;
+    private Long orders;
+}
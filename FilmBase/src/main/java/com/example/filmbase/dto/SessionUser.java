@@ -0,0 +1,17 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Пользователь сессии: то, что нужно большинству запросов, без загрузки сущности User
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionUser {
+    private int id;
+    private String login;
+    private boolean admin;
+}
@@ -0,0 +1,17 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SqlShapeStats {
+    private String shape; // текст запроса без значений параметров
+    private Long executions;
+    private Long rows; // выбранные и измененные строки
+    private Double totalMs;
+    private Double meanMs;
+    private Double maxMs;
+}
@@ -0,0 +1,15 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockShortfall {
+    private Integer productId;
+    private String productName;
+    private Integer requested;
+    private Integer available;
+}
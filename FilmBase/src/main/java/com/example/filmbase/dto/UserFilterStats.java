@@ -0,0 +1,21 @@
+package com.example.filmbase.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserFilterStats {
+    private Long entries; // логины и email, добавленные в этом процессе
+    private Long bits;
+    private Integer hashFunctions;
+    private Long bytes;
+    private Double expectedFpp; // по заполнению фильтра
+    private Double observedFpp; // ложные срабатывания среди свободных значений
+    private Long checks;
+    private Long answeredByFilter;
+    private Long databaseLookups;
+    private Long falsePositives;
+}
@@ -18,8 +18,10 @@ import java.util.Set;
 @AllArgsConstructor
 public class Order {
 
+    // Пул идентификаторов из последовательности, чтобы Hibernate мог группировать вставки
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_id_gen")
+    @SequenceGenerator(name = "orders_id_gen", sequenceName = "orders_id_seq", allocationSize = 50)
     private int id;
 
     @ManyToOne
@@ -15,8 +15,10 @@ import javax.persistence.*;
 @AllArgsConstructor
 public class OrderItem {
 
+    // Пул идентификаторов из последовательности, чтобы Hibernate мог группировать вставки
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_id_gen")
+    @SequenceGenerator(name = "order_item_id_gen", sequenceName = "order_item_id_seq", allocationSize = 50)
     private int id;
 
     @ManyToOne
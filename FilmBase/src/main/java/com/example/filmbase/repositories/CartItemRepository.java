@@ -4,6 +4,9 @@ import com.example.filmbase.entities.CartItem;
 import com.example.filmbase.entities.Product;
 import com.example.filmbase.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,6 +16,13 @@ public interface CartItemRepository extends JpaRepository<CartItem, Integer> {
     CartItem findByProductAndUser(Product product, User user);
     CartItem findById(int id);
     List<CartItem> findAllByUser(User user);
+
+    @Query("select c from CartItem c join fetch c.product p left join fetch p.category where c.user = :user")
+    List<CartItem> findAllByUserWithProduct(@Param("user") User user);
+
+    @Modifying
+    @Query("delete from CartItem c where c.user = :user")
+    int deleteAllByUserInBulk(@Param("user") User user);
 }
 
 
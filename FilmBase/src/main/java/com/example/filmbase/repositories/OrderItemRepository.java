@@ -3,6 +3,8 @@ package com.example.filmbase.repositories;
 import com.example.filmbase.entities.Order;
 import com.example.filmbase.entities.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,6 +12,11 @@ import java.util.List;
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Integer> {
     List<OrderItem> findAllByOrder(Order order);
+
+    // Позиции заказа вместе с товарами и категориями одним запросом
+    @Query("select oi from OrderItem oi join fetch oi.product p left join fetch p.category " +
+            "where oi.order = :order order by oi.id")
+    List<OrderItem> findAllByOrderWithProduct(@Param("order") Order order);
 }
 
 
@@ -2,16 +2,53 @@ package com.example.filmbase.repositories;
 
 import com.example.filmbase.entities.Order;
 import com.example.filmbase.entities.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Integer> {
+    // Покупатель подтягивается тем же запросом, а не отдельным select на каждый заказ
+    @EntityGraph(attributePaths = "user")
     Order findById(int id);
+
     List<Order> findAllByUser(User user);
+
+    @EntityGraph(attributePaths = "user")
     List<Order> findAllByUserOrderByOrderDateDesc(User user);
+
+    // Заказ целиком: покупатель, позиции, их товары и категории одним запросом
+    @Query("select distinct o from Order o join fetch o.user " +
+            "left join fetch o.orderItems oi left join fetch oi.product p left join fetch p.category " +
+            "where o.id = :id")
+    Order findFullById(@Param("id") int id);
+
+    // Постраничная выборка по ключу (order_date, id), от новых заказов к старым
+    @EntityGraph(attributePaths = "user")
+    List<Order> findAllByUserOrderByOrderDateDescIdDesc(User user, Pageable pageable);
+
+    @EntityGraph(attributePaths = "user")
+    @Query("select o from Order o where o.user = :user " +
+            "and (o.orderDate < :orderDate or (o.orderDate = :orderDate and o.id < :id)) " +
+            "order by o.orderDate desc, o.id desc")
+    List<Order> findPageByUserBefore(@Param("user") User user,
+                                     @Param("orderDate") LocalDateTime orderDate,
+                                     @Param("id") int id,
+                                     Pageable pageable);
+
+    // Смена статуса только из ожидаемого: из двух параллельных отмен пройдет одна
+    @Modifying
+    @Query("update Order o set o.status = :newStatus where o.id = :id and o.status = :expectedStatus")
+    int updateStatusIf(@Param("id") int id,
+                       @Param("expectedStatus") String expectedStatus,
+                       @Param("newStatus") String newStatus);
 }
 
 
@@ -1,9 +1,13 @@
 package com.example.filmbase.repositories;
 
 import com.example.filmbase.entities.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,6 +15,13 @@ public interface ProductRepository extends JpaRepository<Product, Integer> {
     Product findById(int id);
     List<Product> findByNameContainingOrDescriptionContaining(String name, String description);
     List<Product> findByCategory_Id(int categoryId);
+
+    // Постраничная выборка по ключу (id): limit задается через Pageable
+    List<Product> findByIdGreaterThanOrderByIdAsc(int afterId, Pageable pageable);
+    List<Product> findByCategory_IdAndIdGreaterThanOrderByIdAsc(int categoryId, int afterId, Pageable pageable);
+
+    @Query("select p from Product p left join fetch p.category where p.id in :ids")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<Integer> ids);
 }
 
 
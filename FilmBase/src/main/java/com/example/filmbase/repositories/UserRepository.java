@@ -2,11 +2,28 @@ package com.example.filmbase.repositories;
 
 import com.example.filmbase.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Integer> {
     User findByLogin(String login);
     User findById(int id);
     User findByEmail(String email);
-}
\ No newline at end of file
+
+    boolean existsByLogin(String login);
+    boolean existsByEmail(String email);
+
+    /**
+     * Логины и email всех пользователей без загрузки сущностей; читать внутри транзакции
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.login, u.email from User u")
+    Stream<Object[]> streamLoginsAndEmails();
+}
@@ -0,0 +1,243 @@
+package com.example.filmbase.search;
+
+import com.example.filmbase.entities.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс товаров по названию и описанию.
+ * Совпадения в названии весят больше, чем в описании.
+ * Последнее слово запроса ищется и как префикс, чтобы работал поиск по мере ввода.
+ */
+public class InvertedIndex {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final Comparator<ScoredDoc> BY_SCORE = Comparator
+            .comparingDouble((ScoredDoc doc) -> doc.score)
+            .thenComparing(doc -> -doc.id);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+    private final Map<Integer, IndexedDoc> docs = new HashMap<>();
+    private long totalLength;
+
+    /**
+     * Проиндексировать товар, заменив его прежнюю версию
+     */
+    public void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            putInternal(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Убрать товар из индекса
+     */
+    public void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Полностью пересобрать индекс
+     */
+    public void replaceAll(Collection<Product> products) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docs.clear();
+            totalLength = 0;
+            for (Product product : products) {
+                putInternal(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Найти товары по запросу
+     * @param query текст запроса
+     * @param mode формула ранжирования
+     * @param limit максимальное количество результатов
+     * @return товары по убыванию релевантности
+     */
+    public List<Product> search(String query, ScoringMode mode, int limit) {
+        List<String> queryTerms = TextAnalyzer.analyze(query);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            int docCount = docs.size();
+            if (docCount == 0) {
+                return Collections.emptyList();
+            }
+            double avgLength = (double) totalLength / docCount;
+
+            Map<Integer, Double> scores = new HashMap<>();
+            for (Map.Entry<String, Double> term : expandTerms(queryTerms).entrySet()) {
+                PostingList list = postings.get(term.getKey());
+                if (list == null) {
+                    continue;
+                }
+                double idf = idf(mode, docCount, list.size());
+                for (int i = 0; i < list.size(); i++) {
+                    int doc = list.doc(i);
+                    double tf = termScore(mode, list.freq(i), docs.get(doc).length, avgLength);
+                    scores.merge(doc, term.getValue() * idf * tf, Double::sum);
+                }
+            }
+            return topK(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Веса термов запроса: точные совпадения с весом 1,
+     * продолжения последнего слова - с пониженным весом
+     */
+    private Map<String, Double> expandTerms(List<String> queryTerms) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String term : queryTerms) {
+            weights.put(term, 1.0);
+        }
+
+        String last = queryTerms.get(queryTerms.size() - 1);
+        int expansions = 0;
+        for (String candidate : postings.subMap(last, false, last + Character.MAX_VALUE, false).keySet()) {
+            if (expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            weights.merge(candidate, PREFIX_WEIGHT, Math::max);
+        }
+        return weights;
+    }
+
+    private List<Product> topK(Map<Integer, Double> scores, int limit) {
+        PriorityQueue<ScoredDoc> heap = new PriorityQueue<>(Math.min(limit, scores.size()) + 1, BY_SCORE);
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            heap.offer(new ScoredDoc(entry.getKey(), entry.getValue()));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        List<Product> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(docs.get(heap.poll().id).product);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static double idf(ScoringMode mode, int docCount, int docFreq) {
+        if (mode == ScoringMode.TFIDF) {
+            return Math.log(1.0 + (double) docCount / docFreq);
+        }
+        return Math.log(1.0 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    private static double termScore(ScoringMode mode, int freq, int docLength, double avgLength) {
+        if (mode == ScoringMode.TFIDF) {
+            return 1.0 + Math.log(freq);
+        }
+        double norm = BM25_K1 * (1.0 - BM25_B + BM25_B * docLength / avgLength);
+        return freq * (BM25_K1 + 1.0) / (freq + norm);
+    }
+
+    private void putInternal(Product product) {
+        removeInternal(product.getId());
+
+        Map<String, Integer> freqs = new HashMap<>();
+        for (String term : TextAnalyzer.analyze(product.getName())) {
+            freqs.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : TextAnalyzer.analyze(product.getDescription())) {
+            freqs.merge(term, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : freqs.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), key -> new PostingList())
+                    .put(product.getId(), entry.getValue());
+            length += entry.getValue();
+        }
+        docs.put(product.getId(), new IndexedDoc(product, freqs.keySet().toArray(new String[0]), length));
+        totalLength += length;
+    }
+
+    private void removeInternal(int productId) {
+        IndexedDoc existing = docs.remove(productId);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing.terms) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                list.remove(productId);
+                if (list.size() == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= existing.length;
+    }
+
+    private static final class IndexedDoc {
+        private final Product product;
+        private final String[] terms;
+        private final int length;
+
+        private IndexedDoc(Product product, String[] terms, int length) {
+            this.product = product;
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+
+    private static final class ScoredDoc {
+        private final int id;
+        private final double score;
+
+        private ScoredDoc(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
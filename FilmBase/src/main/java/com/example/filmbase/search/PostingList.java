@@ -0,0 +1,57 @@
+package com.example.filmbase.search;
+
+import java.util.Arrays;
+
+/**
+ * Список вхождений терма: id документов по возрастанию и частоты терма в них.
+ * Хранится в примитивных массивах, без упаковки в объекты.
+ */
+final class PostingList {
+
+    private int[] docs = new int[4];
+    private int[] freqs = new int[4];
+    private int size;
+
+    /**
+     * Добавить документ или заменить частоту, если он уже есть
+     */
+    void put(int doc, int freq) {
+        int pos = Arrays.binarySearch(docs, 0, size, doc);
+        if (pos >= 0) {
+            freqs[pos] = freq;
+            return;
+        }
+        int insertAt = -pos - 1;
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+            freqs = Arrays.copyOf(freqs, size * 2);
+        }
+        System.arraycopy(docs, insertAt, docs, insertAt + 1, size - insertAt);
+        System.arraycopy(freqs, insertAt, freqs, insertAt + 1, size - insertAt);
+        docs[insertAt] = doc;
+        freqs[insertAt] = freq;
+        size++;
+    }
+
+    void remove(int doc) {
+        int pos = Arrays.binarySearch(docs, 0, size, doc);
+        if (pos < 0) {
+            return;
+        }
+        System.arraycopy(docs, pos + 1, docs, pos, size - pos - 1);
+        System.arraycopy(freqs, pos + 1, freqs, pos, size - pos - 1);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int doc(int i) {
+        return docs[i];
+    }
+
+    int freq(int i) {
+        return freqs[i];
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.filmbase.search;
+
+/**
+ * Формула ранжирования результатов поиска
+ */
+public enum ScoringMode {
+    BM25,
+    TFIDF;
+
+    /**
+     * Разобрать режим из параметра запроса
+     * @param value название режима без учета регистра
+     * @param defaultMode режим, если значение не задано или не распознано
+     */
+    public static ScoringMode parse(String value, ScoringMode defaultMode) {
+        if (value == null) {
+            return defaultMode;
+        }
+        for (ScoringMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value.trim())) {
+                return mode;
+            }
+        }
+        return defaultMode;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.filmbase.search;
+
+import com.example.filmbase.dto.ProductSuggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Неизменяемое префиксное дерево для подсказок по названиям товаров.
+ * В каждом узле заранее посчитаны k лучших продолжений по весу,
+ * поэтому запрос - это проход по символам префикса без обхода поддерева.
+ * Название индексируется целиком и с начала каждого слова.
+ */
+public final class SuggestTrie {
+
+    private static final Comparator<ProductSuggestion> BY_WEIGHT = Comparator
+            .comparingLong(ProductSuggestion::getWeight).reversed()
+            .thenComparing(ProductSuggestion::getName)
+            .thenComparing(ProductSuggestion::getProductId);
+
+    private final Node root;
+    private final int topK;
+
+    private SuggestTrie(Node root, int topK) {
+        this.root = root;
+        this.topK = topK;
+    }
+
+    /**
+     * Построить дерево
+     * @param suggestions все подсказки
+     * @param topK сколько лучших продолжений хранить в узле
+     */
+    public static SuggestTrie build(Collection<ProductSuggestion> suggestions, int topK) {
+        BuilderNode root = new BuilderNode();
+        for (ProductSuggestion suggestion : suggestions) {
+            String key = normalize(suggestion.getName(), false);
+            for (int start = 0; start < key.length(); start++) {
+                if (start == 0 || key.charAt(start - 1) == ' ') {
+                    root.insert(key, start, suggestion);
+                }
+            }
+        }
+        return new SuggestTrie(root.freeze(topK), topK);
+    }
+
+    /**
+     * Подсказки для префикса
+     * @param prefix введенный текст
+     * @param limit количество подсказок, не больше topK
+     * @return подсказки по убыванию веса
+     */
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix, true);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        int count = Math.min(Math.min(limit, topK), node.top.length);
+        return Arrays.asList(node.top).subList(0, count);
+    }
+
+    /**
+     * Нижний регистр, ё -> е, любые разделители сворачиваются в один пробел
+     * @param keepTrailingSpace сохранить пробел в конце: в запросе он значит,
+     *                          что последнее слово введено целиком
+     */
+    static String normalize(String text, boolean keepTrailingSpace) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && out.length() > 0) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                char lower = Character.toLowerCase(c);
+                out.append(lower == 'ё' ? 'е' : lower);
+            } else {
+                pendingSpace = true;
+            }
+        }
+        if (keepTrailingSpace && pendingSpace && out.length() > 0) {
+            out.append(' ');
+        }
+        return out.toString();
+    }
+
+    private static final class Node {
+        private final char[] labels;
+        private final Node[] children;
+        private final ProductSuggestion[] top;
+
+        private Node(char[] labels, Node[] children, ProductSuggestion[] top) {
+            this.labels = labels;
+            this.children = children;
+            this.top = top;
+        }
+
+        private Node child(char c) {
+            int pos = Arrays.binarySearch(labels, c);
+            return pos >= 0 ? children[pos] : null;
+        }
+    }
+
+    private static final class BuilderNode {
+        private final TreeMap<Character, BuilderNode> children = new TreeMap<>();
+        private final List<ProductSuggestion> terminals = new ArrayList<>(1);
+
+        private void insert(String key, int start, ProductSuggestion suggestion) {
+            BuilderNode node = this;
+            for (int i = start; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new BuilderNode());
+            }
+            node.terminals.add(suggestion);
+        }
+
+        /**
+         * Превратить поддерево в компактные узлы, считая top-k снизу вверх
+         */
+        private Node freeze(int topK) {
+            char[] labels = new char[children.size()];
+            Node[] frozen = new Node[children.size()];
+            Map<Integer, ProductSuggestion> candidates = new HashMap<>();
+            for (ProductSuggestion terminal : terminals) {
+                candidates.put(terminal.getProductId(), terminal);
+            }
+
+            int i = 0;
+            for (Map.Entry<Character, BuilderNode> entry : children.entrySet()) {
+                labels[i] = entry.getKey();
+                frozen[i] = entry.getValue().freeze(topK);
+                for (ProductSuggestion suggestion : frozen[i].top) {
+                    candidates.putIfAbsent(suggestion.getProductId(), suggestion);
+                }
+                i++;
+            }
+
+            List<ProductSuggestion> best = new ArrayList<>(candidates.values());
+            best.sort(BY_WEIGHT);
+            if (best.size() > topK) {
+                best = best.subList(0, topK);
+            }
+            return new Node(labels, frozen, best.toArray(new ProductSuggestion[0]));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.filmbase.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор текста на термы для поискового индекса:
+ * разбиение на слова, приведение к нижнему регистру, замена ё на е
+ * и облегченный стемминг русских окончаний.
+ */
+public final class TextAnalyzer {
+
+    // Отсортированы по убыванию длины: отрезается самое длинное подходящее окончание
+    private static final String[] RUSSIAN_ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими",
+            "ией", "ий", "ый", "ой", "ая", "яя", "ое", "ее", "ые", "ие", "ую", "юю",
+            "ом", "ем", "ам", "ям", "ах", "ях", "ов", "ев", "ей", "ия", "ью",
+            "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й"
+    };
+    private static final int MIN_STEM_LENGTH = 3;
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Разобрать текст на термы
+     * @param text исходный текст, может быть null
+     * @return термы в порядке появления в тексте
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(normalize(c));
+            } else if (token.length() > 0) {
+                terms.add(stem(token.toString()));
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            terms.add(stem(token.toString()));
+        }
+        return terms;
+    }
+
+    /**
+     * Отрезать типичное русское окончание, если основа остается достаточно длинной.
+     * Латиница и числа не изменяются.
+     */
+    static String stem(String token) {
+        if (!isCyrillic(token)) {
+            return token;
+        }
+        for (String ending : RUSSIAN_ENDINGS) {
+            if (token.length() - ending.length() >= MIN_STEM_LENGTH && token.endsWith(ending)) {
+                return token.substring(0, token.length() - ending.length());
+            }
+        }
+        return token;
+    }
+
+    private static char normalize(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    private static boolean isCyrillic(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.UnicodeBlock.of(token.charAt(i)) == Character.UnicodeBlock.CYRILLIC) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
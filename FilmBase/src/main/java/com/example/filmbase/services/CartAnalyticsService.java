@@ -0,0 +1,198 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.analytics.CartFunnel;
+import com.example.filmbase.analytics.FunnelWindow;
+import com.example.filmbase.analytics.SlidingWindowCounter;
+import com.example.filmbase.dto.CartEvent;
+import com.example.filmbase.dto.CartFunnelStats;
+import com.example.filmbase.entities.Category;
+import com.example.filmbase.entities.Product;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Воронка корзины в реальном времени по событиям из топика cart:
+ * добавления, изменения и удаления по товарам и категориям
+ * в скользящих окнах минута/час/сутки.
+ *
+ * Счетчики живут в памяти процесса; раз в checkpoint-interval-ms их корзины
+ * сохраняются в Redis и восстанавливаются при старте, так что перезапуск
+ * не обнуляет часовое и суточное окна.
+ */
+@Service
+public class CartAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartAnalyticsService.class);
+
+    public static final String DIMENSION_PRODUCT = "product";
+    public static final String DIMENSION_CATEGORY = "category";
+
+    private static final String CHECKPOINT_KEY = "analytics:cart";
+    private static final long CHECKPOINT_TTL_SECONDS = 2 * 24 * 3600;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${filmbase.analytics.cart.max-limit:100}")
+    private int maxLimit;
+
+    // Ключ - "product:{id}" или "category:{id}"
+    private final Map<String, CartFunnel> funnels = new ConcurrentHashMap<>();
+
+    // Категории товаров по последнему снимку каталога
+    private volatile List<Product> catalog;
+    private volatile Map<Integer, Category> categoryByProduct = Collections.emptyMap();
+
+    /**
+     * Учесть пачку событий корзины
+     */
+    public void record(List<CartEvent> events) {
+        long now = System.currentTimeMillis();
+        Map<Integer, Category> categories = categoriesByProduct();
+        for (CartEvent event : events) {
+            int kind = CartFunnel.kindOf(event.getEventType());
+            if (kind < 0 || event.getProductId() == null) {
+                continue;
+            }
+            long time = event.getTimestamp() != null
+                    ? event.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : now;
+
+            funnel(DIMENSION_PRODUCT, event.getProductId(), event.getProductName()).record(kind, time, now);
+            Category category = categories.get(event.getProductId());
+            if (category != null) {
+                funnel(DIMENSION_CATEGORY, category.getId(), category.getName()).record(kind, time, now);
+            }
+        }
+    }
+
+    /**
+     * Воронка за окно, по убыванию числа добавлений
+     * @param window окно
+     * @param dimension product или category
+     * @param limit количество строк, null - все до max-limit
+     */
+    public List<CartFunnelStats> report(FunnelWindow window, String dimension, Integer limit) {
+        long now = System.currentTimeMillis();
+        String prefix = dimension + ":";
+        List<CartFunnelStats> rows = new ArrayList<>();
+        for (Map.Entry<String, CartFunnel> entry : funnels.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                continue;
+            }
+            long[] totals = entry.getValue().totals(window, now);
+            if (totals[CartFunnel.ADDED] + totals[CartFunnel.UPDATED] + totals[CartFunnel.REMOVED] == 0) {
+                continue;
+            }
+            rows.add(new CartFunnelStats(dimension, Integer.parseInt(entry.getKey().substring(prefix.length())),
+                    entry.getValue().getName(), totals[CartFunnel.ADDED], totals[CartFunnel.UPDATED],
+                    totals[CartFunnel.REMOVED]));
+        }
+        rows.sort(Comparator.comparing(CartFunnelStats::getAdded).reversed()
+                .thenComparing(CartFunnelStats::getId));
+        int size = limit == null || limit <= 0 ? maxLimit : Math.min(limit, maxLimit);
+        return rows.size() > size ? new ArrayList<>(rows.subList(0, size)) : rows;
+    }
+
+    /**
+     * Сохранить корзины счетчиков в Redis
+     */
+    @Scheduled(fixedDelayString = "${filmbase.analytics.cart.checkpoint-interval-ms:60000}")
+    public void checkpoint() {
+        if (funnels.isEmpty()) {
+            return;
+        }
+        Map<String, FunnelCheckpoint> state = new HashMap<>();
+        for (Map.Entry<String, CartFunnel> entry : funnels.entrySet()) {
+            state.put(entry.getKey(), new FunnelCheckpoint(entry.getValue().getName(), entry.getValue().state()));
+        }
+        try {
+            redisService.setString(CHECKPOINT_KEY, objectMapper.writeValueAsString(state), CHECKPOINT_TTL_SECONDS);
+        } catch (Exception e) {
+            logger.warn("Cart analytics checkpoint failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Восстановить счетчики из последнего сохранения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        try {
+            String json = redisService.getString(CHECKPOINT_KEY);
+            if (json == null) {
+                return;
+            }
+            Map<String, FunnelCheckpoint> state = objectMapper.readValue(json,
+                    new TypeReference<Map<String, FunnelCheckpoint>>() { });
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, FunnelCheckpoint> entry : state.entrySet()) {
+                funnels.computeIfAbsent(entry.getKey(), key -> new CartFunnel(entry.getValue().getName()))
+                        .restore(entry.getValue().getWindows(), now);
+            }
+            logger.info("Cart analytics restored: {} funnels", state.size());
+        } catch (Exception e) {
+            logger.warn("Cart analytics restore failed: {}", e.getMessage());
+        }
+    }
+
+    private CartFunnel funnel(String dimension, int id, String name) {
+        CartFunnel funnel = funnels.computeIfAbsent(dimension + ":" + id, key -> new CartFunnel(name));
+        if (name != null && !name.equals(funnel.getName())) {
+            funnel.setName(name);
+        }
+        return funnel;
+    }
+
+    /**
+     * Категории товаров; карта пересобирается, только когда сменился снимок каталога
+     */
+    private Map<Integer, Category> categoriesByProduct() {
+        List<Product> current = catalogCache.getAllProducts();
+        if (current != catalog) {
+            Map<Integer, Category> categories = new HashMap<>();
+            for (Product product : current) {
+                if (product.getCategory() != null) {
+                    categories.put(product.getId(), product.getCategory());
+                }
+            }
+            categoryByProduct = categories;
+            catalog = current;
+        }
+        return categoryByProduct;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FunnelCheckpoint {
+        private String name;
+        private Map<String, SlidingWindowCounter.State> windows;
+    }
+}
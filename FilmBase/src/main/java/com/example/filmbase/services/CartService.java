@@ -0,0 +1,292 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.entities.CartItem;
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.entities.User;
+import com.example.filmbase.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Корзины пользователей. Основная копия - хеш Redis cart:{userId} (id товара -> количество),
+ * таблица cart_item обновляется фоновой записью пакетами и читается только при промахе.
+ *
+ * Измененные корзины попадают в множество cart:dirty; сброс забирает их оттуда
+ * и целиком заменяет строки этих пользователей в cart_item одной транзакцией.
+ * Служебное поле "_" отличает загруженную пустую корзину от отсутствующей в Redis.
+ *
+ * В ответах API id позиции корзины совпадает с id товара.
+ */
+@Service
+public class CartService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartService.class);
+
+    private static final String DIRTY_KEY = "cart:dirty";
+    private static final String LOADED_FIELD = "_";
+
+    // KEYS: cart, dirty; ARGV: productId, quantity, ttl, userId
+    // Изменение загруженной корзины; 0 - корзины нет в Redis, нужно загрузить из базы
+    private static final RedisScript<Long> SET_QUANTITY = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end " +
+            "if tonumber(ARGV[2]) > 0 then redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) " +
+            "else redis.call('HDEL', KEYS[1], ARGV[1]) end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+            "redis.call('SADD', KEYS[2], ARGV[4]) " +
+            "return 1", Long.class);
+
+    // KEYS: cart, dirty; ARGV: productId, delta, ttl, userId
+    // Атомарное изменение количества в загруженной корзине; возвращает новое количество,
+    // -1 - корзины нет в Redis, нужно загрузить из базы
+    private static final RedisScript<Long> ADD_QUANTITY = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+            "local quantity = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) " +
+            "if quantity <= 0 then redis.call('HDEL', KEYS[1], ARGV[1]) quantity = 0 end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+            "redis.call('SADD', KEYS[2], ARGV[4]) " +
+            "return quantity", Long.class);
+
+    // KEYS: cart; ARGV: ttl, productId1, quantity1, ... Загрузка из базы, если корзину еще никто не загрузил
+    private static final RedisScript<Long> LOAD = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('HSET', KEYS[1], '" + LOADED_FIELD + "', '1') " +
+            "for i = 2, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
+    // KEYS: cart, dirty; ARGV: ttl, userId
+    private static final RedisScript<Long> CLEAR = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HSET', KEYS[1], '" + LOADED_FIELD + "', '1') " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return redis.call('SADD', KEYS[2], ARGV[2])", Long.class);
+
+    private static final String SELECT_SQL =
+            "SELECT product_id, quantity FROM cart_item WHERE user_id = ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM cart_item WHERE user_id IN (:userIds)";
+
+    // Товар мог быть удален, пока корзина ждала записи
+    private static final String INSERT_SQL =
+            "INSERT INTO cart_item (user_id, product_id, quantity) " +
+            "SELECT ?, ?, ? WHERE EXISTS (SELECT 1 FROM product WHERE id = ?)";
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTransactionTemplate;
+    private final long ttlSeconds;
+    private final int flushBatchSize;
+
+    public CartService(JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${filmbase.cart.ttl-seconds:86400}") long ttlSeconds,
+                       @Value("${filmbase.cart.flush-batch-size:500}") int flushBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTransactionTemplate.setReadOnly(true);
+        this.ttlSeconds = ttlSeconds;
+        this.flushBatchSize = flushBatchSize;
+    }
+
+    /**
+     * Содержимое корзины
+     * @param userId id пользователя
+     * @return количество по id товара, упорядочено по id
+     */
+    public Map<Integer, Integer> getQuantities(int userId) {
+        Map<String, String> entries = redisService.hashEntries(cartKey(userId));
+        if (entries.isEmpty()) {
+            load(userId);
+            entries = redisService.hashEntries(cartKey(userId));
+        }
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (!LOADED_FIELD.equals(entry.getKey())) {
+                quantities.put(Integer.parseInt(entry.getKey()), Integer.parseInt(entry.getValue()));
+            }
+        }
+        return quantities;
+    }
+
+    /**
+     * Количество товара в корзине
+     * @return количество, 0 если товара в корзине нет
+     */
+    public int getQuantity(int userId, int productId) {
+        Integer quantity = getQuantities(userId).get(productId);
+        return quantity != null ? quantity : 0;
+    }
+
+    /**
+     * Позиции корзины вместе с товарами (товары загружаются одним запросом)
+     * @param user пользователь
+     * @return позиции корзины; товары, удаленные из каталога, пропускаются
+     */
+    public List<CartItem> getItems(User user) {
+        Map<Integer, Integer> quantities = getQuantities(user.getId());
+        if (quantities.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Product> products = new TreeMap<>();
+        for (Product product : productRepository.findAllWithCategoryByIdIn(quantities.keySet())) {
+            products.put(product.getId(), product);
+        }
+        List<CartItem> items = new ArrayList<>(products.size());
+        for (Product product : products.values()) {
+            items.add(new CartItem(product.getId(), user, product, quantities.get(product.getId())));
+        }
+        return items;
+    }
+
+    /**
+     * Установить количество товара в корзине
+     * @param quantity новое количество, 0 - убрать товар из корзины
+     */
+    public void setQuantity(int userId, int productId, int quantity) {
+        List<String> keys = Arrays.asList(cartKey(userId), DIRTY_KEY);
+        Long updated = redisService.executeScript(SET_QUANTITY, keys, productId, quantity, ttlSeconds, userId);
+        if (updated == null || updated == 0) {
+            load(userId);
+            redisService.executeScript(SET_QUANTITY, keys, productId, quantity, ttlSeconds, userId);
+        }
+    }
+
+    /**
+     * Изменить количество товара в корзине на delta одной атомарной операцией,
+     * чтобы параллельные добавления не теряли друг друга
+     * @param delta прибавка, отрицательная - уменьшение; при количестве 0 и меньше товар убирается
+     * @return новое количество товара в корзине
+     */
+    public int addQuantity(int userId, int productId, int delta) {
+        List<String> keys = Arrays.asList(cartKey(userId), DIRTY_KEY);
+        Long quantity = redisService.executeScript(ADD_QUANTITY, keys, productId, delta, ttlSeconds, userId);
+        if (quantity == null || quantity < 0) {
+            load(userId);
+            quantity = redisService.executeScript(ADD_QUANTITY, keys, productId, delta, ttlSeconds, userId);
+        }
+        return quantity != null ? quantity.intValue() : 0;
+    }
+
+    /**
+     * Очистить корзину. Внутри транзакции очистка откладывается до ее фиксации,
+     * чтобы при откате оформления заказа корзина осталась на месте.
+     */
+    public void clear(int userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clearNow(userId);
+                }
+            });
+        } else {
+            clearNow(userId);
+        }
+    }
+
+    /**
+     * Фоновая запись измененных корзин в cart_item
+     */
+    @Scheduled(fixedDelayString = "${filmbase.cart.flush-interval-ms:1000}")
+    public void flush() {
+        List<String> members;
+        while (!(members = redisService.popFromSet(DIRTY_KEY, flushBatchSize)).isEmpty()) {
+            try {
+                flushBatch(members);
+            } catch (RuntimeException e) {
+                // Корзины остаются в Redis и будут записаны при следующем сбросе
+                for (String member : members) {
+                    redisService.addToSet(DIRTY_KEY, member);
+                }
+                logger.error("Cart flush failed for {} users: {}", members.size(), e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    private void flushBatch(List<String> members) {
+        List<String> keys = new ArrayList<>(members.size());
+        for (String member : members) {
+            keys.add(cartKey(Integer.parseInt(member)));
+        }
+        List<Map<String, String>> carts = redisService.hashEntries(keys);
+
+        List<Integer> userIds = new ArrayList<>(members.size());
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            Map<String, String> cart = carts.get(i);
+            // Корзина истекла в Redis: в базе остается последнее записанное состояние
+            if (cart.isEmpty()) {
+                continue;
+            }
+            int userId = Integer.parseInt(members.get(i));
+            userIds.add(userId);
+            for (Map.Entry<String, String> entry : cart.entrySet()) {
+                if (!LOADED_FIELD.equals(entry.getKey())) {
+                    int productId = Integer.parseInt(entry.getKey());
+                    rows.add(new Object[]{userId, productId, Integer.parseInt(entry.getValue()), productId});
+                }
+            }
+        }
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            namedJdbcTemplate.update(DELETE_SQL, new MapSqlParameterSource("userIds", userIds));
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            }
+        });
+    }
+
+    private void load(int userId) {
+        List<Object> args = new ArrayList<>();
+        args.add(ttlSeconds);
+        // Чтение в транзакции: JdbcTemplate берет соединение, которое уже держит EntityManager
+        // запроса (open-in-view), а не второе из пула
+        readTransactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(SELECT_SQL, rs -> {
+            args.add(rs.getInt("product_id"));
+            args.add(rs.getInt("quantity"));
+        }, userId));
+        redisService.executeScript(LOAD, Collections.singletonList(cartKey(userId)), args.toArray());
+    }
+
+    private void clearNow(int userId) {
+        redisService.executeScript(CLEAR, Arrays.asList(cartKey(userId), DIRTY_KEY), ttlSeconds, userId);
+    }
+
+    private static String cartKey(int userId) {
+        return "cart:" + userId;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.cache.CatalogSnapshot;
+import com.example.filmbase.cache.LocalCache;
+import com.example.filmbase.cache.LocalCacheMetrics;
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.repositories.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Двухуровневый кеш каталога: L1 в памяти процесса, L2 в Redis.
+ * L1 сбрасывается на каждом экземпляре по событиям из топика products.
+ * Для выдачи клиентам каталог также хранится готовым снимком в JSON и gzip.
+ */
+@Service
+public class CatalogCache {
+
+    public static final String ALL_PRODUCTS_KEY = "products:all";
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final LocalCache<String, List<Product>> localCache;
+    private final long redisTtlSeconds;
+    private final long snapshotTtlNanos;
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    // Поколение и список товаров, из которых собран текущий снимок; меняются только под snapshotLock
+    private volatile long snapshotGeneration;
+    private List<Product> snapshotSource;
+    private final AtomicLong snapshotVersion = new AtomicLong();
+    private final Object snapshotLock = new Object();
+
+    // Поколение кеша: загрузка, начатая до сброса, не попадет в L1
+    private final AtomicLong generation = new AtomicLong();
+
+    public CatalogCache(@Value("${filmbase.catalog.l1.size:64}") int localSize,
+                        @Value("${filmbase.catalog.l1.ttl-seconds:60}") long localTtlSeconds,
+                        @Value("${filmbase.catalog.redis.ttl-seconds:300}") long redisTtlSeconds) {
+        this.localCache = new LocalCache<>(localSize, localTtlSeconds, TimeUnit.SECONDS);
+        this.redisTtlSeconds = redisTtlSeconds;
+        this.snapshotTtlNanos = TimeUnit.SECONDS.toNanos(localTtlSeconds);
+    }
+
+    /**
+     * Получить весь каталог: сначала из L1, затем из Redis, затем из базы
+     * @return неизменяемый список товаров
+     */
+    public List<Product> getAllProducts() {
+        List<Product> products = localCache.get(ALL_PRODUCTS_KEY);
+        if (products != null) {
+            return products;
+        }
+
+        long loadGeneration = generation.get();
+        @SuppressWarnings("unchecked")
+        List<Product> cachedProducts = (List<Product>) redisService.get(ALL_PRODUCTS_KEY);
+        if (cachedProducts != null) {
+            products = cachedProducts;
+        } else {
+            products = productRepository.findAll();
+            // Сохраняем в кеш Redis (по умолчанию на 5 минут)
+            redisService.set(ALL_PRODUCTS_KEY, products, redisTtlSeconds);
+        }
+
+        products = Collections.unmodifiableList(products);
+        localCache.put(ALL_PRODUCTS_KEY, products);
+        if (generation.get() != loadGeneration) {
+            localCache.invalidate(ALL_PRODUCTS_KEY);
+        }
+        return products;
+    }
+
+    /**
+     * Каталог из L1 без загрузки: для неблокирующих вызывающих
+     * @return список товаров или null, если L1 пуст
+     */
+    public List<Product> peekAllProducts() {
+        return localCache.get(ALL_PRODUCTS_KEY);
+    }
+
+    /**
+     * Счетчики L1 в метриках кешей (cache=catalog-l1); L2 считает RedisService
+     */
+    @Autowired
+    public void bindMetrics(MeterRegistry registry) {
+        new LocalCacheMetrics(localCache, "catalog-l1").bindTo(registry);
+    }
+
+    /**
+     * Получить снимок каталога для отдачи клиенту.
+     * Снимок сверяется с каталогом после сброса кеша (смены поколения) и по истечении
+     * времени жизни L1 - остатки меняются при оформлении заказов без событий товаров.
+     * Новый снимок (сжатие, ETag, версия) собирается, только если изменился JSON;
+     * иначе прежний снимок продлевается, а если L1 отдал тот же список, то и без сериализации.
+     * @return актуальный снимок каталога
+     */
+    public CatalogSnapshot getSnapshot() {
+        CatalogSnapshot current = snapshot.get();
+        if (isFresh(current)) {
+            return current;
+        }
+
+        // Пересобирает один поток, остальные дожидаются готового снимка
+        synchronized (snapshotLock) {
+            current = snapshot.get();
+            if (isFresh(current)) {
+                return current;
+            }
+
+            long loadGeneration = generation.get();
+            List<Product> products = getAllProducts();
+            CatalogSnapshot rebuilt;
+            if (current != null && products == snapshotSource) {
+                rebuilt = current.renewed();
+            } else {
+                byte[] json = toJson(products);
+                rebuilt = current != null && Arrays.equals(current.getJson(), json)
+                        ? current.renewed()
+                        : CatalogSnapshot.of(snapshotVersion.incrementAndGet(), json);
+            }
+
+            // Если кеш сбросили во время загрузки, следующий вызов соберет снимок заново
+            snapshotGeneration = loadGeneration;
+            snapshotSource = products;
+            snapshot.set(rebuilt);
+            return rebuilt;
+        }
+    }
+
+    private boolean isFresh(CatalogSnapshot current) {
+        return current != null && snapshotGeneration == generation.get() && !current.isOlderThan(snapshotTtlNanos);
+    }
+
+    /**
+     * Сбросить кеш каталога в Redis и в памяти этого экземпляра
+     */
+    public void invalidate() {
+        redisService.delete(ALL_PRODUCTS_KEY);
+        invalidateLocal();
+    }
+
+    /**
+     * Сбросить только L1 этого экземпляра
+     */
+    public void invalidateLocal() {
+        generation.incrementAndGet();
+        localCache.invalidateAll();
+    }
+
+    public LocalCache<String, List<Product>> getLocalCache() {
+        return localCache;
+    }
+
+    private byte[] toJson(List<Product> products) {
+        try {
+            return objectMapper.writeValueAsBytes(products);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать каталог", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.StockShortfall;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Заказ не может быть оформлен. Код ошибки совпадает с ответом API
+ * (ERROREMPTY, ERRORSTOCK_{название товара}, ERRORSTATUS).
+ */
+public class CheckoutException extends RuntimeException {
+
+    private final String code;
+    private final List<StockShortfall> shortfalls;
+
+    public CheckoutException(String code) {
+        this(code, Collections.emptyList());
+    }
+
+    public CheckoutException(String code, List<StockShortfall> shortfalls) {
+        super(code);
+        this.code = code;
+        this.shortfalls = shortfalls;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public List<StockShortfall> getShortfalls() {
+        return shortfalls;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.OrderEvent;
+import com.example.filmbase.dto.StockShortfall;
+import com.example.filmbase.entities.CartItem;
+import com.example.filmbase.entities.Order;
+import com.example.filmbase.entities.OrderItem;
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.entities.User;
+import com.example.filmbase.repositories.CartItemRepository;
+import com.example.filmbase.repositories.OrderItemRepository;
+import com.example.filmbase.repositories.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Оформление и отмена заказов.
+ * Количество обращений к базе не зависит от размера корзины:
+ * одна выборка товаров корзины (сама корзина хранится в Redis), один пакет условных
+ * списаний со склада, пакетная вставка позиций заказа и одно удаление корзины,
+ * все в одной транзакции.
+ */
+@Service
+public class CheckoutService {
+
+    public static final String STATUS_PROCESSING = "В обработке";
+    public static final String STATUS_CANCELLED = "Отменен";
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private KafkaProducerService kafkaProducerService;
+
+    /**
+     * Оформить заказ из корзины пользователя
+     * @param user покупатель
+     * @param deliveryAddress адрес доставки
+     * @return сохраненный заказ
+     * @throws CheckoutException если корзина пуста или товара не хватает
+     */
+    @Transactional
+    public Order placeOrder(User user, String deliveryAddress) {
+        List<CartItem> cartItems = cartService.getItems(user);
+        if (cartItems.isEmpty()) {
+            throw new CheckoutException("ERROREMPTY");
+        }
+
+        // Списываем товары со склада; если хоть одной позиции не хватило - откатываемся
+        Map<Integer, Integer> quantities = new HashMap<>();
+        for (CartItem item : cartItems) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        commitFlashSale(user, cartItems, quantities);
+        try {
+            inventoryService.decrement(quantities);
+        } catch (InsufficientStockException e) {
+            String productName = e.getShortfalls().get(0).getProductName();
+            throw new CheckoutException("ERRORSTOCK_" + productName, e.getShortfalls());
+        }
+
+        // Создание заказа
+        Order order = new Order();
+        order.setUser(user);
+        order.setDeliveryAddress(deliveryAddress);
+        order.setStatus(STATUS_PROCESSING);
+        order.setOrderDate(LocalDateTime.now());
+
+        order.setTotalAmount(totalAmount(cartItems));
+        order = orderRepository.save(order);
+
+        // Позиции заказа уходят в базу одним пакетом при сбросе сессии
+        List<OrderItem> orderItems = new ArrayList<>(cartItems.size());
+        for (CartItem item : cartItems) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setOrder(order);
+            orderItem.setProduct(item.getProduct());
+            orderItem.setQuantity(item.getQuantity());
+            orderItem.setPrice(item.getProduct().getPrice());
+            orderItems.add(orderItem);
+        }
+        orderItemRepository.saveAll(orderItems);
+
+        // Очищаем корзину одним запросом; копия в Redis очищается после фиксации транзакции
+        cartItemRepository.deleteAllByUserInBulk(user);
+        cartService.clear(user.getId());
+
+        // Событие создания заказа уходит в outbox в этой же транзакции
+        kafkaProducerService.sendOrderEvent(orderEvent("CREATED", order, user));
+        return order;
+    }
+
+    /**
+     * Сумма заказа по позициям корзины: цена товара, умноженная на количество
+     */
+    public static double totalAmount(List<CartItem> cartItems) {
+        double totalAmount = 0;
+        for (CartItem item : cartItems) {
+            totalAmount += item.getProduct().getPrice() * item.getQuantity();
+        }
+        return totalAmount;
+    }
+
+    /**
+     * Отменить заказ и вернуть товары на склад
+     * @param order заказ покупателя
+     * @throws CheckoutException если заказ уже не в обработке
+     */
+    @Transactional
+    public void cancelOrder(Order order) {
+        if (orderRepository.updateStatusIf(order.getId(), STATUS_PROCESSING, STATUS_CANCELLED) == 0) {
+            throw new CheckoutException("ERRORSTATUS");
+        }
+        // Товары распродажи возвращаются в остаток Redis после коммита, остальные - на склад одним запросом
+        Set<Integer> returnedToSale = new HashSet<>();
+        if (flashSaleService.isEnabled()) {
+            for (OrderItem item : orderItemRepository.findAllByOrder(order)) {
+                if (flashSaleService.returnToStockAfterCommit(item.getProduct().getId(), item.getQuantity())) {
+                    returnedToSale.add(item.getProduct().getId());
+                }
+            }
+        }
+        inventoryService.restockOrder(order.getId(), returnedToSale);
+        order.setStatus(STATUS_CANCELLED);
+
+        kafkaProducerService.sendOrderEvent(orderEvent("CANCELLED", order, order.getUser()));
+    }
+
+    private static OrderEvent orderEvent(String eventType, Order order, User user) {
+        OrderEvent event = new OrderEvent();
+        event.setEventType(eventType);
+        event.setOrderId(order.getId());
+        event.setUserId(user.getId());
+        event.setUserLogin(user.getLogin());
+        event.setTotalAmount(order.getTotalAmount());
+        event.setStatus(order.getStatus());
+        event.setDeliveryAddress(order.getDeliveryAddress());
+        return event;
+    }
+
+    /**
+     * Провести позиции, идущие на распродаже, через счетчики Redis.
+     * Проданные так товары убираются из quantities и в базе не списываются:
+     * квота распродажи уже снята со склада при ее запуске. При откате транзакции продажа возвращается в остаток.
+     */
+    private void commitFlashSale(User user, List<CartItem> cartItems, Map<Integer, Integer> quantities) {
+        if (!flashSaleService.isEnabled()) {
+            return;
+        }
+        List<StockShortfall> shortfalls = new ArrayList<>();
+        for (CartItem item : cartItems) {
+            Product product = item.getProduct();
+            Integer quantity = quantities.get(product.getId());
+            if (quantity == null) {
+                continue;
+            }
+            long sold = flashSaleService.commit(product.getId(), user.getId(), quantity);
+            if (sold == FlashSaleService.INSUFFICIENT) {
+                shortfalls.add(new StockShortfall(product.getId(), product.getName(), quantity, 0));
+            }
+            if (sold != FlashSaleService.NOT_ACTIVE) {
+                quantities.remove(product.getId());
+            }
+        }
+        if (!shortfalls.isEmpty()) {
+            throw new CheckoutException("ERRORSTOCK_" + shortfalls.get(0).getProductName(), shortfalls);
+        }
+    }
+}
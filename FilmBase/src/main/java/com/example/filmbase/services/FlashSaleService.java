@@ -0,0 +1,321 @@
+package com.example.filmbase.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Режим распродажи: квота товара при запуске списывается со склада в Postgres
+ * условным UPDATE и только после коммита переносится в счетчик Redis, поэтому
+ * обычное оформление заказа не может продать те же единицы. Резервирование и возврат
+ * выполняются атомарными Lua-скриптами. Резерв живет ограниченное время, просроченные
+ * резервы фоновая сверка возвращает в остаток. При завершении распродажи
+ * непроданный остаток вместе с резервами возвращается на склад в базе.
+ *
+ * Ключи товара (в фигурных скобках - hash tag, чтобы в кластере они жили на одном узле):
+ * flash:{id}:stock - доступный остаток, flash:{id}:holds - резерв по пользователям,
+ * flash:{id}:expiry - сроки резервов.
+ */
+@Service
+public class FlashSaleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlashSaleService.class);
+
+    private static final String ACTIVE_PRODUCTS_KEY = "flash:products";
+
+    public static final long NOT_ACTIVE = -2;
+    public static final long INSUFFICIENT = -1;
+    public static final long ALREADY_ACTIVE = -3;
+
+    // KEYS: stock, holds, expiry; ARGV: userId, quantity, expiresAt
+    // Устанавливает резерв пользователя равным quantity, докупая или возвращая разницу
+    private static final RedisScript<Long> RESERVE = new DefaultRedisScript<>(
+            "local stock = redis.call('GET', KEYS[1]) " +
+            "if not stock then return -2 end " +
+            "local held = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0') " +
+            "local delta = tonumber(ARGV[2]) - held " +
+            "if delta > tonumber(stock) then return -1 end " +
+            "local left = redis.call('DECRBY', KEYS[1], delta) " +
+            "if tonumber(ARGV[2]) > 0 then " +
+            "  redis.call('HSET', KEYS[2], ARGV[1], ARGV[2]) " +
+            "  redis.call('ZADD', KEYS[3], ARGV[3], ARGV[1]) " +
+            "else " +
+            "  redis.call('HDEL', KEYS[2], ARGV[1]) " +
+            "  redis.call('ZREM', KEYS[3], ARGV[1]) " +
+            "end " +
+            "return left", Long.class);
+
+    // KEYS: stock, holds, expiry; ARGV: userId, quantity
+    // Превращает резерв в продажу; если резерв истек или меньше - добирает из остатка
+    private static final RedisScript<Long> COMMIT = new DefaultRedisScript<>(
+            "local stock = redis.call('GET', KEYS[1]) " +
+            "if not stock then return -2 end " +
+            "local held = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0') " +
+            "local delta = tonumber(ARGV[2]) - held " +
+            "if delta > tonumber(stock) then return -1 end " +
+            "redis.call('DECRBY', KEYS[1], delta) " +
+            "redis.call('HDEL', KEYS[2], ARGV[1]) " +
+            "redis.call('ZREM', KEYS[3], ARGV[1]) " +
+            "return tonumber(ARGV[2])", Long.class);
+
+    // KEYS: stock; ARGV: quantity. Отмена продажи (откат транзакции или отмена заказа)
+    private static final RedisScript<Long> UNDO_COMMIT = new DefaultRedisScript<>(
+            "if not redis.call('GET', KEYS[1]) then return -2 end " +
+            "return redis.call('INCRBY', KEYS[1], ARGV[1])", Long.class);
+
+    // KEYS: stock, holds, expiry; ARGV: now. Возвращает просроченные резервы в остаток
+    private static final RedisScript<Long> SWEEP = new DefaultRedisScript<>(
+            "local expired = redis.call('ZRANGEBYSCORE', KEYS[3], '-inf', ARGV[1]) " +
+            "for _, user in ipairs(expired) do " +
+            "  local held = redis.call('HGET', KEYS[2], user) " +
+            "  if held then redis.call('INCRBY', KEYS[1], held) redis.call('HDEL', KEYS[2], user) end " +
+            "  redis.call('ZREM', KEYS[3], user) " +
+            "end " +
+            "return #expired", Long.class);
+
+    // KEYS: stock; ARGV: stock. Запуск распродажи, если она еще не идет
+    private static final RedisScript<Long> START = new DefaultRedisScript<>(
+            "return redis.call('SETNX', KEYS[1], ARGV[1])", Long.class);
+
+    // KEYS: stock, holds, expiry. Завершение распродажи: удаляет счетчики
+    // и возвращает непроданный остаток вместе с резервами
+    private static final RedisScript<Long> STOP = new DefaultRedisScript<>(
+            "local stock = redis.call('GET', KEYS[1]) " +
+            "if not stock then return -2 end " +
+            "local left = tonumber(stock) " +
+            "for _, held in ipairs(redis.call('HVALS', KEYS[2])) do left = left + tonumber(held) end " +
+            "redis.call('DEL', KEYS[1], KEYS[2], KEYS[3]) " +
+            "return left", Long.class);
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${filmbase.flash-sale.enabled:false}")
+    private boolean enabled;
+
+    @Value("${filmbase.flash-sale.hold-seconds:600}")
+    private long holdSeconds;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Запустить распродажу товара. Квота сначала списывается со склада в базе
+     * условным UPDATE в отдельной транзакции и только после ее коммита переносится в Redis.
+     * @param quantity квота распродажи, null - весь текущий остаток
+     * @return перенесенная квота, INSUFFICIENT если на складе меньше, ALREADY_ACTIVE если распродажа уже идет
+     */
+    public long start(int productId, Integer quantity) {
+        if (Boolean.TRUE.equals(redisService.hasKey(stockKey(productId)))) {
+            return ALREADY_ACTIVE;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Integer allotment = transaction.execute(status -> {
+            int amount = quantity != null ? quantity : jdbcTemplate.queryForObject(
+                    "SELECT stock_quantity FROM product WHERE id = ? FOR UPDATE", Integer.class, productId);
+            if (amount < 0) {
+                return null;
+            }
+            int updated = jdbcTemplate.update(
+                    "UPDATE product SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?",
+                    amount, productId, amount);
+            return updated == 1 ? amount : null;
+        });
+        if (allotment == null) {
+            return INSUFFICIENT;
+        }
+
+        Long started;
+        try {
+            started = redisService.executeScript(START, Arrays.asList(stockKey(productId)), allotment);
+        } catch (RuntimeException e) {
+            restock(productId, allotment);
+            throw e;
+        }
+        if (started == null || started != 1) {
+            // Распродажу параллельно запустил другой запрос - квота возвращается на склад
+            restock(productId, allotment);
+            return ALREADY_ACTIVE;
+        }
+        redisService.addToSet(ACTIVE_PRODUCTS_KEY, String.valueOf(productId));
+        catalogCache.invalidate();
+        return allotment;
+    }
+
+    /**
+     * Завершить распродажу: удалить счетчики и вернуть на склад непроданный остаток
+     * вместе с незавершенными резервами. Корзины дальше оформляются через базу.
+     */
+    public void stop(int productId) {
+        redisService.removeFromSet(ACTIVE_PRODUCTS_KEY, String.valueOf(productId));
+        Long left = redisService.executeScript(STOP,
+                Arrays.asList(stockKey(productId), holdsKey(productId), expiryKey(productId)));
+        if (left == null || left <= 0) {
+            return;
+        }
+        try {
+            restock(productId, left.intValue());
+        } catch (RuntimeException e) {
+            logger.error("Flash sale stock of product {} was not returned to the database: {} units",
+                    productId, left, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Зарезервировать товар за пользователем (заменяет прежний резерв)
+     * @param quantity итоговое количество в резерве, 0 - снять резерв
+     * @return остаток после резерва, INSUFFICIENT или NOT_ACTIVE
+     */
+    public long reserve(int productId, int userId, int quantity) {
+        if (!enabled) {
+            return NOT_ACTIVE;
+        }
+        long expiresAt = System.currentTimeMillis() + holdSeconds * 1000;
+        Long result = redisService.executeScript(RESERVE,
+                Arrays.asList(stockKey(productId), holdsKey(productId), expiryKey(productId)),
+                userId, quantity, expiresAt);
+        return result != null ? result : NOT_ACTIVE;
+    }
+
+    /**
+     * Превратить резерв в продажу при оформлении заказа.
+     * Если вызвано внутри транзакции, при ее откате продажа возвращается в остаток,
+     * а если распродажа к тому моменту завершена - на склад в базе.
+     * @return проданное количество, INSUFFICIENT или NOT_ACTIVE
+     */
+    public long commit(int productId, int userId, int quantity) {
+        if (!enabled) {
+            return NOT_ACTIVE;
+        }
+        Long result = redisService.executeScript(COMMIT,
+                Arrays.asList(stockKey(productId), holdsKey(productId), expiryKey(productId)),
+                userId, quantity);
+        long sold = result != null ? result : NOT_ACTIVE;
+        if (sold > 0 && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        returnToSaleOrDatabase(productId, quantity);
+                    }
+                }
+            });
+        }
+        return sold;
+    }
+
+    /**
+     * Вернуть проданное количество в остаток распродажи
+     * @return true, если товар на распродаже и количество возвращено в Redis
+     */
+    public boolean returnToStock(int productId, int quantity) {
+        if (!enabled) {
+            return false;
+        }
+        Long result = redisService.executeScript(UNDO_COMMIT, Arrays.asList(stockKey(productId)), quantity);
+        return result != null && result != NOT_ACTIVE;
+    }
+
+    /**
+     * Вернуть количество отмененного заказа в остаток распродажи после коммита транзакции.
+     * Redis не откатывается вместе с базой, поэтому возврат выполняется только в afterCommit;
+     * без активной транзакции - сразу. Если к тому моменту распродажа уже завершена
+     * (ее остаток вернулся в базу), количество возвращается на склад в базе.
+     * @return true, если товар сейчас на распродаже и возврат берет на себя этот сервис
+     */
+    public boolean returnToStockAfterCommit(int productId, int quantity) {
+        if (!enabled || !Boolean.TRUE.equals(redisService.hasKey(stockKey(productId)))) {
+            return false;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            returnToSaleOrDatabase(productId, quantity);
+            return true;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                returnToSaleOrDatabase(productId, quantity);
+            }
+        });
+        return true;
+    }
+
+    private void returnToSaleOrDatabase(int productId, int quantity) {
+        if (!returnToStock(productId, quantity)) {
+            restock(productId, quantity);
+        }
+    }
+
+    private void restock(int productId, int quantity) {
+        // В afterCommit соединение завершенной транзакции еще привязано к потоку - нужна своя
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE product SET stock_quantity = stock_quantity + ? WHERE id = ?", quantity, productId));
+        catalogCache.invalidate();
+    }
+
+    /**
+     * Фоновая сверка: возврат просроченных резервов в остаток распродажи
+     */
+    @Scheduled(fixedDelayString = "${filmbase.flash-sale.reconcile-interval-ms:5000}")
+    public void reconcileAll() {
+        if (!enabled) {
+            return;
+        }
+        Set<String> products = redisService.members(ACTIVE_PRODUCTS_KEY);
+        if (products == null || products.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long expired = 0;
+        for (String member : products) {
+            int productId = Integer.parseInt(member);
+            Long swept = redisService.executeScript(SWEEP,
+                    Arrays.asList(stockKey(productId), holdsKey(productId), expiryKey(productId)), now);
+            expired += swept != null ? swept : 0;
+        }
+        if (expired > 0) {
+            logger.info("Flash sale returned {} expired holds", expired);
+        }
+    }
+
+    private static String stockKey(int productId) {
+        return "flash:{" + productId + "}:stock";
+    }
+
+    private static String holdsKey(int productId) {
+        return "flash:{" + productId + "}:holds";
+    }
+
+    private static String expiryKey(int productId) {
+        return "flash:{" + productId + "}:expiry";
+    }
+}
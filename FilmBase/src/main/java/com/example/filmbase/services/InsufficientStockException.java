@@ -0,0 +1,23 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.StockShortfall;
+
+import java.util.List;
+
+/**
+ * На складе не хватает товара хотя бы по одной позиции.
+ * Выбрасывается внутри транзакции, чтобы уже списанные позиции откатились.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private final List<StockShortfall> shortfalls;
+
+    public InsufficientStockException(List<StockShortfall> shortfalls) {
+        super("Недостаточно товара на складе: " + shortfalls);
+        this.shortfalls = shortfalls;
+    }
+
+    public List<StockShortfall> getShortfalls() {
+        return shortfalls;
+    }
+}
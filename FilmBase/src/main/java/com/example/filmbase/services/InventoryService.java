@@ -0,0 +1,120 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.StockShortfall;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Складские остатки без чтения-изменения-записи в Java.
+ * Списание - условный UPDATE по каждой позиции (stock >= количества),
+ * возврат - один UPDATE по позициям заказа. Блокируются только строки
+ * затронутых товаров, поэтому заказы с разными товарами не ждут друг друга.
+ *
+ * Методы нужно вызывать внутри транзакции: при нехватке выбрасывается
+ * InsufficientStockException, и уже списанные позиции откатываются.
+ */
+@Service
+public class InventoryService {
+
+    private static final String DECREMENT_SQL =
+            "UPDATE product SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+
+    private static final String RESTOCK_ORDER_SQL =
+            "UPDATE product SET stock_quantity = stock_quantity + " +
+            "(SELECT SUM(oi.quantity) FROM order_item oi WHERE oi.order_id = ? AND oi.product_id = product.id) " +
+            "WHERE id IN (SELECT product_id FROM order_item WHERE order_id = ?)";
+
+    private static final String RESTOCK_ORDER_EXCLUDING_SQL =
+            "UPDATE product SET stock_quantity = stock_quantity + " +
+            "(SELECT SUM(oi.quantity) FROM order_item oi WHERE oi.order_id = :orderId AND oi.product_id = product.id) " +
+            "WHERE id IN (SELECT product_id FROM order_item WHERE order_id = :orderId) AND id NOT IN (:excluded)";
+
+    private static final String STOCK_SQL =
+            "SELECT id, name, stock_quantity FROM product WHERE id IN (:ids)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public InventoryService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * Списать товары со склада
+     * @param quantities количество по id товара
+     * @throws InsufficientStockException с перечнем позиций, которых не хватило
+     */
+    public void decrement(Map<Integer, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        // Строки блокируются в порядке id, чтобы параллельные заказы не взаимоблокировались
+        SortedMap<Integer, Integer> lines = new TreeMap<>(quantities);
+        List<Object[]> args = new ArrayList<>(lines.size());
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            args.add(new Object[]{line.getValue(), line.getKey(), line.getValue()});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_SQL, args);
+
+        Map<Integer, Integer> missing = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            if (updated[i++] == 0) {
+                missing.put(line.getKey(), line.getValue());
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new InsufficientStockException(describeShortfalls(missing));
+        }
+    }
+
+    /**
+     * Вернуть на склад все позиции заказа
+     * @param orderId id заказа
+     * @return количество товаров, остаток которых изменился
+     */
+    public int restockOrder(int orderId) {
+        return jdbcTemplate.update(RESTOCK_ORDER_SQL, orderId, orderId);
+    }
+
+    /**
+     * Вернуть на склад позиции заказа, кроме указанных товаров
+     * @param orderId id заказа
+     * @param excludedProductIds товары, остаток которых возвращен в другом месте (распродажа)
+     * @return количество товаров, остаток которых изменился
+     */
+    public int restockOrder(int orderId, Collection<Integer> excludedProductIds) {
+        if (excludedProductIds.isEmpty()) {
+            return restockOrder(orderId);
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("orderId", orderId)
+                .addValue("excluded", excludedProductIds);
+        return namedJdbcTemplate.update(RESTOCK_ORDER_EXCLUDING_SQL, params);
+    }
+
+    private List<StockShortfall> describeShortfalls(Map<Integer, Integer> missing) {
+        Map<Integer, StockShortfall> byId = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> line : missing.entrySet()) {
+            // Товар мог быть удален: тогда остаток считается нулевым
+            byId.put(line.getKey(), new StockShortfall(line.getKey(), null, line.getValue(), 0));
+        }
+        namedJdbcTemplate.query(STOCK_SQL, new MapSqlParameterSource("ids", missing.keySet()), rs -> {
+            StockShortfall shortfall = byId.get(rs.getInt("id"));
+            shortfall.setProductName(rs.getString("name"));
+            shortfall.setAvailable(rs.getInt("stock_quantity"));
+        });
+        return new ArrayList<>(byId.values());
+    }
+}
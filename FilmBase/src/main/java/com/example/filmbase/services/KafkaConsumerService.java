@@ -1,145 +1,200 @@
 package com.example.filmbase.services;
 
+import com.example.filmbase.config.KafkaConfig;
 import com.example.filmbase.dto.CartEvent;
 import com.example.filmbase.dto.OrderEvent;
 import com.example.filmbase.dto.ProductEvent;
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.repositories.ProductRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Service
 public class KafkaConsumerService {
 
     private static final Logger logger = LoggerFactory.getLogger(KafkaConsumerService.class);
 
+    // id контейнеров слушателей в KafkaListenerEndpointRegistry
+    public static final String ORDER_LISTENER_ID = "orders-listener";
+    public static final String PRODUCT_LISTENER_ID = "products-listener";
+    public static final String CART_LISTENER_ID = "cart-listener";
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private ProductSearchService productSearchService;
+
+    @Autowired
+    private ProductSuggestService productSuggestService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
     @Autowired
-    private RedisService redisService;
+    private CartAnalyticsService cartAnalyticsService;
+
+    @Autowired
+    private OrderTimeSeriesService orderTimeSeriesService;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
 
     /**
-     * Обработка событий заказов
+     * Обработка событий заказов пачкой.
+     * События дописываются во временной ряд в Redis одним конвейером на всю пачку
+     * и учитываются в витринах продаж.
      */
-    @KafkaListener(topics = "orders", groupId = "onlineshop-group")
-    public void consumeOrderEvent(
-            @Payload OrderEvent event,
-            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
-            @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
-            @Header(KafkaHeaders.OFFSET) long offset) {
-        
-        logger.info("Received OrderEvent: eventType={}, orderId={}, userId={}, amount={}",
-                event.getEventType(), event.getOrderId(), event.getUserId(), event.getTotalAmount());
-
-        // Обработка события заказа
-        try {
-            switch (event.getEventType()) {
-                case "CREATED":
-                    handleOrderCreated(event);
-                    break;
-                case "CANCELLED":
-                    handleOrderCancelled(event);
-                    break;
-                case "DELIVERED":
-                    handleOrderDelivered(event);
-                    break;
+    @KafkaListener(id = ORDER_LISTENER_ID, topics = KafkaConfig.ORDER_TOPIC, groupId = "onlineshop-group",
+            containerFactory = KafkaConfig.ORDER_LISTENER_FACTORY)
+    public void consumeOrderEvents(@Payload List<OrderEvent> events) {
+        logger.info("Received {} OrderEvents", events.size());
+
+        for (OrderEvent event : events) {
+            logger.debug("Received OrderEvent: eventType={}, orderId={}, userId={}, amount={}",
+                    event.getEventType(), event.getOrderId(), event.getUserId(), event.getTotalAmount());
+
+            // Обработка события заказа
+            try {
+                switch (event.getEventType()) {
+                    case "CREATED":
+                        handleOrderCreated(event);
+                        break;
+                    case "CANCELLED":
+                        handleOrderCancelled(event);
+                        break;
+                    case "DELIVERED":
+                        handleOrderDelivered(event);
+                        break;
+                }
+            } catch (Exception e) {
+                logger.error("Error processing OrderEvent: {}", e.getMessage(), e);
             }
-            
-            // Сохраняем событие в Redis для аналитики (только основные данные)
-            String cacheKey = "order:event:" + event.getOrderId();
-            // Сохраняем как строку JSON для избежания проблем с сериализацией
-            String eventData = String.format("{\"orderId\":%d,\"userId\":%d,\"eventType\":\"%s\",\"amount\":%.2f,\"status\":\"%s\"}",
-                event.getOrderId(), event.getUserId(), event.getEventType(), 
-                event.getTotalAmount(), event.getStatus());
-            redisService.set(cacheKey, eventData, 3600); // Храним 1 час
+        }
+
+        // Сохраняем события во временной ряд для аналитики
+        try {
+            orderTimeSeriesService.record(events);
         } catch (Exception e) {
-            logger.error("Error processing OrderEvent: {}", e.getMessage(), e);
+            logger.error("Error saving {} OrderEvents to Redis: {}", events.size(), e.getMessage(), e);
+        }
+
+        // Витрины продаж обновляются одной транзакцией на пачку
+        try {
+            salesRollupService.apply(events);
+        } catch (Exception e) {
+            logger.error("Error applying {} OrderEvents to sales rollups: {}", events.size(), e.getMessage(), e);
         }
     }
 
     /**
-     * Обработка событий товаров
+     * Обработка событий товаров пачкой.
+     * У каждого экземпляра своя группа (см. KafkaConfig.catalogGroupId), чтобы событие
+     * получили все узлы и обновили свои локальные кеши каталога, поисковый индекс и подсказки.
+     * События одного товара в пачке схлопываются в последнее, измененные товары
+     * перечитываются одним запросом, а кеш каталога сбрасывается один раз на пачку.
      */
-    @KafkaListener(topics = "products", groupId = "onlineshop-group")
-    public void consumeProductEvent(
-            @Payload ProductEvent event,
-            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic) {
-        
-        logger.info("Received ProductEvent: eventType={}, productId={}, productName={}",
-                event.getEventType(), event.getProductId(), event.getProductName());
+    @KafkaListener(id = PRODUCT_LISTENER_ID, topics = KafkaConfig.PRODUCT_TOPIC,
+            groupId = "#{@kafkaConfig.catalogGroupId()}",
+            properties = "auto.offset.reset=latest",
+            containerFactory = KafkaConfig.PRODUCT_LISTENER_FACTORY)
+    public void consumeProductEvents(@Payload List<ProductEvent> events) {
+        logger.info("Received {} ProductEvents", events.size());
+
+        Map<Integer, ProductEvent> latest = new LinkedHashMap<>();
+        for (ProductEvent event : events) {
+            logger.debug("Received ProductEvent: eventType={}, productId={}, productName={}",
+                    event.getEventType(), event.getProductId(), event.getProductName());
+            latest.put(event.getProductId(), event);
+        }
 
         try {
-            switch (event.getEventType()) {
-                case "CREATED":
-                    handleProductCreated(event);
-                    break;
-                case "UPDATED":
-                    handleProductUpdated(event);
-                    break;
-                case "DELETED":
-                    handleProductDeleted(event);
-                    break;
+            Set<Integer> changedIds = new HashSet<>();
+            Set<Integer> removedIds = new HashSet<>();
+            for (ProductEvent event : latest.values()) {
+                if ("DELETED".equals(event.getEventType())) {
+                    removedIds.add(event.getProductId());
+                } else {
+                    changedIds.add(event.getProductId());
+                }
             }
-            
+            refreshProducts(changedIds, removedIds);
+
             // Очищаем кеш товаров при изменениях
-            redisService.delete("products:all");
+            catalogCache.invalidate();
         } catch (Exception e) {
-            logger.error("Error processing ProductEvent: {}", e.getMessage(), e);
+            logger.error("Error processing {} ProductEvents: {}", events.size(), e.getMessage(), e);
         }
     }
 
     /**
-     * Обработка событий корзины
+     * Обработка событий корзины пачкой: воронка корзины для аналитики.
+     * У каждого экземпляра своя группа, чтобы его счетчики видели все события,
+     * а не только события своих партиций (см. KafkaConfig.cartAnalyticsGroupId).
      */
-    @KafkaListener(topics = "cart", groupId = "onlineshop-group")
-    public void consumeCartEvent(@Payload CartEvent event) {
-        
-        logger.info("Received CartEvent: eventType={}, userId={}, productId={}, quantity={}",
-                event.getEventType(), event.getUserId(), event.getProductId(), event.getQuantity());
-
+    @KafkaListener(id = CART_LISTENER_ID, topics = KafkaConfig.CART_TOPIC,
+            groupId = "#{@kafkaConfig.cartAnalyticsGroupId()}",
+            properties = "auto.offset.reset=latest",
+            containerFactory = KafkaConfig.CART_LISTENER_FACTORY)
+    public void consumeCartEvents(@Payload List<CartEvent> events) {
+        logger.info("Received {} CartEvents", events.size());
+
+        for (CartEvent event : events) {
+            logger.debug("Received CartEvent: eventType={}, userId={}, productId={}, quantity={}",
+                    event.getEventType(), event.getUserId(), event.getProductId(), event.getQuantity());
+        }
         try {
-            // Можно добавить логику обработки событий корзины
-            // Например, обновление статистики, отправка уведомлений и т.д.
+            cartAnalyticsService.record(events);
         } catch (Exception e) {
-            logger.error("Error processing CartEvent: {}", e.getMessage(), e);
+            logger.error("Error processing {} CartEvents: {}", events.size(), e.getMessage(), e);
         }
     }
 
     // Обработчики событий заказов
     private void handleOrderCreated(OrderEvent event) {
-        logger.info("Processing order creation: OrderId={}, Amount={}", 
+        logger.debug("Processing order creation: OrderId={}, Amount={}", 
                 event.getOrderId(), event.getTotalAmount());
         // Здесь можно добавить логику: отправка email, обновление статистики и т.д.
     }
 
     private void handleOrderCancelled(OrderEvent event) {
-        logger.info("Processing order cancellation: OrderId={}", event.getOrderId());
+        logger.debug("Processing order cancellation: OrderId={}", event.getOrderId());
         // Здесь можно добавить логику: возврат товаров на склад, уведомления и т.д.
     }
 
     private void handleOrderDelivered(OrderEvent event) {
-        logger.info("Processing order delivery: OrderId={}", event.getOrderId());
+        logger.debug("Processing order delivery: OrderId={}", event.getOrderId());
         // Здесь можно добавить логику: отправка уведомления клиенту и т.д.
     }
 
-    // Обработчики событий товаров
-    private void handleProductCreated(ProductEvent event) {
-        logger.info("Processing product creation: ProductId={}, Name={}", 
-                event.getProductId(), event.getProductName());
-    }
-
-    private void handleProductUpdated(ProductEvent event) {
-        logger.info("Processing product update: ProductId={}, Name={}", 
-                event.getProductId(), event.getProductName());
-    }
-
-    private void handleProductDeleted(ProductEvent event) {
-        logger.info("Processing product deletion: ProductId={}, Name={}", 
-                event.getProductId(), event.getProductName());
+    /**
+     * Перечитать измененные товары из базы одним запросом и обновить локальные индексы
+     */
+    private void refreshProducts(Set<Integer> changedIds, Set<Integer> removedIds) {
+        List<Product> changed = changedIds.isEmpty()
+                ? Collections.emptyList()
+                : productRepository.findAllWithCategoryByIdIn(changedIds);
+        for (Product product : changed) {
+            productSearchService.put(product);
+            changedIds.remove(product.getId());
+        }
+        // Товары, которых уже нет в базе, удалены после отправки события
+        removedIds.addAll(changedIds);
+        for (Integer productId : removedIds) {
+            productSearchService.remove(productId);
+        }
+        productSuggestService.update(changed, removedIds);
+        logger.info("Applied catalog changes: {} updated, {} removed", changed.size(), removedIds.size());
     }
 }
-
-
-
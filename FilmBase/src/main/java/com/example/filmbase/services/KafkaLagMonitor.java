@@ -0,0 +1,190 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.config.KafkaConfig;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Следит за отставанием групп потребителей и меняет число потоков слушателей.
+ * Нужное число потоков - отставание, деленное на filmbase.kafka.lag.per-consumer,
+ * но не больше числа партиций топика и не больше filmbase.kafka.max-concurrency
+ * (по умолчанию - число ядер). Рост применяется сразу, а снижение - только после
+ * нескольких проверок подряд, чтобы не перезапускать контейнер на каждом всплеске.
+ *
+ * Смена параллельности перезапускает контейнер: группа перебалансируется,
+ * незакоммиченные записи будут прочитаны повторно (обработка и так "хотя бы один раз").
+ *
+ * Последнее измеренное отставание каждого слушателя публикуется в метрике
+ * filmbase.kafka.consumer.lag; оно измеряется и при выключенном масштабировании.
+ */
+@Service
+public class KafkaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaLagMonitor.class);
+
+    private static final long ADMIN_TIMEOUT_MS = 5000;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    private final KafkaAdmin kafkaAdmin;
+    private final boolean enabled;
+    private final long lagPerConsumer;
+    private final int maxConcurrency;
+    private final int scaleDownChecks;
+
+    // Предел параллельности по id контейнера и число проверок подряд, когда хватает меньшего
+    private final Map<String, Integer> partitionsByListener = new LinkedHashMap<>();
+    private final Map<String, Integer> lowLagChecks = new HashMap<>();
+
+    // Последнее отставание по id контейнера
+    private final Map<String, Long> lags = new ConcurrentHashMap<>();
+
+    private AdminClient adminClient;
+
+    public KafkaLagMonitor(KafkaAdmin kafkaAdmin,
+                           @Value("${filmbase.kafka.lag.enabled:true}") boolean enabled,
+                           @Value("${filmbase.kafka.lag.per-consumer:1000}") long lagPerConsumer,
+                           @Value("${filmbase.kafka.max-concurrency:0}") int maxConcurrency,
+                           @Value("${filmbase.kafka.lag.scale-down-checks:3}") int scaleDownChecks) {
+        this.kafkaAdmin = kafkaAdmin;
+        this.enabled = enabled;
+        this.lagPerConsumer = Math.max(1, lagPerConsumer);
+        this.maxConcurrency = maxConcurrency > 0 ? maxConcurrency : Runtime.getRuntime().availableProcessors();
+        this.scaleDownChecks = scaleDownChecks;
+
+        partitionsByListener.put(KafkaConsumerService.ORDER_LISTENER_ID, KafkaConfig.ORDER_PARTITIONS);
+        partitionsByListener.put(KafkaConsumerService.PRODUCT_LISTENER_ID, KafkaConfig.PRODUCT_PARTITIONS);
+        partitionsByListener.put(KafkaConsumerService.CART_LISTENER_ID, KafkaConfig.CART_PARTITIONS);
+    }
+
+    @Autowired
+    public void bindMetrics(MeterRegistry meterRegistry) {
+        for (String listenerId : partitionsByListener.keySet()) {
+            Gauge.builder("filmbase.kafka.consumer.lag", lags, values -> {
+                        Long lag = values.get(listenerId);
+                        return lag != null ? lag : Double.NaN;
+                    })
+                    .description("Records not yet consumed by the listener's group, as of the last check")
+                    .tag("listener", listenerId)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Проверить отставание всех слушателей и при необходимости поменять число потоков
+     */
+    @Scheduled(fixedDelayString = "${filmbase.kafka.lag.check-interval-ms:10000}",
+            initialDelayString = "${filmbase.kafka.lag.check-interval-ms:10000}")
+    public void rebalance() {
+        for (Map.Entry<String, Integer> entry : partitionsByListener.entrySet()) {
+            MessageListenerContainer container = registry.getListenerContainer(entry.getKey());
+            if (!(container instanceof ConcurrentMessageListenerContainer) || !container.isRunning()) {
+                continue;
+            }
+            try {
+                ConcurrentMessageListenerContainer<?, ?> concurrent = (ConcurrentMessageListenerContainer<?, ?>) container;
+                long lag = lag(concurrent.getGroupId());
+                lags.put(entry.getKey(), lag);
+                if (enabled) {
+                    adjust(entry.getKey(), concurrent, entry.getValue(), lag);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException | RuntimeException e) {
+                logger.warn("Unable to check lag of {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Суммарное отставание группы по всем ее партициям
+     * @param groupId группа потребителей
+     * @return число непрочитанных записей, 0 если группа еще ничего не закоммитила
+     */
+    public long lag(String groupId) throws InterruptedException, ExecutionException, TimeoutException {
+        Map<TopicPartition, OffsetAndMetadata> committed = admin().listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata().get(ADMIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (committed.isEmpty()) {
+            return 0;
+        }
+
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        for (TopicPartition partition : committed.keySet()) {
+            latest.put(partition, OffsetSpec.latest());
+        }
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> ends = admin().listOffsets(latest)
+                .all().get(ADMIN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        long lag = 0;
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+            ListOffsetsResult.ListOffsetsResultInfo end = ends.get(entry.getKey());
+            if (end != null && entry.getValue() != null) {
+                lag += Math.max(0, end.offset() - entry.getValue().offset());
+            }
+        }
+        return lag;
+    }
+
+    private void adjust(String listenerId, ConcurrentMessageListenerContainer<?, ?> container, int partitions,
+                        long lag) {
+        int limit = Math.min(partitions, maxConcurrency);
+        int desired = (int) Math.min(limit, Math.max(1, (lag + lagPerConsumer - 1) / lagPerConsumer));
+        int current = container.getConcurrency();
+
+        if (desired < current) {
+            int checks = lowLagChecks.merge(listenerId, 1, Integer::sum);
+            if (checks < scaleDownChecks) {
+                return;
+            }
+        }
+        lowLagChecks.remove(listenerId);
+        if (desired == current) {
+            return;
+        }
+
+        logger.info("Listener {}: lag={}, concurrency {} -> {}", listenerId, lag, current, desired);
+        container.stop();
+        container.setConcurrency(desired);
+        container.start();
+    }
+
+    private synchronized AdminClient admin() {
+        if (adminClient == null) {
+            adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+        }
+        return adminClient;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (adminClient != null) {
+            adminClient.close();
+        }
+    }
+}
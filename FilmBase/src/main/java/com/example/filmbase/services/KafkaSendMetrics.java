@@ -0,0 +1,61 @@
+package com.example.filmbase.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики отправки в Kafka по топикам: filmbase.kafka.producer.send - время от send()
+ * до подтверждения брокером с тегом result, filmbase.kafka.producer.errors - неудачные отправки,
+ * включая ошибки до передачи продюсеру (сериализация, переполненный буфер).
+ */
+@Component
+public class KafkaSendMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> errors = new ConcurrentHashMap<>();
+
+    /**
+     * Засечь отправку: время записывается, когда брокер подтвердит или отклонит сообщение
+     * @return тот же future
+     */
+    public <K, V> ListenableFuture<SendResult<K, V>> record(String topic, ListenableFuture<SendResult<K, V>> future) {
+        long start = System.nanoTime();
+        future.addCallback(
+                result -> timer(topic, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS),
+                ex -> {
+                    timer(topic, "failure").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    failed(topic);
+                });
+        return future;
+    }
+
+    /**
+     * Учесть отправку, которая не дошла до продюсера
+     */
+    public void failed(String topic) {
+        errors.computeIfAbsent(topic, key -> Counter.builder("filmbase.kafka.producer.errors")
+                .description("Kafka sends that failed")
+                .tag("topic", topic)
+                .register(meterRegistry))
+                .increment();
+    }
+
+    private Timer timer(String topic, String result) {
+        return timers.computeIfAbsent(topic + '|' + result, key -> Timer.builder("filmbase.kafka.producer.send")
+                .description("Time from send() to broker acknowledgement")
+                .tag("topic", topic)
+                .tag("result", result)
+                .register(meterRegistry));
+    }
+}
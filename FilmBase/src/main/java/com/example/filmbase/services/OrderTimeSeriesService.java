@@ -0,0 +1,164 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.analytics.OrderTimeline;
+import com.example.filmbase.dto.OrderEvent;
+import com.example.filmbase.dto.OrderHistoryEntry;
+import com.example.filmbase.dto.OrderSeriesFootprint;
+import com.example.filmbase.dto.OrderSeriesStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Временной ряд событий заказов в Redis, разбитый по суткам (см. OrderTimeline).
+ * Каждые сутки - отдельные ключи с временем жизни retention-days, поэтому старые
+ * события удаляются самим Redis целыми сутками, без сканирования ключей.
+ *
+ * Заказы и выручка за интервал - ZRANGEBYSCORE по суткам интервала одним конвейером,
+ * история заказа - ZRANGEBYLEX по всем хранимым суткам, тоже одним конвейером.
+ */
+@Service
+public class OrderTimeSeriesService {
+
+    private static final long SECONDS_PER_DAY = 24 * 3600;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Value("${filmbase.analytics.orders.retention-days:30}")
+    private int retentionDays;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /**
+     * Дописать пачку событий в ряд. События старше срока хранения пропускаются.
+     */
+    public void record(List<OrderEvent> events) {
+        LocalDate oldest = oldestDay();
+        Map<String, Map<String, Double>> members = new HashMap<>();
+        for (OrderEvent event : events) {
+            if (event.getOrderId() == null || event.getEventType() == null) {
+                continue;
+            }
+            LocalDateTime time = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now(zone);
+            LocalDate day = time.toLocalDate();
+            if (day.isBefore(oldest)) {
+                continue;
+            }
+            long millis = time.atZone(zone).toInstant().toEpochMilli();
+            members.computeIfAbsent(OrderTimeline.timeKey(day), key -> new HashMap<>())
+                    .put(OrderTimeline.timeMember(event), (double) millis);
+            members.computeIfAbsent(OrderTimeline.orderKey(day), key -> new HashMap<>())
+                    .put(OrderTimeline.orderMember(event, millis), 0d);
+        }
+        redisService.addToSortedSets(members, retentionDays * SECONDS_PER_DAY);
+    }
+
+    /**
+     * Заказы, выручка и отмены за интервал [from, to).
+     * Сутки читаются только в пределах срока хранения и не позже сегодняшних:
+     * дальний to не превращается в перебор ключей будущих суток.
+     * @throws IllegalArgumentException если from позже to
+     */
+    public OrderSeriesStats stats(LocalDateTime from, LocalDateTime to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from " + from + " is after to " + to);
+        }
+        LocalDate today = LocalDate.now(zone);
+        LocalDate firstDay = from.toLocalDate().isBefore(oldestDay()) ? oldestDay() : from.toLocalDate();
+        LocalDate lastDay = to.toLocalDate().isAfter(today) ? today : to.toLocalDate();
+        List<String> keys = new ArrayList<>();
+        for (LocalDate day : OrderTimeline.days(firstDay, lastDay)) {
+            keys.add(OrderTimeline.timeKey(day));
+        }
+
+        long created = 0;
+        long cancelled = 0;
+        long delivered = 0;
+        BigDecimal revenue = BigDecimal.ZERO;
+        BigDecimal cancelledAmount = BigDecimal.ZERO;
+        long min = toMillis(from);
+        long max = toMillis(to) - 1;
+        if (!keys.isEmpty() && min <= max) {
+            for (Set<ZSetOperations.TypedTuple<String>> range : redisService.rangeByScore(keys, min, max)) {
+                for (ZSetOperations.TypedTuple<String> tuple : range) {
+                    OrderTimeline.Entry entry = OrderTimeline.parseTimeMember(tuple.getValue(),
+                            tuple.getScore() != null ? tuple.getScore().longValue() : 0);
+                    if (entry == null) {
+                        continue;
+                    }
+                    BigDecimal amount = entry.getAmount() != null ? entry.getAmount() : BigDecimal.ZERO;
+                    switch (entry.getEventType()) {
+                        case "CREATED":
+                            created++;
+                            revenue = revenue.add(amount);
+                            break;
+                        case "CANCELLED":
+                            cancelled++;
+                            cancelledAmount = cancelledAmount.add(amount);
+                            break;
+                        case "DELIVERED":
+                            delivered++;
+                            break;
+                    }
+                }
+            }
+        }
+        return new OrderSeriesStats(from, to, created, revenue.doubleValue(), cancelled,
+                cancelledAmount.doubleValue(), delivered);
+    }
+
+    /**
+     * События заказа за срок хранения, по времени
+     */
+    public List<OrderHistoryEntry> history(int orderId) {
+        List<String> keys = new ArrayList<>();
+        for (LocalDate day : OrderTimeline.days(oldestDay(), LocalDate.now(zone))) {
+            keys.add(OrderTimeline.orderKey(day));
+        }
+        List<OrderHistoryEntry> history = new ArrayList<>();
+        for (Set<String> range : redisService.rangeByLex(keys,
+                OrderTimeline.orderRangeMin(orderId), OrderTimeline.orderRangeMax(orderId))) {
+            for (String member : range) {
+                OrderTimeline.Entry entry = OrderTimeline.parseOrderMember(member);
+                if (entry == null) {
+                    continue;
+                }
+                history.add(new OrderHistoryEntry(entry.getEventType(), entry.getStatus(),
+                        entry.getAmount() != null ? entry.getAmount().doubleValue() : null,
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.getMillis()), zone)));
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Память, которую ряд занимает за сутки, в пересчете на событие
+     */
+    public OrderSeriesFootprint footprint(LocalDate day) {
+        long events = redisService.sortedSetSize(OrderTimeline.timeKey(day));
+        long bytes = redisService.memoryUsage(OrderTimeline.timeKey(day))
+                + redisService.memoryUsage(OrderTimeline.orderKey(day));
+        return new OrderSeriesFootprint(day, events, bytes, events > 0 ? bytes / events : 0);
+    }
+
+    private LocalDate oldestDay() {
+        return LocalDate.now(zone).minusDays(retentionDays - 1L);
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+}
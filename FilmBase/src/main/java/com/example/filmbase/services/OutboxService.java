@@ -0,0 +1,288 @@
+package com.example.filmbase.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Транзакционный outbox для событий Kafka.
+ * Событие записывается в таблицу outbox_event в той же транзакции, что и изменение данных,
+ * а фоновый ретранслятор отправляет накопленные события пачками и помечает отправленные.
+ * Доставка "хотя бы один раз": при сбое отправки событие уйдет повторно в следующем проходе.
+ *
+ * Проход ретранслятора не держит транзакцию, пока ждет Kafka:
+ * короткой транзакцией пачка захватывается - строкам ставится claimed_until (аренда),
+ * затем сообщения отправляются без транзакции и соединения, и второй короткой транзакцией
+ * отправленные помечаются published_at, а остальные освобождаются для следующего прохода.
+ * Если экземпляр упал посреди прохода, его строки снова станут доступны по истечении аренды.
+ *
+ * Порядок событий одного ключа сохраняется: следующее событие ключа отправляется только
+ * после подтверждения предыдущего, после первой неудачи ключ в этом проходе дальше не отправляется,
+ * а захват пропускает события, более ранние события ключа которых арендованы другим проходом.
+ * Захваты нескольких экземпляров выполняются по очереди под advisory-блокировкой.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO outbox_event (topic, message_key, payload_type, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    // Ключ advisory-блокировки, под которой захватываются пачки
+    private static final long CLAIM_LOCK_KEY = 0x6F7574626F78L;
+
+    private static final String CLAIM_LOCK_SQL = "SELECT pg_advisory_xact_lock(?)";
+
+    private static final String SELECT_BATCH_SQL =
+            "SELECT id, topic, message_key, payload_type, payload FROM outbox_event o " +
+            "WHERE published_at IS NULL AND (claimed_until IS NULL OR claimed_until < :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM outbox_event e WHERE e.message_key = o.message_key AND e.id < o.id " +
+            "AND e.published_at IS NULL AND e.claimed_until >= :now) " +
+            "ORDER BY id LIMIT :limit";
+
+    private static final String CLAIM_SQL =
+            "UPDATE outbox_event SET claimed_until = :until WHERE id IN (:ids)";
+
+    private static final String MARK_PUBLISHED_SQL =
+            "UPDATE outbox_event SET published_at = :now, claimed_until = NULL WHERE id IN (:ids)";
+
+    private static final String RELEASE_SQL =
+            "UPDATE outbox_event SET claimed_until = NULL WHERE id IN (:ids)";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM outbox_event WHERE published_at < ?";
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private KafkaSendMetrics kafkaSendMetrics;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+    private final long retentionHours;
+    private final long leaseMs;
+
+    public OutboxService(JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${filmbase.outbox.batch-size:500}") int batchSize,
+                         @Value("${filmbase.outbox.send-timeout-ms:10000}") long sendTimeoutMs,
+                         @Value("${filmbase.outbox.retention-hours:24}") long retentionHours,
+                         @Value("${filmbase.outbox.lease-ms:120000}") long leaseMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.retentionHours = retentionHours;
+        this.leaseMs = leaseMs;
+    }
+
+    /**
+     * Поставить событие в очередь на отправку.
+     * Вызывается внутри транзакции бизнес-операции: при ее откате событие тоже пропадет.
+     * @param topic топик Kafka
+     * @param key ключ сообщения (определяет партицию)
+     * @param event событие, сериализуется в JSON
+     */
+    public void enqueue(String topic, String key, Object event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize event " + event, e);
+        }
+        jdbcTemplate.update(INSERT_SQL, topic, key, event.getClass().getName(), payload,
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Фоновая отправка: пачки уходят в Kafka, пока очередь не опустеет
+     */
+    @Scheduled(fixedDelayString = "${filmbase.outbox.relay-interval-ms:500}")
+    public void relay() {
+        boolean more;
+        do {
+            more = relayBatch();
+        } while (more);
+    }
+
+    /**
+     * Удаление давно отправленных событий
+     */
+    @Scheduled(fixedDelayString = "${filmbase.outbox.purge-interval-ms:3600000}")
+    public void purge() {
+        int deleted = jdbcTemplate.update(PURGE_SQL,
+                Timestamp.valueOf(LocalDateTime.now().minusHours(retentionHours)));
+        if (deleted > 0) {
+            logger.info("Purged {} published outbox events", deleted);
+        }
+    }
+
+    /**
+     * Один проход: захватить пачку, отправить, отметить результат
+     * @return true, если пачка была полной и отправилась целиком - стоит сразу взять следующую
+     */
+    private boolean relayBatch() {
+        List<OutboxRecord> batch = claim();
+        if (batch.isEmpty()) {
+            return false;
+        }
+        List<Long> publishedIds = new ArrayList<>(batch.size());
+        List<Long> releasedIds = new ArrayList<>();
+        publish(batch, publishedIds, releasedIds);
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            if (!publishedIds.isEmpty()) {
+                namedJdbcTemplate.update(MARK_PUBLISHED_SQL,
+                        new MapSqlParameterSource("ids", publishedIds).addValue("now", now));
+            }
+            if (!releasedIds.isEmpty()) {
+                namedJdbcTemplate.update(RELEASE_SQL, new MapSqlParameterSource("ids", releasedIds));
+            }
+        });
+        logger.info("Outbox relay published {} of {} events", publishedIds.size(), batch.size());
+        return batch.size() == batchSize && releasedIds.isEmpty();
+    }
+
+    /**
+     * Захватить пачку неотправленных событий на leaseMs и сразу зафиксировать захват
+     */
+    private List<OutboxRecord> claim() {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.query(CLAIM_LOCK_SQL, rs -> null, CLAIM_LOCK_KEY);
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxRecord> batch = namedJdbcTemplate.query(SELECT_BATCH_SQL,
+                    new MapSqlParameterSource("now", Timestamp.valueOf(now)).addValue("limit", batchSize),
+                    (rs, rowNum) -> new OutboxRecord(rs.getLong("id"), rs.getString("topic"),
+                            rs.getString("message_key"), rs.getString("payload_type"), rs.getString("payload")));
+            if (!batch.isEmpty()) {
+                List<Long> ids = new ArrayList<>(batch.size());
+                for (OutboxRecord record : batch) {
+                    ids.add(record.id);
+                }
+                namedJdbcTemplate.update(CLAIM_SQL, new MapSqlParameterSource("ids", ids)
+                        .addValue("until", Timestamp.valueOf(now.plusNanos(leaseMs * 1_000_000))));
+            }
+            return batch;
+        });
+    }
+
+    /**
+     * Отправить пачку раундами: в раунде уходит по одному очередному событию каждого ключа,
+     * события без ключа - все в первом раунде. Продюсер сам группирует сообщения раунда по партициям.
+     */
+    private void publish(List<OutboxRecord> batch, List<Long> publishedIds, List<Long> releasedIds) {
+        Map<String, Deque<OutboxRecord>> byKey = new LinkedHashMap<>();
+        List<OutboxRecord> round = new ArrayList<>();
+        for (OutboxRecord record : batch) {
+            if (record.key == null) {
+                round.add(record);
+            } else {
+                byKey.computeIfAbsent(record.key, key -> new ArrayDeque<>()).add(record);
+            }
+        }
+        while (!round.isEmpty() || !byKey.isEmpty()) {
+            for (Deque<OutboxRecord> records : byKey.values()) {
+                round.add(records.poll());
+            }
+            List<Future<SendResult<String, Object>>> futures = new ArrayList<>(round.size());
+            for (OutboxRecord record : round) {
+                futures.add(send(record));
+            }
+            kafkaTemplate.flush();
+            for (int i = 0; i < round.size(); i++) {
+                OutboxRecord record = round.get(i);
+                if (awaitSent(record, futures.get(i))) {
+                    publishedIds.add(record.id);
+                } else {
+                    releasedIds.add(record.id);
+                    // Остальные события ключа ждут следующего прохода, чтобы не обогнать это
+                    Deque<OutboxRecord> rest = record.key != null ? byKey.remove(record.key) : null;
+                    if (rest != null) {
+                        for (OutboxRecord skipped : rest) {
+                            releasedIds.add(skipped.id);
+                        }
+                    }
+                }
+            }
+            byKey.values().removeIf(Deque::isEmpty);
+            round.clear();
+        }
+    }
+
+    private Future<SendResult<String, Object>> send(OutboxRecord record) {
+        try {
+            Object event = objectMapper.readValue(record.payload, Class.forName(record.payloadType));
+            return kafkaSendMetrics.record(record.topic, kafkaTemplate.send(record.topic, record.key, event));
+        } catch (JsonProcessingException | ClassNotFoundException | RuntimeException e) {
+            kafkaSendMetrics.failed(record.topic);
+            logger.error("Unable to send outbox event {} to topic=[{}]: {}", record.id, record.topic, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean awaitSent(OutboxRecord record, Future<SendResult<String, Object>> future) {
+        if (future == null) {
+            return false;
+        }
+        try {
+            future.get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            logger.error("Unable to send outbox event {} to topic=[{}]: {}", record.id, record.topic, e.getMessage());
+            return false;
+        }
+    }
+
+    private static class OutboxRecord {
+        final long id;
+        final String topic;
+        final String key;
+        final String payloadType;
+        final String payload;
+
+        OutboxRecord(long id, String topic, String key, String payloadType, String payload) {
+            this.id = id;
+            this.topic = topic;
+            this.key = key;
+            this.payloadType = payloadType;
+            this.payload = payload;
+        }
+    }
+}
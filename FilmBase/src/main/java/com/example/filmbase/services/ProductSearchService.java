@@ -0,0 +1,90 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.repositories.ProductRepository;
+import com.example.filmbase.search.InvertedIndex;
+import com.example.filmbase.search.ScoringMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Полнотекстовый поиск товаров по индексу в памяти.
+ * Индекс строится при старте из базы и обновляется по событиям из топика products.
+ */
+@Service
+public class ProductSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final InvertedIndex index = new InvertedIndex();
+    private volatile boolean ready;
+
+    @Value("${filmbase.search.mode:BM25}")
+    private String defaultMode;
+
+    @Value("${filmbase.search.default-limit:50}")
+    private int defaultLimit;
+
+    @Value("${filmbase.search.max-limit:200}")
+    private int maxLimit;
+
+    /**
+     * Построить индекс по всем товарам из базы
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        List<Product> products = productRepository.findAll();
+        index.replaceAll(products);
+        ready = true;
+        logger.info("Search index built: {} products in {} ms",
+                products.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Проиндексировать товар, заменив его прежнюю версию
+     * @param product актуальные данные товара
+     */
+    public void put(Product product) {
+        index.put(product);
+    }
+
+    /**
+     * Убрать товар из индекса
+     * @param productId id товара
+     */
+    public void remove(int productId) {
+        index.remove(productId);
+    }
+
+    /**
+     * Найти товары по запросу
+     * @param query текст запроса
+     * @param mode формула ранжирования, null - по умолчанию
+     * @param limit количество результатов, null - по умолчанию
+     * @return товары по убыванию релевантности
+     */
+    public List<Product> search(String query, String mode, Integer limit) {
+        ScoringMode scoringMode = ScoringMode.parse(mode, ScoringMode.parse(defaultMode, ScoringMode.BM25));
+        int resultLimit = limit == null || limit <= 0 ? defaultLimit : Math.min(limit, maxLimit);
+        return index.search(query, scoringMode, resultLimit);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return index.size();
+    }
+}
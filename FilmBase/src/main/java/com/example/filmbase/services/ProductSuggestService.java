@@ -0,0 +1,117 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.ProductSuggestion;
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.repositories.ProductRepository;
+import com.example.filmbase.search.SuggestTrie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Подсказки по названиям товаров при вводе в строку поиска.
+ * Дерево неизменяемо: чтение идет без блокировок, а при изменении каталога
+ * дерево пересобирается и подменяется целиком.
+ */
+@Service
+public class ProductSuggestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSuggestService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${filmbase.suggest.top-k:10}")
+    private int topK;
+
+    private final Map<Integer, ProductSuggestion> entries = new HashMap<>();
+    private volatile SuggestTrie trie;
+
+    /**
+     * Построить дерево подсказок по всем товарам из базы
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Product> products = productRepository.findAll();
+        synchronized (entries) {
+            entries.clear();
+            for (Product product : products) {
+                entries.put(product.getId(), toSuggestion(product));
+            }
+            publish();
+        }
+        logger.info("Suggest trie built: {} products", products.size());
+    }
+
+    /**
+     * Обновить подсказку для товара
+     */
+    public void put(Product product) {
+        synchronized (entries) {
+            entries.put(product.getId(), toSuggestion(product));
+            publish();
+        }
+    }
+
+    /**
+     * Убрать подсказку для товара
+     */
+    public void remove(int productId) {
+        synchronized (entries) {
+            if (entries.remove(productId) != null) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Применить пачку изменений каталога с одной пересборкой дерева
+     * @param changed новые и измененные товары
+     * @param removedIds id удаленных товаров
+     */
+    public void update(Collection<Product> changed, Collection<Integer> removedIds) {
+        if (changed.isEmpty() && removedIds.isEmpty()) {
+            return;
+        }
+        synchronized (entries) {
+            for (Product product : changed) {
+                entries.put(product.getId(), toSuggestion(product));
+            }
+            for (Integer productId : removedIds) {
+                entries.remove(productId);
+            }
+            publish();
+        }
+    }
+
+    /**
+     * Подсказки для введенного префикса
+     * @param prefix начало названия или любого слова в названии
+     * @param limit количество подсказок, null - top-k целиком
+     */
+    public List<ProductSuggestion> suggest(String prefix, Integer limit) {
+        SuggestTrie current = trie;
+        if (current == null || prefix == null) {
+            return Collections.emptyList();
+        }
+        return current.suggest(prefix, limit == null ? topK : limit);
+    }
+
+    private void publish() {
+        trie = SuggestTrie.build(entries.values(), topK);
+    }
+
+    private static ProductSuggestion toSuggestion(Product product) {
+        return new ProductSuggestion(product.getId(), product.getName(), (long) product.getStockQuantity());
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.config.RedisConfig;
+import com.example.filmbase.entities.Category;
+import com.example.filmbase.entities.Product;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Неблокирующее чтение каталога и категорий (filmbase.reactive.enabled=true).
+ * База - через R2DBC со своим пулом соединений, Redis - через реактивный клиент Lettuce,
+ * поэтому поток не занят, пока запрос ждет ответа.
+ *
+ * Каталог читается по тем же уровням, что и в CatalogCache: L1 этого экземпляра,
+ * ключ products:all в Redis, база. Одновременные промахи объединяются в одну загрузку.
+ *
+ * Пул R2DBC не регистрируется бином ConnectionFactory: такой бин отключил бы
+ * автоконфигурацию DataSource, на которой работают JPA и блокирующие запросы.
+ */
+@Service
+@ConditionalOnProperty(name = "filmbase.reactive.enabled", havingValue = "true")
+public class ReactiveCatalogService {
+
+    private static final String PRODUCT_SQL =
+            "SELECT p.id, p.name, p.description, p.price, p.image_url, p.stock_quantity, " +
+            "p.category_id, c.name AS category_name FROM product p LEFT JOIN category c ON c.id = p.category_id";
+
+    private static final String ALL_PRODUCTS_SQL = PRODUCT_SQL + " ORDER BY p.id";
+
+    private static final String CATEGORY_PRODUCTS_SQL = PRODUCT_SQL + " WHERE p.category_id = $1 ORDER BY p.id";
+
+    private static final String CATEGORIES_SQL = "SELECT id, name FROM category ORDER BY id";
+
+    private final CatalogCache catalogCache;
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+    private final ReactiveRedisTemplate<String, Object> redisTemplate;
+    private final Duration redisTtl;
+
+    // Загрузка каталога, которую ждут все текущие промахи
+    private final AtomicReference<Mono<List<Product>>> loading = new AtomicReference<>();
+
+    public ReactiveCatalogService(CatalogCache catalogCache,
+                                  ReactiveRedisConnectionFactory redisConnectionFactory,
+                                  @Value("${filmbase.reactive.r2dbc.url}") String url,
+                                  @Value("${filmbase.reactive.r2dbc.username}") String username,
+                                  @Value("${filmbase.reactive.r2dbc.password}") String password,
+                                  @Value("${filmbase.reactive.r2dbc.pool.max-size:10}") int maxPoolSize,
+                                  @Value("${filmbase.catalog.redis.ttl-seconds:300}") long redisTtlSeconds) {
+        this.catalogCache = catalogCache;
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options))
+                .maxSize(maxPoolSize)
+                .initialSize(Math.min(2, maxPoolSize))
+                .maxIdleTime(Duration.ofMinutes(10))
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+        this.redisTemplate = new ReactiveRedisTemplate<>(redisConnectionFactory,
+                RedisSerializationContext.<String, Object>newSerializationContext(new StringRedisSerializer())
+                        .value(RedisConfig.valueSerializer())
+                        .build());
+        this.redisTtl = Duration.ofSeconds(redisTtlSeconds);
+    }
+
+    /**
+     * Весь каталог: L1, затем Redis, затем база
+     */
+    @SuppressWarnings("unchecked")
+    public Mono<List<Product>> getAllProducts() {
+        List<Product> local = catalogCache.peekAllProducts();
+        if (local != null) {
+            return Mono.just(local);
+        }
+        return redisTemplate.opsForValue().get(CatalogCache.ALL_PRODUCTS_KEY)
+                .map(value -> (List<Product>) value)
+                .switchIfEmpty(Mono.defer(this::loadAllProducts));
+    }
+
+    public Flux<Product> getProductsByCategory(int categoryId) {
+        return databaseClient.sql(CATEGORY_PRODUCTS_SQL)
+                .bind(0, categoryId)
+                .map((row, metadata) -> toProduct(row))
+                .all();
+    }
+
+    public Flux<Category> getAllCategories() {
+        return databaseClient.sql(CATEGORIES_SQL)
+                .map((row, metadata) -> new Category(row.get("id", Integer.class), row.get("name", String.class),
+                        null))
+                .all();
+    }
+
+    /**
+     * Загрузить каталог из базы и положить в Redis; одна загрузка на все одновременные промахи
+     */
+    private Mono<List<Product>> loadAllProducts() {
+        Mono<List<Product>> current = loading.get();
+        if (current != null) {
+            return current;
+        }
+        Mono<List<Product>> load = databaseClient.sql(ALL_PRODUCTS_SQL)
+                .map((row, metadata) -> toProduct(row))
+                .all()
+                .collectList()
+                .map(Collections::unmodifiableList)
+                .flatMap(products -> redisTemplate.opsForValue()
+                        .set(CatalogCache.ALL_PRODUCTS_KEY, products, redisTtl)
+                        .onErrorReturn(false)
+                        .thenReturn(products))
+                .doFinally(signal -> loading.set(null))
+                .cache();
+        return loading.compareAndSet(null, load) ? load : loadAllProducts();
+    }
+
+    private static Product toProduct(Row row) {
+        Product product = new Product();
+        product.setId(row.get("id", Integer.class));
+        product.setName(row.get("name", String.class));
+        product.setDescription(row.get("description", String.class));
+        Number price = row.get("price", Number.class);
+        product.setPrice(price != null ? price.doubleValue() : 0);
+        product.setImageUrl(row.get("image_url", String.class));
+        Integer stock = row.get("stock_quantity", Integer.class);
+        product.setStockQuantity(stock != null ? stock : 0);
+        Integer categoryId = row.get("category_id", Integer.class);
+        if (categoryId != null) {
+            product.setCategory(new Category(categoryId, row.get("category_name", String.class), null));
+        }
+        return product;
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionPool.dispose();
+    }
+}
@@ -1,10 +1,29 @@
 package com.example.filmbase.services;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service
 public class RedisService {
@@ -12,13 +31,24 @@ public class RedisService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    // Для счетчиков и скриптов: значения хранятся строками, без JSON
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Таймеры и счетчики по операции, пространству ключей и результату
+    private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> lookups = new ConcurrentHashMap<>();
+
     /**
      * Сохранить значение в Redis
      * @param key ключ
      * @param value значение
      */
     public void set(String key, Object value) {
-        redisTemplate.opsForValue().set(key, value);
+        timed("set", key, () -> redisTemplate.opsForValue().set(key, value));
     }
 
     /**
@@ -28,7 +58,7 @@ public class RedisService {
      * @param timeout время жизни в секундах
      */
     public void set(String key, Object value, long timeout) {
-        redisTemplate.opsForValue().set(key, value, timeout, TimeUnit.SECONDS);
+        timed("set", key, () -> redisTemplate.opsForValue().set(key, value, timeout, TimeUnit.SECONDS));
     }
 
     /**
@@ -37,7 +67,7 @@ public class RedisService {
      * @return значение
      */
     public Object get(String key) {
-        return redisTemplate.opsForValue().get(key);
+        return lookup("get", key, () -> redisTemplate.opsForValue().get(key));
     }
 
     /**
@@ -46,7 +76,7 @@ public class RedisService {
      * @return true если удалено успешно
      */
     public Boolean delete(String key) {
-        return redisTemplate.delete(key);
+        return timed("delete", key, () -> redisTemplate.delete(key));
     }
 
     /**
@@ -55,7 +85,7 @@ public class RedisService {
      * @return true если ключ существует
      */
     public Boolean hasKey(String key) {
-        return redisTemplate.hasKey(key);
+        return timed("hasKey", key, () -> redisTemplate.hasKey(key));
     }
 
     /**
@@ -65,7 +95,7 @@ public class RedisService {
      * @return true если установлено успешно
      */
     public Boolean expire(String key, long timeout) {
-        return redisTemplate.expire(key, timeout, TimeUnit.SECONDS);
+        return timed("expire", key, () -> redisTemplate.expire(key, timeout, TimeUnit.SECONDS));
     }
 
     /**
@@ -74,9 +104,324 @@ public class RedisService {
      * @return время жизни в секундах, -1 если бессрочно, -2 если ключ не существует
      */
     public Long getExpire(String key) {
-        return redisTemplate.getExpire(key, TimeUnit.SECONDS);
+        return timed("getExpire", key, () -> redisTemplate.getExpire(key, TimeUnit.SECONDS));
     }
-}
 
+    /**
+     * Выполнить Lua-скрипт на стороне Redis атомарно
+     * @param script скрипт
+     * @param keys ключи, с которыми работает скрипт
+     * @param args аргументы, передаются строками
+     * @return результат скрипта
+     */
+    public <T> T executeScript(RedisScript<T> script, List<String> keys, Object... args) {
+        String[] stringArgs = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            stringArgs[i] = String.valueOf(args[i]);
+        }
+        return timed("script", firstKey(keys), () -> stringRedisTemplate.execute(script, keys, (Object[]) stringArgs));
+    }
 
+    /**
+     * Сохранить строку как есть, без JSON-сериализации
+     * @param key ключ
+     * @param value строка
+     * @param timeout время жизни в секундах
+     */
+    public void setString(String key, String value, long timeout) {
+        timed("setString", key, () -> stringRedisTemplate.opsForValue().set(key, value, timeout, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Получить строку, сохраненную через setString
+     * @param key ключ
+     * @return строка или null, если ключа нет
+     */
+    public String getString(String key) {
+        return lookup("getString", key, () -> stringRedisTemplate.opsForValue().get(key));
+    }
 
+    /**
+     * Добавить строку в множество
+     * @param key ключ множества
+     * @param member элемент
+     */
+    public void addToSet(String key, String member) {
+        timed("addToSet", key, () -> stringRedisTemplate.opsForSet().add(key, member));
+    }
+
+    /**
+     * Удалить строку из множества
+     * @param key ключ множества
+     * @param member элемент
+     */
+    public void removeFromSet(String key, String member) {
+        timed("removeFromSet", key, () -> stringRedisTemplate.opsForSet().remove(key, member));
+    }
+
+    /**
+     * Получить все элементы множества строк
+     * @param key ключ множества
+     * @return элементы, пустое множество если ключа нет
+     */
+    public Set<String> members(String key) {
+        return timed("members", key, () -> stringRedisTemplate.opsForSet().members(key));
+    }
+
+    /**
+     * Извлечь из множества до count случайных элементов
+     * @param key ключ множества
+     * @param count максимальное количество элементов
+     * @return извлеченные элементы, пустой список если множество пусто
+     */
+    public List<String> popFromSet(String key, long count) {
+        List<String> members = timed("popFromSet", key, () -> stringRedisTemplate.opsForSet().pop(key, count));
+        return members != null ? members : Collections.emptyList();
+    }
+
+    /**
+     * Получить все поля хеша строк
+     * @param key ключ хеша
+     * @return поля и значения, пустая карта если ключа нет
+     */
+    public Map<String, String> hashEntries(String key) {
+        return lookup("hashEntries", key, () -> stringRedisTemplate.<String, String>opsForHash().entries(key));
+    }
+
+    /**
+     * Получить несколько хешей за один проход по сети (pipeline)
+     * @param keys ключи хешей
+     * @return поля и значения в порядке ключей
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, String>> hashEntries(List<String> keys) {
+        List<Object> results = timed("hashEntries", firstKey(keys), () ->
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String key : keys) {
+                        connection.hashCommands().hGetAll(key.getBytes(StandardCharsets.UTF_8));
+                    }
+                    return null;
+                }));
+        List<Map<String, String>> entries = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            Object result = results.get(i);
+            Map<String, String> entry = result != null ? (Map<String, String>) result : Collections.emptyMap();
+            countLookup("hashEntries", keys.get(i), entry);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Добавить элементы в несколько отсортированных множеств и продлить им время жизни
+     * за один проход по сети (pipeline)
+     * @param members элементы с оценками по ключам множеств
+     * @param timeout время жизни каждого множества в секундах
+     */
+    public void addToSortedSets(Map<String, Map<String, Double>> members, long timeout) {
+        if (members.isEmpty()) {
+            return;
+        }
+        timed("addToSortedSets", members.keySet().iterator().next(), () ->
+                stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                        for (Map.Entry<String, Map<String, Double>> entry : members.entrySet()) {
+                            Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+                            for (Map.Entry<String, Double> member : entry.getValue().entrySet()) {
+                                tuples.add(ZSetOperations.TypedTuple.of(member.getKey(), member.getValue()));
+                            }
+                            ops.opsForZSet().add(entry.getKey(), tuples);
+                            ops.expire(entry.getKey(), timeout, TimeUnit.SECONDS);
+                        }
+                        return null;
+                    }
+                }));
+    }
+
+    /**
+     * Элементы нескольких отсортированных множеств с оценками в интервале (pipeline)
+     * @param keys ключи множеств
+     * @param min нижняя граница оценки, включительно
+     * @param max верхняя граница оценки, включительно
+     * @return элементы с оценками в порядке ключей
+     */
+    @SuppressWarnings("unchecked")
+    public List<Set<ZSetOperations.TypedTuple<String>>> rangeByScore(List<String> keys, double min, double max) {
+        List<Object> results = timed("rangeByScore", firstKey(keys), () ->
+                stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                        for (String key : keys) {
+                            ops.opsForZSet().rangeByScoreWithScores(key, min, max);
+                        }
+                        return null;
+                    }
+                }));
+        List<Set<ZSetOperations.TypedTuple<String>>> ranges = new ArrayList<>(results.size());
+        for (Object result : results) {
+            ranges.add(result != null ? (Set<ZSetOperations.TypedTuple<String>>) result : Collections.emptySet());
+        }
+        return ranges;
+    }
+
+    /**
+     * Элементы нескольких отсортированных множеств в лексикографическом интервале (pipeline)
+     * @param keys ключи множеств
+     * @param min нижняя граница, включительно
+     * @param max верхняя граница, не включительно
+     * @return элементы в порядке ключей
+     */
+    @SuppressWarnings("unchecked")
+    public List<Set<String>> rangeByLex(List<String> keys, String min, String max) {
+        RedisZSetCommands.Range range = RedisZSetCommands.Range.range().gte(min).lt(max);
+        List<Object> results = timed("rangeByLex", firstKey(keys), () ->
+                stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                        for (String key : keys) {
+                            ops.opsForZSet().rangeByLex(key, range);
+                        }
+                        return null;
+                    }
+                }));
+        List<Set<String>> ranges = new ArrayList<>(results.size());
+        for (Object result : results) {
+            ranges.add(result != null ? (Set<String>) result : Collections.emptySet());
+        }
+        return ranges;
+    }
+
+    /**
+     * Количество элементов отсортированного множества
+     * @param key ключ множества
+     * @return количество, 0 если ключа нет
+     */
+    public long sortedSetSize(String key) {
+        Long size = timed("sortedSetSize", key, () -> stringRedisTemplate.opsForZSet().zCard(key));
+        return size != null ? size : 0;
+    }
+
+    /**
+     * Память, занятая ключом и значением (MEMORY USAGE)
+     * @param key ключ
+     * @return байты, 0 если ключа нет
+     */
+    public long memoryUsage(String key) {
+        Object usage = timed("memoryUsage", key, () ->
+                stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+                        connection.execute("MEMORY", "USAGE".getBytes(StandardCharsets.UTF_8),
+                                key.getBytes(StandardCharsets.UTF_8))));
+        return usage instanceof Number ? ((Number) usage).longValue() : 0;
+    }
+
+    /**
+     * Установить биты битовой строки за один проход по сети (pipeline)
+     * @param key ключ
+     * @param offsets номера бит
+     */
+    public void setBits(String key, long[] offsets) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        timed("setBits", key, () -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long offset : offsets) {
+                connection.stringCommands().setBit(rawKey, offset, true);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Сохранить байты как есть, если ключа еще нет
+     * @param key ключ
+     * @param value байты
+     * @return true если значение записано
+     */
+    public boolean setBytesIfAbsent(String key, byte[] value) {
+        Boolean set = timed("setBytesIfAbsent", key, () ->
+                stringRedisTemplate.execute((RedisCallback<Boolean>) connection ->
+                        connection.stringCommands().setNX(key.getBytes(StandardCharsets.UTF_8), value)));
+        return Boolean.TRUE.equals(set);
+    }
+
+    /**
+     * Получить значение как байты, без десериализации (например, битовую строку)
+     * @param key ключ
+     * @return байты или null, если ключа нет
+     */
+    public byte[] getBytes(String key) {
+        return lookup("getBytes", key, () -> stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(key.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Выполнить операцию и записать ее время в filmbase.redis.commands
+     */
+    private <T> T timed(String operation, String key, Supplier<T> call) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } finally {
+            String outcome = success ? "success" : "error";
+            timers.computeIfAbsent(operation + '|' + keyspace(key) + '|' + outcome, id -> Timer
+                    .builder("filmbase.redis.commands")
+                    .description("Redis operations issued through RedisService")
+                    .tag("operation", operation)
+                    .tag("keyspace", keyspace(key))
+                    .tag("outcome", outcome)
+                    .register(meterRegistry))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void timed(String operation, String key, Runnable call) {
+        timed(operation, key, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Чтение: кроме времени считается попадание (значение есть) или промах
+     */
+    private <T> T lookup(String operation, String key, Supplier<T> call) {
+        T value = timed(operation, key, call);
+        countLookup(operation, key, value);
+        return value;
+    }
+
+    private void countLookup(String operation, String key, Object value) {
+        boolean hit = value != null && !(value instanceof Map && ((Map<?, ?>) value).isEmpty());
+        String result = hit ? "hit" : "miss";
+        lookups.computeIfAbsent(operation + '|' + keyspace(key) + '|' + result, id -> Counter
+                .builder("filmbase.redis.lookups")
+                .description("Redis reads by result: hit if the key held a value")
+                .tag("operation", operation)
+                .tag("keyspace", keyspace(key))
+                .tag("result", result)
+                .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * Пространство ключей для тега метрик - часть ключа до первого ':' (products, session, cart...),
+     * чтобы число рядов не росло с количеством ключей
+     */
+    private static String keyspace(String key) {
+        if (key == null) {
+            return "none";
+        }
+        int colon = key.indexOf(':');
+        return colon > 0 ? key.substring(0, colon) : key;
+    }
+
+    private static String firstKey(List<String> keys) {
+        return keys.isEmpty() ? null : keys.get(0);
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.OrderEvent;
+import com.example.filmbase.dto.SalesRow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Витрины продаж: выручка, штуки и число заказов по дням, по дням и категориям,
+ * по дням и товарам (таблицы sales_daily, sales_daily_category, sales_daily_product).
+ *
+ * Потребитель OrderEvent прибавляет заказ к витринам по CREATED и вычитает по CANCELLED.
+ * Заказ относится к дню своего оформления, в том числе при отмене. Учтенные события
+ * записываются в sales_applied_event, поэтому повторная доставка из Kafka ничего не меняет.
+ *
+ * Пересборка заново считает витрины за интервал дней из orders и order_item; ее можно
+ * запускать сколько угодно раз, результат не меняется. Витрины можно наполнить
+ * с нуля пересборкой за всю историю: длинный интервал пересобирается кусками
+ * по rebuild-chunk-days дней, каждый в своей короткой транзакции.
+ *
+ * Заказы старше окна плановой пересборки (rebuild-days) уже окончательно посчитаны ею,
+ * поэтому отметки CREATED по ним удаляются, а их повторные CREATED пропускаются.
+ * Отметки CANCELLED живут applied-retention-days дней: отмена старого заказа вычитается
+ * один раз, события о заказах старше этого срока не учитываются.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesRollupService.class);
+
+    public static final String DIMENSION_DAY = "day";
+    public static final String DIMENSION_CATEGORY = "category";
+    public static final String DIMENSION_PRODUCT = "product";
+
+    private static final String EVENT_CREATED = "CREATED";
+    private static final String EVENT_CANCELLED = "CANCELLED";
+
+    private static final String MARK_APPLIED_SQL =
+            "INSERT INTO sales_applied_event (order_id, event_type) VALUES (?, ?) ON CONFLICT DO NOTHING";
+
+    private static final String APPLIED_SQL =
+            "SELECT order_id FROM sales_applied_event WHERE event_type = :eventType AND order_id IN (:ids)";
+
+    private static final String SETTLED_SQL =
+            "SELECT id, order_date FROM orders WHERE id IN (:ids) AND order_date < :windowStart";
+
+    private static final String PRUNE_CREATED_SQL =
+            "DELETE FROM sales_applied_event WHERE event_type = :created AND order_id IN " +
+            "(SELECT id FROM orders WHERE order_date < :windowStart)";
+
+    private static final String PRUNE_EXPIRED_SQL =
+            "DELETE FROM sales_applied_event WHERE order_id IN " +
+            "(SELECT id FROM orders WHERE order_date < :retentionStart)";
+
+    // Подставляется условие отбора заказов: по списку id или по интервалу дат
+    private static final String DAILY_UPSERT_SQL =
+            "INSERT INTO sales_daily (day, revenue, units, orders) " +
+            "SELECT CAST(o.order_date AS DATE), :sign * SUM(oi.price * oi.quantity), :sign * SUM(oi.quantity), " +
+            ":sign * COUNT(DISTINCT o.id) " +
+            "FROM orders o JOIN order_item oi ON oi.order_id = o.id WHERE %s " +
+            "GROUP BY CAST(o.order_date AS DATE) " +
+            "ON CONFLICT (day) DO UPDATE SET revenue = sales_daily.revenue + EXCLUDED.revenue, " +
+            "units = sales_daily.units + EXCLUDED.units, orders = sales_daily.orders + EXCLUDED.orders";
+
+    private static final String CATEGORY_UPSERT_SQL =
+            "INSERT INTO sales_daily_category (day, category_id, revenue, units, orders) " +
+            "SELECT CAST(o.order_date AS DATE), COALESCE(p.category_id, 0), :sign * SUM(oi.price * oi.quantity), " +
+            ":sign * SUM(oi.quantity), :sign * COUNT(DISTINCT o.id) " +
+            "FROM orders o JOIN order_item oi ON oi.order_id = o.id JOIN product p ON p.id = oi.product_id " +
+            "WHERE %s GROUP BY CAST(o.order_date AS DATE), COALESCE(p.category_id, 0) " +
+            "ON CONFLICT (day, category_id) DO UPDATE SET revenue = sales_daily_category.revenue + EXCLUDED.revenue, " +
+            "units = sales_daily_category.units + EXCLUDED.units, orders = sales_daily_category.orders + EXCLUDED.orders";
+
+    private static final String PRODUCT_UPSERT_SQL =
+            "INSERT INTO sales_daily_product (day, product_id, category_id, revenue, units, orders) " +
+            "SELECT CAST(o.order_date AS DATE), oi.product_id, COALESCE(p.category_id, 0), " +
+            ":sign * SUM(oi.price * oi.quantity), :sign * SUM(oi.quantity), :sign * COUNT(DISTINCT o.id) " +
+            "FROM orders o JOIN order_item oi ON oi.order_id = o.id JOIN product p ON p.id = oi.product_id " +
+            "WHERE %s GROUP BY CAST(o.order_date AS DATE), oi.product_id, COALESCE(p.category_id, 0) " +
+            "ON CONFLICT (day, product_id) DO UPDATE SET revenue = sales_daily_product.revenue + EXCLUDED.revenue, " +
+            "units = sales_daily_product.units + EXCLUDED.units, orders = sales_daily_product.orders + EXCLUDED.orders";
+
+    private static final String BY_IDS = "o.id IN (:ids)";
+    private static final String BY_RANGE =
+            "o.order_date >= :fromTime AND o.order_date < :toTime AND o.status <> :cancelled";
+
+    // Потребитель берет ROW EXCLUSIVE на вставке в sales_applied_event и ждет конца пересборки
+    private static final String LOCK_APPLIED_SQL =
+            "LOCK TABLE sales_applied_event IN SHARE ROW EXCLUSIVE MODE";
+
+    private static final String DELETE_APPLIED_SQL =
+            "DELETE FROM sales_applied_event WHERE order_id IN " +
+            "(SELECT id FROM orders WHERE order_date >= :fromTime AND order_date < :toTime)";
+
+    private static final String REPLAY_APPLIED_SQL =
+            "INSERT INTO sales_applied_event (order_id, event_type) " +
+            "SELECT id, :created FROM orders WHERE order_date >= :fromTime AND order_date < :toTime " +
+            "UNION ALL SELECT id, :cancelledEvent FROM orders " +
+            "WHERE order_date >= :fromTime AND order_date < :toTime AND status = :cancelled";
+
+    private static final String DAILY_REPORT_SQL =
+            "SELECT day, revenue, units, orders FROM sales_daily WHERE day BETWEEN :from AND :to ORDER BY day";
+
+    private static final String CATEGORY_REPORT_SQL =
+            "SELECT s.category_id AS id, c.name, SUM(s.revenue) AS revenue, SUM(s.units) AS units, " +
+            "SUM(s.orders) AS orders FROM sales_daily_category s LEFT JOIN category c ON c.id = s.category_id " +
+            "WHERE s.day BETWEEN :from AND :to GROUP BY s.category_id, c.name " +
+            "ORDER BY revenue DESC, id LIMIT :limit";
+
+    private static final String PRODUCT_REPORT_SQL =
+            "SELECT s.product_id AS id, p.name, SUM(s.revenue) AS revenue, SUM(s.units) AS units, " +
+            "SUM(s.orders) AS orders FROM sales_daily_product s LEFT JOIN product p ON p.id = s.product_id " +
+            "WHERE s.day BETWEEN :from AND :to AND (:categoryId = 0 OR s.category_id = :categoryId) " +
+            "GROUP BY s.product_id, p.name ORDER BY revenue DESC, id LIMIT :limit";
+
+    private static final String FIRST_ORDER_DAY_SQL =
+            "SELECT CAST(MIN(order_date) AS DATE) FROM orders";
+
+    private static final String[] TABLES = {"sales_daily", "sales_daily_category", "sales_daily_product"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate rebuildTransaction;
+    private final int rebuildDays;
+    private final int rebuildChunkDays;
+    private final int appliedRetentionDays;
+    private final int maxLimit;
+
+    public SalesRollupService(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${filmbase.sales.rebuild-days:3}") int rebuildDays,
+                              @Value("${filmbase.sales.rebuild-chunk-days:7}") int rebuildChunkDays,
+                              @Value("${filmbase.sales.applied-retention-days:30}") int appliedRetentionDays,
+                              @Value("${filmbase.sales.max-limit:100}") int maxLimit) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.rebuildTransaction = new TransactionTemplate(transactionManager);
+        this.rebuildTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.rebuildDays = Math.max(1, rebuildDays);
+        this.rebuildChunkDays = Math.max(1, rebuildChunkDays);
+        this.appliedRetentionDays = Math.max(this.rebuildDays, appliedRetentionDays);
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Учесть пачку событий заказов. Сначала все созданные заказы, затем отмены,
+     * так что отмена в той же пачке вычитается из уже прибавленного.
+     */
+    @Transactional
+    public void apply(List<OrderEvent> events) {
+        Set<Integer> created = new LinkedHashSet<>();
+        Set<Integer> cancelled = new LinkedHashSet<>();
+        for (OrderEvent event : events) {
+            if (event.getOrderId() == null) {
+                continue;
+            }
+            if (EVENT_CREATED.equals(event.getEventType())) {
+                created.add(event.getOrderId());
+            } else if (EVENT_CANCELLED.equals(event.getEventType())) {
+                cancelled.add(event.getOrderId());
+            }
+        }
+
+        // Заказы старше окна пересборки: созданные уже посчитаны ею, события о совсем
+        // старых заказах не учитываются
+        Set<Integer> settled = new HashSet<>();
+        if (!created.isEmpty() || !cancelled.isEmpty()) {
+            Set<Integer> ids = new HashSet<>(created);
+            ids.addAll(cancelled);
+            LocalDate today = LocalDate.now();
+            Timestamp retentionStart = Timestamp.valueOf(today.minusDays(appliedRetentionDays - 1L).atStartOfDay());
+            namedJdbcTemplate.query(SETTLED_SQL, new MapSqlParameterSource("ids", ids)
+                    .addValue("windowStart", windowStart(today)), rs -> {
+                int orderId = rs.getInt("id");
+                settled.add(orderId);
+                if (rs.getTimestamp("order_date").before(retentionStart)) {
+                    cancelled.remove(orderId);
+                }
+            });
+            created.removeAll(settled);
+        }
+
+        upsertOrders(markApplied(created, EVENT_CREATED), 1);
+
+        // Вычитаются только заказы, которые были прибавлены: событием или пересборкой
+        List<Integer> fresh = markApplied(cancelled, EVENT_CANCELLED);
+        Set<Integer> removed = new LinkedHashSet<>();
+        if (!fresh.isEmpty()) {
+            removed.addAll(namedJdbcTemplate.queryForList(APPLIED_SQL,
+                    new MapSqlParameterSource("ids", fresh).addValue("eventType", EVENT_CREATED), Integer.class));
+            for (Integer orderId : fresh) {
+                if (settled.contains(orderId)) {
+                    removed.add(orderId);
+                }
+            }
+        }
+        upsertOrders(new ArrayList<>(removed), -1);
+    }
+
+    /**
+     * Пересобрать витрины за дни [from, to] из orders и order_item кусками по rebuild-chunk-days дней.
+     * Снимок данных куска берется после блокировки sales_applied_event, поэтому заказ,
+     * оформленный во время пересборки, учтет потребитель, а не пересборка, и не дважды.
+     * Блокировка держится только на время куска, потребитель ждет не дольше него.
+     */
+    public void rebuild(LocalDate from, LocalDate to) {
+        for (LocalDate start = from; !start.isAfter(to); start = start.plusDays(rebuildChunkDays)) {
+            LocalDate end = start.plusDays(rebuildChunkDays - 1L);
+            rebuildChunk(start, end.isAfter(to) ? to : end);
+        }
+        logger.info("Sales rollups rebuilt for {} - {}", from, to);
+    }
+
+    private void rebuildChunk(LocalDate from, LocalDate to) {
+        MapSqlParameterSource params = new MapSqlParameterSource("from", Date.valueOf(from))
+                .addValue("to", Date.valueOf(to))
+                .addValue("fromTime", Timestamp.valueOf(from.atStartOfDay()))
+                .addValue("toTime", Timestamp.valueOf(to.plusDays(1).atStartOfDay()))
+                .addValue("created", EVENT_CREATED)
+                .addValue("cancelledEvent", EVENT_CANCELLED)
+                .addValue("cancelled", CheckoutService.STATUS_CANCELLED)
+                .addValue("sign", 1);
+        rebuildTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.execute(LOCK_APPLIED_SQL);
+            for (String table : TABLES) {
+                namedJdbcTemplate.update("DELETE FROM " + table + " WHERE day BETWEEN :from AND :to", params);
+            }
+            namedJdbcTemplate.update(DELETE_APPLIED_SQL, params);
+            namedJdbcTemplate.update(REPLAY_APPLIED_SQL, params);
+            upsert(BY_RANGE, params);
+        });
+    }
+
+    /**
+     * Плановая пересборка последних rebuild-days дней: сглаживает расхождения,
+     * если часть событий была потеряна или обработана с ошибкой.
+     * После нее удаляются отметки событий, которые больше не нужны.
+     */
+    @Scheduled(cron = "${filmbase.sales.rebuild-cron:0 30 3 * * *}")
+    public void rebuildRecent() {
+        LocalDate today = LocalDate.now();
+        try {
+            rebuild(today.minusDays(rebuildDays - 1L), today);
+            pruneApplied(today);
+        } catch (Exception e) {
+            logger.error("Sales rollup rebuild failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Удалить отметки CREATED заказов старше окна пересборки и все отметки
+     * заказов старше applied-retention-days
+     */
+    private void pruneApplied(LocalDate today) {
+        MapSqlParameterSource params = new MapSqlParameterSource("created", EVENT_CREATED)
+                .addValue("windowStart", windowStart(today))
+                .addValue("retentionStart", Timestamp.valueOf(today.minusDays(appliedRetentionDays - 1L).atStartOfDay()));
+        int pruned = namedJdbcTemplate.update(PRUNE_CREATED_SQL, params)
+                + namedJdbcTemplate.update(PRUNE_EXPIRED_SQL, params);
+        if (pruned > 0) {
+            logger.info("Pruned {} applied sales events", pruned);
+        }
+    }
+
+    // Начало окна плановой пересборки: заказы раньше него посчитаны ею окончательно
+    private Timestamp windowStart(LocalDate today) {
+        return Timestamp.valueOf(today.minusDays(rebuildDays - 1L).atStartOfDay());
+    }
+
+    /**
+     * День первого заказа - начало интервала пересборки за всю историю
+     * @return день или null, если заказов нет
+     */
+    public LocalDate firstOrderDay() {
+        Date day = jdbcTemplate.queryForObject(FIRST_ORDER_DAY_SQL, Date.class);
+        return day != null ? day.toLocalDate() : null;
+    }
+
+    /**
+     * Продажи за дни [from, to] в разрезе day, category или product
+     * @param categoryId для разреза product - только товары категории, null - все
+     * @param limit количество строк для category и product, null - до max-limit
+     */
+    public List<SalesRow> report(String dimension, LocalDate from, LocalDate to, Integer categoryId, Integer limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("from", Date.valueOf(from))
+                .addValue("to", Date.valueOf(to))
+                .addValue("categoryId", categoryId != null ? categoryId : 0)
+                .addValue("limit", limit == null || limit <= 0 ? maxLimit : Math.min(limit, maxLimit));
+        if (DIMENSION_DAY.equals(dimension)) {
+            return namedJdbcTemplate.query(DAILY_REPORT_SQL, params, (rs, row) -> new SalesRow(DIMENSION_DAY,
+                    rs.getDate("day").toLocalDate(), null, null, rs.getBigDecimal("revenue").doubleValue(),
+                    rs.getLong("units"), rs.getLong("orders")));
+        }
+        String sql = DIMENSION_CATEGORY.equals(dimension) ? CATEGORY_REPORT_SQL : PRODUCT_REPORT_SQL;
+        return namedJdbcTemplate.query(sql, params, (rs, row) -> new SalesRow(dimension, null,
+                rs.getInt("id"), rs.getString("name"), rs.getBigDecimal("revenue").doubleValue(),
+                rs.getLong("units"), rs.getLong("orders")));
+    }
+
+    /**
+     * Записать события как учтенные
+     * @return заказы, событие которых встретилось впервые
+     */
+    private List<Integer> markApplied(Collection<Integer> orderIds, String eventType) {
+        List<Integer> fresh = new ArrayList<>();
+        if (orderIds.isEmpty()) {
+            return fresh;
+        }
+        List<Object[]> args = new ArrayList<>(orderIds.size());
+        for (Integer orderId : orderIds) {
+            args.add(new Object[]{orderId, eventType});
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(MARK_APPLIED_SQL, args);
+        int i = 0;
+        for (Integer orderId : orderIds) {
+            if (inserted[i++] != 0) {
+                fresh.add(orderId);
+            }
+        }
+        return fresh;
+    }
+
+    private void upsertOrders(List<Integer> orderIds, int sign) {
+        if (!orderIds.isEmpty()) {
+            upsert(BY_IDS, new MapSqlParameterSource("ids", orderIds).addValue("sign", sign));
+        }
+    }
+
+    private void upsert(String condition, MapSqlParameterSource params) {
+        namedJdbcTemplate.update(String.format(DAILY_UPSERT_SQL, condition), params);
+        namedJdbcTemplate.update(String.format(CATEGORY_UPSERT_SQL, condition), params);
+        namedJdbcTemplate.update(String.format(PRODUCT_UPSERT_SQL, condition), params);
+    }
+}
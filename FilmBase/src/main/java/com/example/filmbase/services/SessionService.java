@@ -0,0 +1,232 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.cache.LocalCache;
+import com.example.filmbase.cache.LocalCacheMetrics;
+import com.example.filmbase.dto.SessionUser;
+import com.example.filmbase.entities.User;
+import com.example.filmbase.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сессии пользователей на подписанных токенах.
+ * Токен имеет вид {sessionId}.{подпись}, сама сессия хранится в Redis
+ * под ключом session:{sessionId}, поэтому любой экземпляр приложения
+ * может обслужить запрос любого пользователя.
+ * В сессии лежит SessionUser (id, логин, признак администратора), так что
+ * запросу, которому хватает этих полей, не нужен поход в базу за User.
+ *
+ * Проверенные сессии держатся в ближнем кеше экземпляра не дольше
+ * filmbase.session.near-cache.ttl-seconds (5 секунд). Выход удаляет сессию из Redis
+ * и из кеша своего экземпляра, а другие экземпляры, видевшие сессию недавно,
+ * продолжают принимать ее токен до истечения записи - то есть не дольше этого срока.
+ */
+@Service
+public class SessionService {
+
+    public static final String SESSION_COOKIE = "FILMBASE_SESSION";
+    private static final String SESSION_KEY_PREFIX = "session:";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    // Ключ HMAC-SHA256 короче размера хеша ослабляет подпись
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final SecretKeySpec signingKey;
+    private final long ttlSeconds;
+    private final LocalCache<String, SessionUser> nearCache;
+
+    public SessionService(@Value("${filmbase.session.secret:}") String secret,
+                          @Value("${filmbase.session.ttl-seconds:1800}") long ttlSeconds,
+                          @Value("${filmbase.session.near-cache.size:10000}") int nearCacheSize,
+                          @Value("${filmbase.session.near-cache.ttl-seconds:5}") long nearCacheTtlSeconds) {
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (secretBytes.length < MIN_SECRET_BYTES) {
+            // Без своего ключа любой экземпляр принимал бы токены, подписанные известным ключом
+            throw new IllegalStateException("filmbase.session.secret is missing or shorter than "
+                    + MIN_SECRET_BYTES + " bytes");
+        }
+        this.signingKey = new SecretKeySpec(secretBytes, HMAC_ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        this.nearCache = new LocalCache<>(nearCacheSize, nearCacheTtlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Открыть сессию для пользователя и выдать токен в cookie
+     * @param user вошедший пользователь
+     * @param response ответ, в который записывается cookie
+     * @return подписанный токен сессии
+     */
+    public String startSession(User user, HttpServletResponse response) {
+        byte[] idBytes = new byte[18];
+        random.nextBytes(idBytes);
+        String sessionId = encoder.encodeToString(idBytes);
+
+        // Сохраняем сессию пользователя в Redis (по умолчанию на 30 минут)
+        SessionUser sessionUser = new SessionUser(user.getId(), user.getLogin(), isAdmin(user));
+        redisService.set(SESSION_KEY_PREFIX + sessionId, sessionUser, ttlSeconds);
+        nearCache.put(sessionId, sessionUser);
+
+        String token = sessionId + "." + sign(sessionId);
+        writeCookie(response, token, ttlSeconds);
+        return token;
+    }
+
+    /**
+     * Определить пользователя текущего запроса без обращения к базе
+     * @param request HTTP запрос с токеном в cookie или заголовке Authorization
+     * @return пользователь сессии или null, если сессии нет
+     */
+    public SessionUser resolveUser(HttpServletRequest request) {
+        String sessionId = verifiedSessionId(request);
+        if (sessionId == null) {
+            return null;
+        }
+
+        SessionUser sessionUser = nearCache.get(sessionId);
+        if (sessionUser != null) {
+            return sessionUser;
+        }
+
+        Object stored = redisService.get(SESSION_KEY_PREFIX + sessionId);
+        if (stored instanceof SessionUser) {
+            sessionUser = (SessionUser) stored;
+        } else if (stored instanceof Number) {
+            // Сессия, открытая до появления SessionUser, хранит только id
+            User user = userRepository.findById(((Number) stored).intValue());
+            if (user == null) {
+                return null;
+            }
+            sessionUser = new SessionUser(user.getId(), user.getLogin(), isAdmin(user));
+        } else {
+            return null;
+        }
+        nearCache.put(sessionId, sessionUser);
+        return sessionUser;
+    }
+
+    /**
+     * Сущность пользователя текущего запроса - для запросов, которым нужны его данные
+     * или связи в JPA; остальным достаточно resolveUser
+     * @param request HTTP запрос
+     * @return пользователь или null, если запрос не авторизован
+     */
+    public User currentUser(HttpServletRequest request) {
+        SessionUser sessionUser = resolveUser(request);
+        return sessionUser != null ? userRepository.findById(sessionUser.getId()) : null;
+    }
+
+    /**
+     * Является ли пользователь администратором
+     */
+    public static boolean isAdmin(User user) {
+        return user != null && "admin".equals(user.getLogin());
+    }
+
+    public static boolean isAdmin(SessionUser user) {
+        return user != null && user.isAdmin();
+    }
+
+    /**
+     * Счетчики ближнего кеша сессий в метриках кешей (cache=session-near)
+     */
+    @Autowired
+    public void bindMetrics(MeterRegistry registry) {
+        new LocalCacheMetrics(nearCache, "session-near").bindTo(registry);
+    }
+
+    /**
+     * Закрыть сессию текущего запроса
+     * @param request HTTP запрос
+     * @param response ответ, в котором cookie сбрасывается
+     */
+    public void endSession(HttpServletRequest request, HttpServletResponse response) {
+        String sessionId = verifiedSessionId(request);
+        if (sessionId != null) {
+            // Удаляем сессию из Redis
+            redisService.delete(SESSION_KEY_PREFIX + sessionId);
+            nearCache.invalidate(sessionId);
+        }
+        writeCookie(response, "", 0);
+    }
+
+    /**
+     * Достает токен из запроса и проверяет подпись.
+     * Поддельные токены отбрасываются без обращения к Redis.
+     */
+    private String verifiedSessionId(HttpServletRequest request) {
+        String token = extractToken(request);
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+        String sessionId = token.substring(0, dot);
+        byte[] expected = sign(sessionId).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, actual) ? sessionId : null;
+    }
+
+    private String extractToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            return header.substring(BEARER_PREFIX.length()).trim();
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (SESSION_COOKIE.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private String sign(String sessionId) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return encoder.encodeToString(mac.doFinal(sessionId.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось подписать токен сессии", e);
+        }
+    }
+
+    private void writeCookie(HttpServletResponse response, String value, long maxAgeSeconds) {
+        ResponseCookie cookie = ResponseCookie.from(SESSION_COOKIE, value)
+                .httpOnly(true)
+                .path("/")
+                .sameSite("Lax")
+                .maxAge(Duration.ofSeconds(maxAgeSeconds))
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.SqlShapeStats;
+import com.example.filmbase.sql.SqlStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика SQL по единицам работы вместо spring.jpa.show-sql.
+ * SqlStatsDataSource сообщает о каждом выполненном запросе; запрос относится
+ * к единице работы текущего потока - HTTP запросу (SqlStatsFilter) или пачке
+ * сообщений Kafka (SqlStatsBatchInterceptor).
+ *
+ * По завершении единицы в лог пишется предупреждение, если запросов больше
+ * statement-budget или одна форма запроса выполнена repeat-threshold раз и больше
+ * (признак N+1), а также если единица держала больше одного соединения сразу:
+ * при open-in-view запрос, который берет второе соединение мимо транзакции,
+ * под нагрузкой может выбрать пул и ждать сам себя. Итоги по формам копятся за все время работы процесса,
+ * самые дорогие отдает top().
+ */
+@Service
+public class SqlStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlStatsService.class);
+
+    public static final String SORT_TOTAL = "total";
+    public static final String SORT_MEAN = "mean";
+    public static final String SORT_MAX = "max";
+    public static final String SORT_COUNT = "count";
+
+    // Сюда идут формы сверх max-shapes
+    private static final String OTHER_SHAPE = "(other)";
+
+    @Value("${filmbase.sql.stats.enabled:true}")
+    private boolean enabled;
+
+    @Value("${filmbase.sql.stats.statement-budget:20}")
+    private int statementBudget;
+
+    @Value("${filmbase.sql.stats.repeat-threshold:10}")
+    private int repeatThreshold;
+
+    @Value("${filmbase.sql.stats.max-shapes:1000}")
+    private int maxShapes;
+
+    @Value("${filmbase.sql.stats.top-k:20}")
+    private int defaultLimit;
+
+    private final ThreadLocal<SqlStats> current = new ThreadLocal<>();
+
+    private final Map<String, ShapeTotals> totals = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Начать единицу работы в текущем потоке
+     * @return статистика единицы или null, если учет выключен или единица уже начата выше по стеку
+     */
+    public SqlStats begin(String unit, int messages) {
+        if (!enabled || current.get() != null) {
+            return null;
+        }
+        SqlStats stats = new SqlStats(unit, messages);
+        current.set(stats);
+        return stats;
+    }
+
+    /**
+     * Единица работы текущего потока или null
+     */
+    public SqlStats current() {
+        return current.get();
+    }
+
+    /**
+     * Завершить единицу работы, начатую begin
+     * @param unit итоговое имя единицы, если оно стало известно только после выполнения; null - прежнее
+     */
+    public void end(SqlStats stats, String unit) {
+        if (stats == null) {
+            return;
+        }
+        current.remove();
+        String name = unit != null ? unit : stats.getUnit();
+        double jdbcMs = toMillis(stats.getJdbcNanos());
+        if (stats.getStatements() > statementBudget) {
+            logger.warn("SQL statement budget exceeded: unit=\"{}\" messages={} statements={} budget={} rows={} jdbcMs={} elapsedMs={}",
+                    name, stats.getMessages(), stats.getStatements(), statementBudget, stats.getRows(),
+                    String.format("%.1f", jdbcMs), String.format("%.1f", toMillis(stats.getElapsedNanos())));
+        }
+        String shape = stats.getMostRepeatedShape();
+        int executions = shape != null ? stats.executionsOf(shape) : 0;
+        if (executions >= repeatThreshold) {
+            logger.warn("Repeated SQL shape (possible N+1): unit=\"{}\" messages={} executions={} statements={} shape=\"{}\"",
+                    name, stats.getMessages(), executions, stats.getStatements(), shape);
+        }
+        if (stats.getMaxOpenConnections() > 1) {
+            logger.warn("Several JDBC connections held at once: unit=\"{}\" messages={} connections={} statements={}",
+                    name, stats.getMessages(), stats.getMaxOpenConnections(), stats.getStatements());
+        }
+        if (logger.isDebugEnabled() && stats.getStatements() > 0) {
+            logger.debug("SQL: unit=\"{}\" statements={} rows={} jdbcMs={}",
+                    name, stats.getStatements(), stats.getRows(), String.format("%.1f", jdbcMs));
+        }
+    }
+
+    /**
+     * Учесть выполненный запрос
+     * @param rows измененные строки; выбранные досчитываются через fetched
+     */
+    public void executed(String shape, long nanos, long rows) {
+        SqlStats stats = current.get();
+        if (stats != null) {
+            stats.executed(shape, nanos, rows);
+        }
+        ShapeTotals shapeTotals = totalsOf(shape);
+        shapeTotals.executions.increment();
+        shapeTotals.nanos.add(nanos);
+        shapeTotals.rows.add(rows);
+        shapeTotals.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public void connectionOpened() {
+        SqlStats stats = current.get();
+        if (stats != null) {
+            stats.connectionOpened();
+        }
+    }
+
+    public void connectionClosed() {
+        SqlStats stats = current.get();
+        if (stats != null) {
+            stats.connectionClosed();
+        }
+    }
+
+    /**
+     * Учесть строки, прочитанные из результата запроса
+     */
+    public void fetched(String shape, long rows) {
+        if (rows == 0) {
+            return;
+        }
+        SqlStats stats = current.get();
+        if (stats != null) {
+            stats.fetched(rows);
+        }
+        totalsOf(shape).rows.add(rows);
+    }
+
+    /**
+     * Самые дорогие формы запросов
+     * @param by total, mean, max или count
+     * @param limit сколько вернуть; null - top-k из настроек
+     */
+    public List<SqlShapeStats> top(String by, Integer limit) {
+        Comparator<SqlShapeStats> order;
+        switch (by) {
+            case SORT_MEAN:
+                order = Comparator.comparing(SqlShapeStats::getMeanMs);
+                break;
+            case SORT_MAX:
+                order = Comparator.comparing(SqlShapeStats::getMaxMs);
+                break;
+            case SORT_COUNT:
+                order = Comparator.comparing(SqlShapeStats::getExecutions);
+                break;
+            default:
+                order = Comparator.comparing(SqlShapeStats::getTotalMs);
+        }
+        List<SqlShapeStats> rows = new ArrayList<>(totals.size());
+        totals.forEach((shape, shapeTotals) -> {
+            long executions = shapeTotals.executions.sum();
+            double totalMs = toMillis(shapeTotals.nanos.sum());
+            rows.add(new SqlShapeStats(shape, executions, shapeTotals.rows.sum(), totalMs,
+                    executions > 0 ? totalMs / executions : 0, toMillis(shapeTotals.maxNanos.get())));
+        });
+        rows.sort(order.reversed());
+        int size = Math.max(1, limit != null ? limit : defaultLimit);
+        return rows.size() > size ? new ArrayList<>(rows.subList(0, size)) : rows;
+    }
+
+    /**
+     * Начать накопление итогов по формам заново
+     */
+    public void reset() {
+        totals.clear();
+    }
+
+    private ShapeTotals totalsOf(String shape) {
+        ShapeTotals shapeTotals = totals.get(shape);
+        if (shapeTotals != null) {
+            return shapeTotals;
+        }
+        return totals.computeIfAbsent(totals.size() < maxShapes ? shape : OTHER_SHAPE, key -> new ShapeTotals());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static class ShapeTotals {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.cache.BloomFilter;
+import com.example.filmbase.dto.UserFilterStats;
+import com.example.filmbase.entities.User;
+import com.example.filmbase.repositories.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Проверка занятости логина и email через фильтр Блума в памяти процесса.
+ * "Точно свободен" фильтр отвечает сам, без запроса к базе; в базу идет
+ * только "возможно занят" - настоящие совпадения и ложные срабатывания.
+ *
+ * Фильтр строится при старте из UserRepository и пополняется при регистрации.
+ * При filmbase.users.bloom.replicate=true биты новых регистраций пишутся и в
+ * битовую строку Redis, а каждый экземпляр периодически сливает ее в свой фильтр.
+ * Пока слияния не было, фильтр другого экземпляра может счесть занятый логин
+ * свободным - регистрацию это не ломает: уникальность проверяет база при сохранении.
+ */
+@Service
+public class UserAvailabilityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserAvailabilityService.class);
+
+    public static final String GOOD = "GOOD";
+    public static final String ERROR_LOGIN = "ERRORLOGIN";
+    public static final String ERROR_EMAIL = "ERROREMAIL";
+
+    private static final String LOGIN_PREFIX = "l:";
+    private static final String EMAIL_PREFIX = "e:";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Value("${filmbase.users.bloom.expected-insertions:100000}")
+    private long expectedInsertions;
+
+    @Value("${filmbase.users.bloom.fpp:0.01}")
+    private double fpp;
+
+    @Value("${filmbase.users.bloom.replicate:false}")
+    private boolean replicate;
+
+    // null, пока фильтр не построен: тогда все проверки идут в базу
+    private volatile BloomFilter filter;
+    private volatile String redisKey;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder answeredByFilter = new LongAdder();
+    private final LongAdder databaseLookups = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Построить фильтр по всем пользователям. Размер - с запасом на вдвое большее
+     * количество, чем есть сейчас, но не меньше expected-insertions.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void build() {
+        long users = userRepository.count();
+        BloomFilter built = new BloomFilter(Math.max(expectedInsertions, users * 2), fpp);
+        try (Stream<Object[]> rows = userRepository.streamLoginsAndEmails()) {
+            rows.forEach(row -> {
+                built.put(LOGIN_PREFIX + row[0]);
+                built.put(EMAIL_PREFIX + row[1]);
+            });
+        }
+        String key = "users:bloom:" + built.bitCount() + ":" + built.hashCount();
+        if (replicate) {
+            try {
+                redisService.setBytesIfAbsent(key, built.toRedisBytes());
+                built.mergeRedisBytes(redisService.getBytes(key));
+            } catch (Exception e) {
+                logger.warn("Unable to replicate user filter through Redis: {}", e.getMessage());
+            }
+        }
+        redisKey = key;
+        filter = built;
+        logger.info("User filter built: {} users, {} KB, expected fpp {}",
+                users, built.sizeInBytes() / 1024, String.format("%.5f", built.expectedFpp()));
+    }
+
+    /**
+     * Слить в фильтр регистрации других экземпляров
+     */
+    @Scheduled(fixedDelayString = "${filmbase.users.bloom.sync-interval-ms:30000}")
+    public void sync() {
+        BloomFilter current = filter;
+        if (!replicate || current == null) {
+            return;
+        }
+        try {
+            current.mergeRedisBytes(redisService.getBytes(redisKey));
+        } catch (Exception e) {
+            logger.warn("User filter sync failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Проверить, свободны ли логин и email
+     * @return GOOD, ERRORLOGIN или ERROREMAIL - как при регистрации
+     */
+    public String check(String login, String email) {
+        if (login != null && isTaken(LOGIN_PREFIX + login, login, true)) {
+            return ERROR_LOGIN;
+        }
+        if (email != null && isTaken(EMAIL_PREFIX + email, email, false)) {
+            return ERROR_EMAIL;
+        }
+        return GOOD;
+    }
+
+    /**
+     * Какое из ограничений уникальности нарушил пользователь, которого не удалось сохранить
+     */
+    public String conflictOf(User user) {
+        return userRepository.existsByLogin(user.getLogin()) ? ERROR_LOGIN : ERROR_EMAIL;
+    }
+
+    /**
+     * Учесть нового пользователя в фильтре
+     */
+    public void registered(User user) {
+        remember(LOGIN_PREFIX + user.getLogin());
+        remember(EMAIL_PREFIX + user.getEmail());
+    }
+
+    public UserFilterStats stats() {
+        BloomFilter current = filter;
+        long negatives = answeredByFilter.sum();
+        long misses = falsePositives.sum();
+        double observedFpp = negatives + misses > 0 ? (double) misses / (negatives + misses) : 0;
+        if (current == null) {
+            return new UserFilterStats(0L, 0L, 0, 0L, 0.0, observedFpp, checks.sum(), negatives,
+                    databaseLookups.sum(), misses);
+        }
+        return new UserFilterStats(current.insertions(), current.bitCount(), current.hashCount(),
+                current.sizeInBytes(), current.expectedFpp(), observedFpp, checks.sum(), negatives,
+                databaseLookups.sum(), misses);
+    }
+
+    /**
+     * Те же показатели, что в stats(), в метриках filmbase.users.filter.*
+     */
+    @Autowired
+    public void bindMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("filmbase.users.filter.checks", checks, LongAdder::sum)
+                .description("Login/email availability checks")
+                .register(registry);
+        FunctionCounter.builder("filmbase.users.filter.answers", answeredByFilter, LongAdder::sum)
+                .description("Availability checks by where the answer came from")
+                .tag("source", "filter")
+                .register(registry);
+        FunctionCounter.builder("filmbase.users.filter.answers", databaseLookups, LongAdder::sum)
+                .description("Availability checks by where the answer came from")
+                .tag("source", "database")
+                .register(registry);
+        FunctionCounter.builder("filmbase.users.filter.false.positives", falsePositives, LongAdder::sum)
+                .description("Database lookups that found the value free")
+                .register(registry);
+        Gauge.builder("filmbase.users.filter.expected.fpp", this, UserAvailabilityService::expectedFpp)
+                .description("False positive probability at the current fill of the filter")
+                .register(registry);
+    }
+
+    private double expectedFpp() {
+        BloomFilter current = filter;
+        return current != null ? current.expectedFpp() : Double.NaN;
+    }
+
+    private boolean isTaken(String entry, String value, boolean login) {
+        checks.increment();
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(entry)) {
+            answeredByFilter.increment();
+            return false;
+        }
+        databaseLookups.increment();
+        boolean taken = login ? userRepository.existsByLogin(value) : userRepository.existsByEmail(value);
+        if (!taken && current != null) {
+            falsePositives.increment();
+        }
+        return taken;
+    }
+
+    private void remember(String entry) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        current.put(entry);
+        if (replicate) {
+            try {
+                redisService.setBits(redisKey, current.bitsOf(entry));
+            } catch (Exception e) {
+                logger.warn("Unable to replicate user filter entry: {}", e.getMessage());
+            }
+        }
+    }
+}
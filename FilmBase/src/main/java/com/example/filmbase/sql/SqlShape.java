@@ -0,0 +1,96 @@
+package com.example.filmbase.sql;
+
+import java.util.regex.Pattern;
+
+/**
+ * Форма запроса - текст SQL без значений: строки и числа заменяются на ?,
+ * списки (?, ?, ...) и многострочные VALUES сворачиваются в один элемент,
+ * пробелы схлопываются. Запросы, отличающиеся только параметрами, дают одну форму.
+ */
+public final class SqlShape {
+
+    private static final Pattern LIST = Pattern.compile("\\(\\?(?:, \\?)+\\)");
+    private static final Pattern ROWS = Pattern.compile("\\(\\?\\)(?:, \\(\\?\\))+");
+
+    private SqlShape() {
+    }
+
+    public static String of(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        StringBuilder shape = new StringBuilder(sql.length());
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // Строковый литерал, '' внутри - экранированная кавычка
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                shape.append('?');
+                i++;
+            } else if (Character.isDigit(c) && !partOfWord(shape)) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                shape.append('?');
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (shape.length() > 0) {
+                    shape.append(' ');
+                }
+            } else if (c == ',') {
+                trimSpace(shape);
+                shape.append(", ");
+                i++;
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+            } else if (c == '(') {
+                shape.append(c);
+                i++;
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+            } else if (c == ')') {
+                trimSpace(shape);
+                shape.append(c);
+                i++;
+            } else {
+                shape.append(c);
+                i++;
+            }
+        }
+        trimSpace(shape);
+        String folded = LIST.matcher(shape).replaceAll("(?)");
+        return ROWS.matcher(folded).replaceAll("(?)");
+    }
+
+    // Цифра после буквы, '_' или '$' - часть имени (order_item2, $1), а не число
+    private static boolean partOfWord(StringBuilder shape) {
+        if (shape.length() == 0) {
+            return false;
+        }
+        char previous = shape.charAt(shape.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$' || previous == '.';
+    }
+
+    private static void trimSpace(StringBuilder shape) {
+        int end = shape.length();
+        if (end > 0 && shape.charAt(end - 1) == ' ') {
+            shape.setLength(end - 1);
+        }
+    }
+}
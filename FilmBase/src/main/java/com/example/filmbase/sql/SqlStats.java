@@ -0,0 +1,102 @@
+package com.example.filmbase.sql;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Запросы одной единицы работы - HTTP запроса или пачки сообщений Kafka.
+ * Заполняется только в потоке, который эту единицу выполняет.
+ */
+public class SqlStats {
+
+    private final String unit;
+    private final int messages;
+    private final long startNanos = System.nanoTime();
+
+    private int statements;
+    private long rows;
+    private long jdbcNanos;
+    private int openConnections;
+    private int maxOpenConnections;
+    private final Map<String, int[]> executionsByShape = new HashMap<>();
+
+    /**
+     * @param unit что выполняется: "GET /api/cart", "kafka orders"
+     * @param messages количество сообщений Kafka в пачке, для HTTP - 1
+     */
+    public SqlStats(String unit, int messages) {
+        this.unit = unit;
+        this.messages = messages;
+    }
+
+    public void executed(String shape, long nanos, long rowCount) {
+        statements++;
+        rows += rowCount;
+        jdbcNanos += nanos;
+        executionsByShape.computeIfAbsent(shape, key -> new int[1])[0]++;
+    }
+
+    public void fetched(long rowCount) {
+        rows += rowCount;
+    }
+
+    public void connectionOpened() {
+        openConnections++;
+        maxOpenConnections = Math.max(maxOpenConnections, openConnections);
+    }
+
+    public void connectionClosed() {
+        openConnections = Math.max(0, openConnections - 1);
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public int getMessages() {
+        return messages;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    /**
+     * Наибольшее число соединений пула, которые единица держала одновременно
+     */
+    public int getMaxOpenConnections() {
+        return maxOpenConnections;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Форма, выполненная больше всего раз, или null, если запросов не было
+     */
+    public String getMostRepeatedShape() {
+        String shape = null;
+        int max = 0;
+        for (Map.Entry<String, int[]> entry : executionsByShape.entrySet()) {
+            if (entry.getValue()[0] > max) {
+                max = entry.getValue()[0];
+                shape = entry.getKey();
+            }
+        }
+        return shape;
+    }
+
+    public int executionsOf(String shape) {
+        int[] count = executionsByShape.get(shape);
+        return count != null ? count[0] : 0;
+    }
+}
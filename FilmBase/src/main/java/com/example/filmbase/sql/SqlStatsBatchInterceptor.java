@@ -0,0 +1,45 @@
+package com.example.filmbase.sql;
+
+import com.example.filmbase.services.SqlStatsService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.BatchInterceptor;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Единица учета SQL - пачка сообщений, переданная пакетному слушателю.
+ * Перехватчик вызывается в потоке потребителя до и после слушателя.
+ */
+public class SqlStatsBatchInterceptor implements BatchInterceptor<Object, Object> {
+
+    private final SqlStatsService stats;
+
+    public SqlStatsBatchInterceptor(SqlStatsService stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public ConsumerRecords<Object, Object> intercept(ConsumerRecords<Object, Object> records,
+                                                     Consumer<Object, Object> consumer) {
+        Set<String> topics = new TreeSet<>();
+        for (TopicPartition partition : records.partitions()) {
+            topics.add(partition.topic());
+        }
+        stats.begin("kafka " + String.join(",", topics), records.count());
+        return records;
+    }
+
+    @Override
+    public void success(ConsumerRecords<Object, Object> records, Consumer<Object, Object> consumer) {
+        stats.end(stats.current(), null);
+    }
+
+    @Override
+    public void failure(ConsumerRecords<Object, Object> records, Exception exception,
+                        Consumer<Object, Object> consumer) {
+        stats.end(stats.current(), null);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.filmbase.sql;
+
+import com.example.filmbase.services.SqlStatsService;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DataSource, который замеряет каждый запрос: время выполнения execute*,
+ * измененные строки и строки, прочитанные из ResultSet, - и сообщает их SqlStatsService.
+ * Соединения, запросы и результаты оборачиваются динамическими прокси
+ * поверх объектов пула, остальные вызовы уходят в них без изменений.
+ * Выдача и закрытие соединений тоже сообщаются, чтобы видеть единицы, держащие несколько сразу.
+ *
+ * Время считается только на execute*: драйвер PostgreSQL без fetch size
+ * получает весь результат внутри execute, так что это и есть время JDBC.
+ */
+public class SqlStatsDataSource extends DelegatingDataSource {
+
+    // Формы уже встречавшихся запросов; текстов SQL у приложения конечное число
+    private static final int MAX_CACHED_SHAPES = 4096;
+
+    private final SqlStatsService stats;
+    private final Map<String, String> shapes = new ConcurrentHashMap<>();
+
+    public SqlStatsDataSource(DataSource target, SqlStatsService stats) {
+        super(target);
+        this.stats = stats;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        stats.connectionOpened();
+        return (Connection) Proxy.newProxyInstance(SqlStatsDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private String shapeOf(String sql) {
+        String shape = shapes.get(sql);
+        if (shape == null) {
+            shape = SqlShape.of(sql);
+            if (shapes.size() < MAX_CACHED_SHAPES) {
+                shapes.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private boolean closed;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && !closed) {
+                closed = true;
+                stats.connectionClosed();
+            }
+            Object result = SqlStatsDataSource.invoke(target, method, args);
+            switch (method.getName()) {
+                case "createStatement":
+                    return statement(result, Statement.class, null);
+                case "prepareStatement":
+                    return statement(result, PreparedStatement.class, shapeOf((String) args[0]));
+                case "prepareCall":
+                    return statement(result, CallableStatement.class, shapeOf((String) args[0]));
+                default:
+                    return result;
+            }
+        }
+
+        private Object statement(Object statement, Class<?> type, String shape) {
+            return Proxy.newProxyInstance(SqlStatsDataSource.class.getClassLoader(),
+                    new Class<?>[]{type}, new StatementHandler((Statement) statement, shape));
+        }
+    }
+
+    /**
+     * Для PreparedStatement форма известна при подготовке; для Statement - берется из
+     * текста, переданного в execute*, а пакет addBatch(sql) учитывается формой первого запроса
+     */
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedShape;
+        private String batchShape;
+        private String executedShape;
+        private ResultSetHandler openResult;
+
+        StatementHandler(Statement target, String preparedShape) {
+            this.target = target;
+            this.preparedShape = preparedShape;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                if ("addBatch".equals(name) && preparedShape == null && batchShape == null && args != null) {
+                    batchShape = shapeOf((String) args[0]);
+                } else if ("close".equals(name)) {
+                    closeResult();
+                }
+                Object result = SqlStatsDataSource.invoke(target, method, args);
+                return "getResultSet".equals(name) && result != null ? result((ResultSet) result, executedShape) : result;
+            }
+            String shape = args != null && args.length > 0 && args[0] instanceof String
+                    ? shapeOf((String) args[0]) : preparedShape != null ? preparedShape : batchShape;
+            if (name.endsWith("Batch")) {
+                batchShape = null;
+            }
+            closeResult();
+            long start = System.nanoTime();
+            Object result = SqlStatsDataSource.invoke(target, method, args);
+            long nanos = System.nanoTime() - start;
+            executedShape = shape != null ? shape : "";
+            stats.executed(executedShape, nanos, updatedRows(result));
+            return result instanceof ResultSet ? result((ResultSet) result, executedShape) : result;
+        }
+
+        private ResultSet result(ResultSet resultSet, String shape) {
+            openResult = new ResultSetHandler(resultSet, shape != null ? shape : "");
+            return (ResultSet) Proxy.newProxyInstance(SqlStatsDataSource.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, openResult);
+        }
+
+        // Результат, не закрытый явно, закрывается вместе с запросом или следующим execute
+        private void closeResult() {
+            if (openResult != null) {
+                openResult.report();
+                openResult = null;
+            }
+        }
+    }
+
+    private class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private final String shape;
+        private long rows;
+        private boolean reported;
+
+        ResultSetHandler(ResultSet target, String shape) {
+            this.target = target;
+            this.shape = shape;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                report();
+            }
+            Object result = SqlStatsDataSource.invoke(target, method, args);
+            if ("next".equals(name) && Boolean.TRUE.equals(result)) {
+                rows++;
+            }
+            return result;
+        }
+
+        void report() {
+            if (!reported) {
+                reported = true;
+                stats.fetched(shape, rows);
+            }
+        }
+    }
+
+    private static long updatedRows(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return Math.max(0, ((Number) result).longValue());
+        }
+        long rows = 0;
+        if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                rows += Math.max(0, count);
+            }
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) {
+                rows += Math.max(0, count);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.filmbase.sql;
+
+import com.example.filmbase.services.SqlStatsService;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Единица учета SQL - HTTP запрос. В логе запрос называется шаблоном обработчика
+ * (GET /api/orders/{orderId}), а если обработчик не найден - путем.
+ */
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+    private final SqlStatsService stats;
+
+    public SqlStatsFilter(SqlStatsService stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStats requestStats = stats.begin(request.getMethod() + " " + request.getRequestURI(), 1);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            stats.end(requestStats, pattern != null ? request.getMethod() + " " + pattern : null);
+        }
+    }
+}
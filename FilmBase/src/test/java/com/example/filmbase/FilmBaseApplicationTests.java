@@ -3,7 +3,7 @@ package com.example.filmbase;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "filmbase.session.secret=test-session-secret-0123456789abcdef")
 class FilmBaseApplicationTests {
 
 	@Test
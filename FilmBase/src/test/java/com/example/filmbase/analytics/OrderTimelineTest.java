@@ -0,0 +1,77 @@
+package com.example.filmbase.analytics;
+
+import com.example.filmbase.dto.OrderEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderTimelineTest {
+
+	private static final long MILLIS = 1710505845123L;
+
+	private static OrderEvent event(String type, int orderId, String status) {
+		return new OrderEvent(type, orderId, 7, "ivanov", 32499.98, status, "Москва, ул. Ленина, д. 1",
+				LocalDateTime.of(2024, 3, 15, 12, 30, 45));
+	}
+
+	@Test
+	void parsesMembersBack() {
+		OrderEvent event = event("CREATED", 1042, "В обработке");
+
+		OrderTimeline.Entry byTime = OrderTimeline.parseTimeMember(OrderTimeline.timeMember(event), MILLIS);
+		OrderTimeline.Entry byOrder = OrderTimeline.parseOrderMember(OrderTimeline.orderMember(event, MILLIS));
+
+		assertEquals(new OrderTimeline.Entry(1042, 7, "CREATED", null, new BigDecimal("32499.98"), MILLIS), byTime);
+		assertEquals(new OrderTimeline.Entry(1042, null, "CREATED", "В обработке", new BigDecimal("32499.98"), MILLIS),
+				byOrder);
+		assertNull(OrderTimeline.parseTimeMember("{\"orderId\":1042}", MILLIS));
+	}
+
+	@Test
+	void lexRangeSelectsOneOrderInTimeOrder() {
+		// ZRANGEBYLEX при равных оценках сравнивает байты, как TreeSet строк из ASCII-префиксов
+		TreeSet<String> members = new TreeSet<>(Arrays.asList(
+				OrderTimeline.orderMember(event("DELIVERED", 1042, "Доставлен"), MILLIS + 2000),
+				OrderTimeline.orderMember(event("CREATED", 1042, "В обработке"), MILLIS),
+				OrderTimeline.orderMember(event("CREATED", 104, "В обработке"), MILLIS),
+				OrderTimeline.orderMember(event("CREATED", 10420, "В обработке"), MILLIS)));
+
+		List<String> types = members.subSet(OrderTimeline.orderRangeMin(1042), OrderTimeline.orderRangeMax(1042))
+				.stream()
+				.map(member -> OrderTimeline.parseOrderMember(member).getEventType())
+				.collect(Collectors.toList());
+
+		assertEquals(Arrays.asList("CREATED", "DELIVERED"), types);
+	}
+
+	@Test
+	void keysAreShardedByDay() {
+		assertEquals("orders:ts:20240315", OrderTimeline.timeKey(LocalDate.of(2024, 3, 15)));
+		assertEquals("orders:byorder:20240315", OrderTimeline.orderKey(LocalDate.of(2024, 3, 15)));
+		assertEquals(3, OrderTimeline.days(LocalDate.of(2024, 2, 28), LocalDate.of(2024, 3, 1)).size());
+	}
+
+	@Test
+	void membersAreSmallerThanPreviousJsonValue() {
+		OrderEvent event = event("CREATED", 1042, "В обработке");
+		String json = "{\"orderId\":1042,\"userId\":7,\"eventType\":\"CREATED\",\"amount\":32499.98,"
+				+ "\"status\":\"В обработке\"}";
+
+		int previous = "order:event:1042".length() + json.getBytes(StandardCharsets.UTF_8).length;
+		int current = OrderTimeline.timeMember(event).getBytes(StandardCharsets.UTF_8).length
+				+ OrderTimeline.orderMember(event, MILLIS).getBytes(StandardCharsets.UTF_8).length;
+
+		assertTrue(current < previous, current + " bytes vs " + previous);
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.filmbase.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class SlidingWindowCounterTest {
+
+	private static final long START = 1_700_000_000_000L;
+
+	@Test
+	void eventsLeaveWindowWithTheirBucket() {
+		SlidingWindowCounter counter = new SlidingWindowCounter(1000, 60, 3);
+		counter.add(0, START, START);
+		counter.add(0, START + 30_000, START + 30_000);
+		counter.add(2, START + 59_000, START + 59_000);
+
+		assertArrayEquals(new long[]{2, 0, 1}, counter.totals(START + 59_000));
+		assertArrayEquals(new long[]{1, 0, 1}, counter.totals(START + 60_000));
+		assertArrayEquals(new long[]{0, 0, 0}, counter.totals(START + 120_000));
+	}
+
+	@Test
+	void dropsEventsOlderThanWindowAndReusesBuckets() {
+		SlidingWindowCounter counter = new SlidingWindowCounter(1000, 60, 1);
+		counter.add(0, START, START);
+		counter.add(0, START - 61_000, START);
+		counter.add(0, START + 60_000, START + 60_000);
+
+		assertArrayEquals(new long[]{1}, counter.totals(START + 60_000));
+	}
+
+	@Test
+	void concurrentAddsAreNotLost() throws Exception {
+		SlidingWindowCounter counter = new SlidingWindowCounter(60_000, 60, 3);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			int kind = t % 3;
+			futures.add(pool.submit(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					counter.add(kind, START, START);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		pool.shutdown();
+
+		assertArrayEquals(new long[]{30_000, 30_000, 20_000}, counter.totals(START));
+	}
+
+	@Test
+	void restoresCheckpointedBucketsStillInWindow() {
+		SlidingWindowCounter counter = new SlidingWindowCounter(1000, 60, 1);
+		counter.add(0, START, START);
+		counter.add(0, START + 10_000, START + 10_000);
+
+		SlidingWindowCounter restored = new SlidingWindowCounter(1000, 60, 1);
+		restored.restore(counter.state(), START + 30_000);
+		assertArrayEquals(new long[]{2}, restored.totals(START + 30_000));
+
+		SlidingWindowCounter late = new SlidingWindowCounter(1000, 60, 1);
+		late.restore(counter.state(), START + 65_000);
+		assertArrayEquals(new long[]{1}, late.totals(START + 65_000));
+	}
+}
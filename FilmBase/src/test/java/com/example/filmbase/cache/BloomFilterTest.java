@@ -0,0 +1,57 @@
+package com.example.filmbase.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+	@Test
+	void hasNoFalseNegativesAndKeepsFppNearTarget() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+		for (int i = 0; i < 10_000; i++) {
+			filter.put("l:user" + i);
+		}
+		for (int i = 0; i < 10_000; i++) {
+			assertTrue(filter.mightContain("l:user" + i));
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 100_000; i++) {
+			if (filter.mightContain("l:guest" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < 2_000, falsePositives + " false positives of 100000");
+		assertTrue(filter.expectedFpp() < 0.02, "expected fpp " + filter.expectedFpp());
+		assertEquals(7, filter.hashCount());
+	}
+
+	@Test
+	void redisBitStringRoundTrips() {
+		BloomFilter source = new BloomFilter(1_000, 0.01);
+		source.put("e:ivanov@shop.com");
+		BloomFilter target = new BloomFilter(1_000, 0.01);
+
+		target.mergeRedisBytes(source.toRedisBytes());
+
+		assertTrue(target.mightContain("e:ivanov@shop.com"));
+		assertEquals(source.setBitCount(), target.setBitCount());
+	}
+
+	@Test
+	void bitOffsetsFollowRedisSetBitOrder() {
+		BloomFilter filter = new BloomFilter(1_000, 0.01);
+		long[] bits = filter.bitsOf("l:admin");
+		filter.put("l:admin");
+		byte[] bytes = filter.toRedisBytes();
+
+		// SETBIT key n 1 выставляет бит 7 - n % 8 в байте n / 8
+		for (long bit : bits) {
+			assertTrue((bytes[(int) (bit / 8)] & (0x80 >>> (bit % 8))) != 0);
+		}
+		assertFalse(new BloomFilter(1_000, 0.01).mightContain("l:admin"));
+	}
+}
@@ -0,0 +1,46 @@
+package com.example.filmbase.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogSnapshotTest {
+
+	private final CatalogSnapshot snapshot = CatalogSnapshot.of(1, "[]".getBytes(StandardCharsets.UTF_8));
+
+	@Test
+	void matchesExactTagsFromList() {
+		String etag = snapshot.getEtag();
+		String other = "\"" + "0".repeat(etag.length() - 2) + "\"";
+
+		assertTrue(snapshot.matches(etag));
+		assertTrue(snapshot.matches("W/" + etag));
+		assertTrue(snapshot.matches(other + ", " + etag));
+		assertTrue(snapshot.matches(other + ",W/" + etag + " ,"));
+		assertTrue(snapshot.matches("*"));
+
+		assertFalse(snapshot.matches(null));
+		assertFalse(snapshot.matches(""));
+		assertFalse(snapshot.matches(other));
+		// Тег, в который ETag входит подстрокой, - другой тег
+		assertFalse(snapshot.matches("\"x" + etag.substring(1)));
+		assertFalse(snapshot.matches(etag.substring(0, etag.length() - 1) + "x\""));
+		assertFalse(snapshot.matches(etag.substring(1, etag.length() - 1)));
+		assertFalse(snapshot.matches("W/" + etag.substring(0, etag.length() - 1)));
+	}
+
+	@Test
+	void renewedSnapshotSharesEncodedContent() {
+		CatalogSnapshot renewed = snapshot.renewed();
+
+		assertEquals(snapshot.getVersion(), renewed.getVersion());
+		assertEquals(snapshot.getEtag(), renewed.getEtag());
+		assertSame(snapshot.getJson(), renewed.getJson());
+		assertSame(snapshot.getGzip(), renewed.getGzip());
+	}
+}
@@ -0,0 +1,72 @@
+package com.example.filmbase.codec;
+
+import com.example.filmbase.dto.CartEvent;
+import com.example.filmbase.dto.OrderEvent;
+import com.example.filmbase.dto.ProductEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventCodecTest {
+
+	private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 3, 15, 12, 30, 45, 123456789);
+
+	@Test
+	void roundTripsAllEventTypes() {
+		OrderEvent order = new OrderEvent("CREATED", 1042, 7, "ivanov", 32499.98, "В обработке",
+				"Москва, ул. Ленина, д. 1", TIMESTAMP);
+		CartEvent cart = new CartEvent("ADDED", 7, "ivanov", 3, "Футболка хлопковая", 2, 999.99, TIMESTAMP);
+		ProductEvent product = new ProductEvent("UPDATED", 3, "Футболка хлопковая", 999.99, 2, "Одежда", -1, TIMESTAMP);
+
+		assertEquals(order, EventCodec.decode(EventCodec.encode(order)));
+		assertEquals(cart, EventCodec.decode(EventCodec.encode(cart)));
+		assertEquals(product, EventCodec.decode(EventCodec.encode(product)));
+	}
+
+	@Test
+	void keepsNullsAndValuesOutsideDictionary() {
+		OrderEvent order = new OrderEvent("RETURNED", 5, null, null, null, "Возврат", null, null);
+
+		assertEquals(order, EventCodec.decode(EventCodec.encode(order)));
+	}
+
+	@Test
+	void binaryIsLessThanHalfOfJson() {
+		ProductEvent product = new ProductEvent("UPDATED", 3, "Футболка хлопковая", 999.99, 2, "Одежда", 50, TIMESTAMP);
+		Map<String, Object> configs = new HashMap<>();
+		configs.put(BinaryEventSerializer.BINARY_TOPICS_CONFIG, "products");
+		BinaryEventSerializer serializer = new BinaryEventSerializer();
+		serializer.configure(configs, false);
+
+		byte[] binary = serializer.serialize("products", new RecordHeaders(), product);
+		byte[] json = serializer.serialize("orders", new RecordHeaders(), product);
+
+		assertTrue(EventCodec.isBinary(binary));
+		assertFalse(EventCodec.isBinary(json));
+		assertTrue(binary.length * 2 < json.length, binary.length + " bytes vs JSON " + json.length);
+	}
+
+	@Test
+	void deserializerReadsBothFormats() {
+		CartEvent cart = new CartEvent("REMOVED", 7, "ivanov", 3, "Футболка хлопковая", 1, 999.99, TIMESTAMP);
+		BinaryEventSerializer serializer = new BinaryEventSerializer();
+		serializer.configure(Collections.singletonMap(BinaryEventSerializer.BINARY_TOPICS_CONFIG, "cart"), false);
+		BinaryEventDeserializer deserializer = new BinaryEventDeserializer();
+		deserializer.configure(Collections.singletonMap("spring.json.trusted.packages", "*"), false);
+
+		RecordHeaders jsonHeaders = new RecordHeaders();
+		byte[] json = serializer.serialize("legacy", jsonHeaders, cart);
+		byte[] binary = serializer.serialize("cart", new RecordHeaders(), cart);
+
+		assertEquals(cart, deserializer.deserialize("cart", jsonHeaders, json));
+		assertEquals(cart, deserializer.deserialize("cart", new RecordHeaders(), binary));
+	}
+}
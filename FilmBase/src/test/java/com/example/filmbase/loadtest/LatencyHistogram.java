@@ -0,0 +1,61 @@
+package com.example.filmbase.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с логарифмическими корзинами (шаг 2%) от 1 мкс до ~100 с.
+ * Запись без блокировок из любого числа потоков; перцентили - с точностью корзины.
+ */
+public class LatencyHistogram {
+
+    private static final double STEP = 1.02;
+    private static final double LOG_STEP = Math.log(STEP);
+    private static final int BUCKETS = 1000;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private volatile long maxNanos;
+
+    public void record(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        int bucket = (int) Math.min(BUCKETS - 1, Math.log(micros) / LOG_STEP);
+        counts.incrementAndGet(bucket);
+        total.increment();
+        if (nanos > maxNanos) {
+            synchronized (this) {
+                if (nanos > maxNanos) {
+                    maxNanos = nanos;
+                }
+            }
+        }
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * @param percentile от 0 до 100
+     * @return верхняя граница корзины перцентиля в миллисекундах
+     */
+    public double percentileMillis(double percentile) {
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(Math.pow(STEP, i + 1), maxNanos / 1000.0) / 1000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    public double maxMillis() {
+        return maxNanos / 1_000_000.0;
+    }
+}
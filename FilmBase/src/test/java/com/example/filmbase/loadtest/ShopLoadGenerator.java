@@ -0,0 +1,309 @@
+package com.example.filmbase.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Сценарная нагрузка на /api: каждый посетитель регистрируется, входит, смотрит категории
+ * и каталог, ищет, а часть посетителей кладет товары в корзину, оформляет заказ и отменяет его.
+ *
+ * Посетители приходят с заданной частотой независимо от ответов сервера (открытая модель),
+ * поэтому замедление сервера видно в задержках, а не маскируется снижением нагрузки.
+ * Одновременно активных посетителей не больше maxInFlight; не запущенные из-за лимита
+ * считаются отдельно. Задержки и ошибки собираются по каждому эндпоинту.
+ */
+public class ShopLoadGenerator {
+
+    private static final String[] SEARCH_TERMS = {
+            "фильм", "книга", "классика", "новинка", "ремастер", "игра набор", "коллекционное издание",
+            "смартфон", "джинсы", "конструктор", "под"
+    };
+    private static final int CATEGORY_COUNT = 5;
+
+    private final String baseUrl;
+    private final double rate;
+    private final int maxInFlight;
+    private final double checkoutRatio;
+    private final double cancelRatio;
+
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong visitorSeq = new AtomicLong();
+    private List<Integer> productIds = new ArrayList<>();
+
+    private volatile Stats stats = new Stats();
+
+    /**
+     * @param baseUrl адрес приложения, например http://localhost:8080
+     * @param rate новых посетителей в секунду
+     * @param maxInFlight максимум одновременно активных посетителей
+     * @param checkoutRatio доля посетителей, оформляющих заказ
+     * @param cancelRatio доля оформленных заказов, которые отменяются
+     */
+    public ShopLoadGenerator(String baseUrl, double rate, int maxInFlight, double checkoutRatio, double cancelRatio) {
+        this.baseUrl = baseUrl;
+        this.rate = rate;
+        this.maxInFlight = maxInFlight;
+        this.checkoutRatio = checkoutRatio;
+        this.cancelRatio = cancelRatio;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()))
+                .build();
+    }
+
+    /**
+     * Прогреть приложение, затем дать нагрузку и вернуть статистику только за замер
+     */
+    public Report run(int warmupSeconds, int seconds) throws Exception {
+        loadProductIds();
+        if (warmupSeconds > 0) {
+            drive(warmupSeconds);
+        }
+        stats = new Stats();
+        long started = System.nanoTime();
+        drive(seconds);
+        return new Report(stats, (System.nanoTime() - started) / 1e9);
+    }
+
+    private void loadProductIds() throws Exception {
+        HttpResponse<String> response = client.send(get("/api/products", null), HttpResponse.BodyHandlers.ofString());
+        List<Integer> ids = new ArrayList<>();
+        for (JsonNode product : mapper.readTree(response.body())) {
+            ids.add(product.get("id").asInt());
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("Каталог пуст, нечего класть в корзину");
+        }
+        productIds = ids;
+    }
+
+    /**
+     * Запускать посетителей с частотой rate в течение seconds и дождаться завершения начатых
+     */
+    private void drive(int seconds) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        long tickMillis = 10;
+        double perTick = rate * tickMillis / 1000.0;
+        double[] due = {0};
+        ticker.scheduleAtFixedRate(() -> {
+            due[0] += perTick;
+            while (due[0] >= 1) {
+                due[0] -= 1;
+                if (!inFlight.tryAcquire()) {
+                    stats.skipped.increment();
+                    continue;
+                }
+                stats.started.increment();
+                visit().whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        stats.failed.increment();
+                    }
+                    inFlight.release();
+                });
+            }
+        }, 0, tickMillis, TimeUnit.MILLISECONDS);
+        Thread.sleep(seconds * 1000L);
+        ticker.shutdownNow();
+        ticker.awaitTermination(5, TimeUnit.SECONDS);
+        inFlight.acquire(maxInFlight);
+    }
+
+    private CompletableFuture<Void> visit() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String login = "load_" + runId + "_" + visitorSeq.incrementAndGet();
+        String password = "pw-" + login;
+        int categoryId = 1 + random.nextInt(CATEGORY_COUNT);
+        String term = SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)];
+        boolean checkout = random.nextDouble() < checkoutRatio;
+        boolean cancel = checkout && random.nextDouble() < cancelRatio;
+
+        String account = String.format("{\"login\":\"%s\",\"password\":\"%s\",\"email\":\"%s@load.test\"," +
+                "\"fullName\":\"Нагрузочный пользователь\"}", login, password, login);
+        return call("POST /api/register", post("/api/register", null, account), body("GOOD"))
+                .thenCompose(r -> call("POST /api/login",
+                        post("/api/login", null, "{\"login\":\"" + login + "\",\"password\":\"" + password + "\"}"),
+                        body("AUTH")))
+                .thenCompose(r -> {
+                    String token = sessionToken(r);
+                    return call("GET /api/categories", get("/api/categories", token), ok())
+                            .thenCompose(x -> call("GET /api/products", get("/api/products", token), ok()))
+                            .thenCompose(x -> call("GET /api/products/category/{id}/page",
+                                    get("/api/products/category/" + categoryId + "/page", token), ok()))
+                            .thenCompose(x -> call("POST /api/products/search",
+                                    post("/api/products/search", token, "{\"name\":\"" + term + "\"}"), ok()))
+                            .thenCompose(x -> call("GET /api/products/suggest",
+                                    get("/api/products/suggest?q=" + encode(term.substring(0, 2)), token), ok()))
+                            .thenCompose(x -> checkout ? buy(token, cancel) : CompletableFuture.completedFuture(null));
+                });
+    }
+
+    private CompletableFuture<Void> buy(String token, boolean cancel) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int lines = 1 + random.nextInt(3);
+        CompletableFuture<HttpResponse<String>> chain = CompletableFuture.completedFuture(null);
+        for (int i = 0; i < lines; i++) {
+            int productId = productIds.get(random.nextInt(productIds.size()));
+            int quantity = 1 + random.nextInt(2);
+            chain = chain.thenCompose(x -> call("POST /api/cart/add", post("/api/cart/add", token,
+                    "{\"productId\":" + productId + ",\"quantity\":" + quantity + "}"), body("GOOD")));
+        }
+        CompletableFuture<HttpResponse<String>> ordered = chain
+                .thenCompose(x -> call("GET /api/cart", get("/api/cart", token), ok()))
+                .thenCompose(x -> call("POST /api/orders/create", post("/api/orders/create", token,
+                        "{\"deliveryAddress\":\"г. Москва, ул. Нагрузочная, д. 1\"}"), body("GOOD")));
+        if (!cancel) {
+            return ordered.thenApply(x -> null);
+        }
+        return ordered
+                .thenCompose(x -> call("GET /api/orders/page", get("/api/orders/page?limit=1", token), ok()))
+                .thenCompose(r -> call("POST /api/orders/{id}/cancel",
+                        post("/api/orders/" + firstOrderId(r) + "/cancel", token, ""), body("GOOD")))
+                .thenApply(x -> null);
+    }
+
+    /**
+     * Отправить запрос и записать задержку под именем эндпоинта.
+     * Неуспешный ответ завершает цепочку посетителя с ошибкой.
+     */
+    private CompletableFuture<HttpResponse<String>> call(String endpoint, HttpRequest request,
+                                                         Predicate<HttpResponse<String>> success) {
+        EndpointStats endpointStats = stats.endpoint(endpoint);
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    endpointStats.histogram.record(System.nanoTime() - start);
+                    if (error != null || !success.test(response)) {
+                        endpointStats.errors.increment();
+                        throw new CompletionException(new IllegalStateException(endpoint + " failed: "
+                                + (error != null ? error : response.statusCode() + " " + response.body())));
+                    }
+                    return response;
+                });
+    }
+
+    private HttpRequest get(String path, String token) {
+        return request(path, token).GET().build();
+    }
+
+    private HttpRequest post(String path, String token, String json) {
+        return request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private static Predicate<HttpResponse<String>> ok() {
+        return response -> response.statusCode() == 200;
+    }
+
+    private static Predicate<HttpResponse<String>> body(String expected) {
+        return response -> response.statusCode() == 200 && expected.equals(response.body());
+    }
+
+    private static String sessionToken(HttpResponse<String> response) {
+        for (String cookie : response.headers().allValues("Set-Cookie")) {
+            if (cookie.startsWith("FILMBASE_SESSION=")) {
+                return cookie.substring("FILMBASE_SESSION=".length(), cookie.indexOf(';'));
+            }
+        }
+        throw new IllegalStateException("В ответе на вход нет cookie сессии");
+    }
+
+    private int firstOrderId(HttpResponse<String> response) {
+        try {
+            return mapper.readTree(response.body()).get("items").get(0).get("id").asInt();
+        } catch (Exception e) {
+            throw new IllegalStateException("Не удалось прочитать заказ: " + response.body(), e);
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    static class EndpointStats {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+    }
+
+    static class Stats {
+        final Map<String, EndpointStats> endpoints = new ConcurrentSkipListMap<>();
+        final LongAdder started = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+
+        EndpointStats endpoint(String name) {
+            return endpoints.computeIfAbsent(name, key -> new EndpointStats());
+        }
+    }
+
+    /**
+     * Итог замера: строка на эндпоинт с пропускной способностью и перцентилями
+     */
+    public static class Report {
+
+        public static final String CSV_HEADER =
+                "endpoint,requests,errors,throughput_rps,p50_ms,p90_ms,p99_ms,p999_ms,max_ms";
+
+        private final Stats stats;
+        private final double seconds;
+
+        Report(Stats stats, double seconds) {
+            this.stats = stats;
+            this.seconds = seconds;
+        }
+
+        public List<String> csvRows() {
+            List<String> rows = new ArrayList<>();
+            for (Map.Entry<String, EndpointStats> entry : stats.endpoints.entrySet()) {
+                LatencyHistogram histogram = entry.getValue().histogram;
+                rows.add(String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%.2f", entry.getKey(),
+                        histogram.count(), entry.getValue().errors.sum(), histogram.count() / seconds,
+                        histogram.percentileMillis(50), histogram.percentileMillis(90),
+                        histogram.percentileMillis(99), histogram.percentileMillis(99.9), histogram.maxMillis()));
+            }
+            return rows;
+        }
+
+        public String summary() {
+            return String.format(Locale.ROOT, "visitors: %d started, %d failed, %d skipped (in-flight limit) in %.1f s",
+                    stats.started.sum(), stats.failed.sum(), stats.skipped.sum(), seconds);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.filmbase.loadtest;
+
+import com.example.filmbase.FilmBaseApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Нагрузочный прогон без внешней инфраструктуры: поднимает StandInStack, запускает FilmBase
+ * с профилем loadtest на случайном порту и гоняет по нему ShopLoadGenerator.
+ * Результат - таблица по эндпоинтам в консоли и CSV.
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.filmbase.loadtest.ShopLoadRunner -Dload.rate=50 -Dload.seconds=60
+ * </pre>
+ *
+ * Параметры (-Dload.*): rate (посетителей в секунду), seconds, warmup-seconds, max-in-flight,
+ * checkout-ratio, cancel-ratio, products (товаров в базе сверх демонстрационных),
+ * profiles (дополнительные профили, например virtual), out (путь к CSV).
+ */
+public class ShopLoadRunner {
+
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            run(args);
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 1;
+        }
+        // Потоки HttpClient, брокера и Redis не должны держать JVM
+        System.exit(status);
+    }
+
+    private static void run(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("load.rate", "20"));
+        int seconds = Integer.parseInt(System.getProperty("load.seconds", "60"));
+        int warmupSeconds = Integer.parseInt(System.getProperty("load.warmup-seconds", "15"));
+        int maxInFlight = Integer.parseInt(System.getProperty("load.max-in-flight", "500"));
+        double checkoutRatio = Double.parseDouble(System.getProperty("load.checkout-ratio", "0.3"));
+        double cancelRatio = Double.parseDouble(System.getProperty("load.cancel-ratio", "0.2"));
+        int products = Integer.parseInt(System.getProperty("load.products", "2000"));
+        String profiles = System.getProperty("load.profiles", "");
+        Path out = Paths.get(System.getProperty("load.out", "target/benchmarks/load-test.csv"));
+
+        try (StandInStack stack = StandInStack.start(products)) {
+            SpringApplication application = new SpringApplication(FilmBaseApplication.class);
+            // Адреса сервисов стенда важнее application.properties
+            application.addInitializers(context -> {
+                context.getEnvironment().getPropertySources()
+                        .addFirst(new MapPropertySource("standInStack", stack.properties()));
+                ((GenericApplicationContext) context).registerBean(LettuceClientConfigurationBuilderCustomizer.class,
+                        StandInStack::redisClientCustomizer);
+            });
+            application.setAdditionalProfiles(("loadtest," + profiles).split(","));
+            try (ConfigurableApplicationContext context = application.run(args)) {
+                String port = context.getEnvironment().getProperty("local.server.port");
+                ShopLoadGenerator generator = new ShopLoadGenerator("http://localhost:" + port,
+                        rate, maxInFlight, checkoutRatio, cancelRatio);
+                ShopLoadGenerator.Report report = generator.run(warmupSeconds, seconds);
+                write(out, report);
+            }
+        }
+    }
+
+    private static void write(Path out, ShopLoadGenerator.Report report) throws Exception {
+        List<String> rows = report.csvRows();
+        System.out.println();
+        System.out.println(report.summary());
+        System.out.println(ShopLoadGenerator.Report.CSV_HEADER);
+        rows.forEach(System.out::println);
+
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(out))) {
+            writer.println(ShopLoadGenerator.Report.CSV_HEADER);
+            rows.forEach(writer::println);
+        }
+        System.out.println("Results written to " + out.toAbsolutePath());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.filmbase.loadtest;
+
+import com.example.filmbase.config.KafkaConfig;
+import com.github.fppt.jedismock.RedisServer;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Внешние сервисы FilmBase внутри процесса: Postgres (встроенные бинарники, схема и данные
+ * из sql/database.sql), брокер Kafka с ZooKeeper и совместимый с Redis сервер на Java.
+ * Все слушают случайные свободные порты, сеть и docker не нужны.
+ */
+public class StandInStack implements AutoCloseable {
+
+    private static final String SCHEMA = "sql/database.sql";
+
+    // Товары сверх демонстрационных из database.sql, с большим остатком, чтобы заказы не упирались в склад
+    private static final String SEED_PRODUCTS_SQL =
+            "INSERT INTO product (name, description, price, image_url, category_id, stock_quantity) " +
+            "SELECT 'Товар ' || g || ' ' || (ARRAY['фильм', 'книга', 'игра', 'альбом', 'набор'])[g % 5 + 1], " +
+            "'Описание товара ' || g || ': ' || (ARRAY['классика', 'новинка', 'коллекционное издание', " +
+            "'подарочный вариант', 'ремастер'])[g % 5 + 1], " +
+            "round((99 + random() * 9900)::numeric, 2), NULL, g % 5 + 1, 1000000 " +
+            "FROM generate_series(1, ?) g";
+
+    private final EmbeddedPostgres postgres;
+    private final EmbeddedKafkaBroker kafka;
+    private final RedisServer redis;
+
+    private StandInStack(EmbeddedPostgres postgres, EmbeddedKafkaBroker kafka, RedisServer redis) {
+        this.postgres = postgres;
+        this.kafka = kafka;
+        this.redis = redis;
+    }
+
+    /**
+     * Запустить все сервисы и заполнить базу
+     * @param products сколько товаров добавить к демонстрационным
+     */
+    public static StandInStack start(int products) throws IOException {
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+        EmbeddedKafkaBroker kafka = null;
+        RedisServer redis = null;
+        try {
+            seed(postgres.getPostgresDatabase(), products);
+
+            kafka = new EmbeddedKafkaBroker(1, false,
+                    KafkaConfig.ORDER_TOPIC, KafkaConfig.PRODUCT_TOPIC, KafkaConfig.USER_TOPIC, KafkaConfig.CART_TOPIC)
+                    .kafkaPorts(0);
+            kafka.afterPropertiesSet();
+
+            redis = RedisServer.newRedisServer(0, InetAddress.getLoopbackAddress()).start();
+            return new StandInStack(postgres, kafka, redis);
+        } catch (RuntimeException | IOException e) {
+            if (kafka != null) {
+                kafka.destroy();
+            }
+            postgres.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Сервер Redis стенда понимает только RESP2, а Lettuce по умолчанию начинает с RESP3 (HELLO)
+     */
+    public static LettuceClientConfigurationBuilderCustomizer redisClientCustomizer() {
+        return builder -> builder.clientOptions(ClientOptions.builder()
+                .protocolVersion(ProtocolVersion.RESP2)
+                .build());
+    }
+
+    /**
+     * Свойства Spring, которые направляют приложение на эти сервисы
+     */
+    public Map<String, Object> properties() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", postgres.getJdbcUrl("postgres", "postgres"));
+        properties.put("spring.datasource.username", "postgres");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.kafka.bootstrap-servers", kafka.getBrokersAsString());
+        properties.put("spring.redis.host", redis.getHost());
+        properties.put("spring.redis.port", redis.getBindPort());
+        return properties;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            redis.stop();
+        } finally {
+            try {
+                kafka.destroy();
+            } finally {
+                postgres.close();
+            }
+        }
+    }
+
+    private static void seed(DataSource dataSource, int products) throws IOException {
+        Path schema = findSchema();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new FileSystemResource(schema));
+        populator.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+        populator.execute(dataSource);
+        if (products > 0) {
+            new JdbcTemplate(dataSource).update(SEED_PRODUCTS_SQL, products);
+        }
+    }
+
+    /**
+     * sql/database.sql лежит в корне репозитория, рядом с каталогом FilmBase
+     */
+    private static Path findSchema() throws IOException {
+        Path dir = Paths.get("").toAbsolutePath();
+        while (dir != null) {
+            Path candidate = dir.resolve(SCHEMA);
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+            dir = dir.getParent();
+        }
+        throw new IOException("Не найден " + SCHEMA + " ни в текущем каталоге, ни выше");
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.filmbase.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сравнение пропускной способности и задержек при 100, 1000 и 10000 одновременных клиентах.
+ * Запускается против уже работающего приложения дважды - в обычном режиме и с профилем virtual -
+ * и дописывает строки с меткой режима в один CSV, чтобы результаты лежали рядом:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.filmbase.loadtest.ThreadModeBenchmark \
+ *     -Dbench.label=platform -Dbench.url=http://localhost:8080
+ * </pre>
+ *
+ * Клиенты работают по замкнутому циклу: следующий запрос уходит после ответа на предыдущий.
+ * Запросы отправляет асинхронный HttpClient на нескольких потоках, поэтому 10000 клиентов
+ * не требуют 10000 потоков в самом генераторе нагрузки.
+ *
+ * Параметры (-Dbench.*): url, paths (через запятую), clients (через запятую), seconds,
+ * warmup-seconds, label, out (путь к CSV).
+ */
+public class ThreadModeBenchmark {
+
+    private static final String HEADER = "label,clients,requests,errors,throughput_rps,p50_ms,p95_ms,p99_ms,max_ms";
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("bench.url", "http://localhost:8080");
+        String[] paths = System.getProperty("bench.paths", "/api/products,/api/categories").split(",");
+        String[] clientLevels = System.getProperty("bench.clients", "100,1000,10000").split(",");
+        int seconds = Integer.parseInt(System.getProperty("bench.seconds", "30"));
+        int warmupSeconds = Integer.parseInt(System.getProperty("bench.warmup-seconds", "5"));
+        String label = System.getProperty("bench.label", "platform");
+        Path out = Paths.get(System.getProperty("bench.out", "target/benchmarks/thread-mode.csv"));
+
+        ExecutorService httpExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(httpExecutor)
+                .build();
+        List<HttpRequest> requests = new ArrayList<>();
+        for (String path : paths) {
+            requests.add(HttpRequest.newBuilder(URI.create(url + path.trim()))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build());
+        }
+
+        try {
+            run(client, requests, Integer.parseInt(clientLevels[0].trim()), warmupSeconds);
+            List<String> rows = new ArrayList<>();
+            for (String level : clientLevels) {
+                int clients = Integer.parseInt(level.trim());
+                Result result = run(client, requests, clients, seconds);
+                String row = String.format(Locale.ROOT, "%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f", label, clients,
+                        result.histogram.count(), result.errors.sum(), result.histogram.count() / (double) seconds,
+                        result.histogram.percentileMillis(50), result.histogram.percentileMillis(95),
+                        result.histogram.percentileMillis(99), result.histogram.maxMillis());
+                System.out.println(row);
+                rows.add(row);
+            }
+            write(out, rows);
+        } finally {
+            httpExecutor.shutdownNow();
+        }
+    }
+
+    private static Result run(HttpClient client, List<HttpRequest> requests, int clients, int seconds)
+            throws InterruptedException {
+        Result result = new Result();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong sequence = new AtomicLong();
+        CountDownLatch finished = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            next(client, requests, sequence, deadline, result, finished);
+        }
+        finished.await();
+        return result;
+    }
+
+    private static void next(HttpClient client, List<HttpRequest> requests, AtomicLong sequence, long deadline,
+                             Result result, CountDownLatch finished) {
+        if (System.nanoTime() >= deadline) {
+            finished.countDown();
+            return;
+        }
+        HttpRequest request = requests.get((int) (sequence.getAndIncrement() % requests.size()));
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long end = System.nanoTime();
+            if (error != null || response.statusCode() >= 400) {
+                result.errors.increment();
+            } else if (end < deadline) {
+                result.histogram.record(end - start);
+            }
+            next(client, requests, sequence, deadline, result, finished);
+        });
+    }
+
+    private static void write(Path out, List<String> rows) throws IOException {
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        boolean exists = Files.exists(out);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(out,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (!exists) {
+                writer.println(HEADER);
+            }
+            rows.forEach(writer::println);
+        }
+    }
+
+    private static class Result {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.filmbase.repositories;
+
+import com.example.filmbase.entities.Category;
+import com.example.filmbase.entities.Order;
+import com.example.filmbase.entities.OrderItem;
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.entities.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+		"spring.datasource.url=jdbc:h2:mem:orders;MODE=PostgreSQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class OrderReadQueryCountTest {
+
+	private static final int LINES = 5;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private OrderItemRepository orderItemRepository;
+
+	private Statistics statistics;
+	private User user;
+	private int orderId;
+
+	@BeforeEach
+	void setUp() {
+		user = new User();
+		user.setLogin("buyer");
+		user.setPassword("secret");
+		user.setEmail("buyer@example.com");
+		entityManager.persist(user);
+
+		for (int o = 0; o < 3; o++) {
+			Order order = new Order();
+			order.setUser(user);
+			order.setDeliveryAddress("Москва");
+			entityManager.persist(order);
+			orderId = order.getId();
+
+			// Каждая позиция - свой товар в своей категории: худший случай для N+1
+			for (int i = 0; i < LINES; i++) {
+				Category category = new Category();
+				category.setName("Категория " + o + "-" + i);
+				entityManager.persist(category);
+
+				Product product = new Product();
+				product.setName("Товар " + o + "-" + i);
+				product.setPrice(100 + i);
+				product.setCategory(category);
+				entityManager.persist(product);
+
+				OrderItem item = new OrderItem();
+				item.setOrder(order);
+				item.setProduct(product);
+				item.setQuantity(i + 1);
+				item.setPrice(product.getPrice());
+				entityManager.persist(item);
+			}
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void orderItemsWithProductsInOneQuery() {
+		Order order = orderRepository.findById(orderId);
+		List<OrderItem> items = orderItemRepository.findAllByOrderWithProduct(order);
+
+		assertEquals(LINES, items.size());
+		for (OrderItem item : items) {
+			item.getProduct().getCategory().getName();
+		}
+		assertEquals(2, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void fullOrderInOneQuery() {
+		Order order = orderRepository.findFullById(orderId);
+
+		assertEquals(user.getId(), order.getUser().getId());
+		assertEquals(LINES, order.getOrderItems().size());
+		for (OrderItem item : order.getOrderItems()) {
+			item.getProduct().getCategory().getName();
+		}
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void ordersOfUserInOneQuery() {
+		User buyer = new User();
+		buyer.setId(user.getId());
+
+		List<Order> orders = orderRepository.findAllByUserOrderByOrderDateDesc(buyer);
+
+		assertEquals(3, orders.size());
+		for (Order order : orders) {
+			order.getUser().getLogin();
+		}
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.filmbase.search;
+
+import com.example.filmbase.entities.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InvertedIndexTest {
+
+	private InvertedIndex index;
+
+	private static Product product(int id, String name, String description) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName(name);
+		product.setDescription(description);
+		return product;
+	}
+
+	@BeforeEach
+	void setUp() {
+		index = new InvertedIndex();
+		index.replaceAll(Arrays.asList(
+				product(1, "Дюна", "Фильм о пустыне"),
+				product(2, "Пустыня", "Фильм о дюне"),
+				product(3, "Matrix", "Фантастический боевик"),
+				product(4, "Matrix Reloaded", "Продолжение фантастического боевика"),
+				product(5, "Mat", null),
+				product(6, "Война и мир", "Экранизация романа о войне 1812 года")));
+	}
+
+	@Test
+	void findsOtherWordFormsThroughStems() {
+		assertEquals(Arrays.asList(6), ids("войны", ScoringMode.BM25));
+		assertEquals(Arrays.asList(3, 4), ids("фантастические боевики", ScoringMode.BM25));
+		assertEquals(Collections.emptyList(), ids("комедия", ScoringMode.BM25));
+	}
+
+	@Test
+	void nameMatchOutranksDescriptionMatch() {
+		for (ScoringMode mode : ScoringMode.values()) {
+			assertEquals(Arrays.asList(1, 2), ids("дюна", mode), mode.name());
+			assertEquals(Arrays.asList(2, 1), ids("пустыня", mode), mode.name());
+		}
+		// Равные оценки - по возрастанию id, limit отсекает хвост
+		assertEquals(Arrays.asList(1, 2), ids("фильм", ScoringMode.BM25));
+		assertEquals(Arrays.asList(1), ids("фильм", ScoringMode.BM25, 1));
+	}
+
+	@Test
+	void expandsOnlyTheLastWordAsPrefixAndRanksExactMatchFirst() {
+		// mat - точное совпадение с Mat и продолжение matrix с пониженным весом
+		assertEquals(Arrays.asList(5, 3, 4), ids("mat", ScoringMode.BM25));
+		assertEquals(Arrays.asList(4, 3), ids("reloaded matr", ScoringMode.BM25));
+		assertEquals(Arrays.asList(4), ids("matr reloaded", ScoringMode.BM25));
+	}
+
+	@Test
+	void removedAndUpdatedProductsLeaveTheirOldTerms() {
+		index.remove(3);
+		assertEquals(Arrays.asList(4), ids("matrix", ScoringMode.BM25));
+		assertEquals(5, index.size());
+
+		index.put(product(4, "Matrix Revolutions", "Финал трилогии"));
+		assertEquals(Collections.emptyList(), ids("reloaded", ScoringMode.BM25));
+		assertEquals(Collections.emptyList(), ids("боевик", ScoringMode.BM25));
+		assertEquals(Arrays.asList(4), ids("revolutions", ScoringMode.BM25));
+		assertEquals(Arrays.asList(4), ids("трилогия", ScoringMode.BM25));
+		assertEquals(5, index.size());
+
+		// Удаление несуществующего товара ничего не меняет
+		index.remove(42);
+		assertEquals(5, index.size());
+	}
+
+	private List<Integer> ids(String query, ScoringMode mode) {
+		return ids(query, mode, 10);
+	}
+
+	private List<Integer> ids(String query, ScoringMode mode, int limit) {
+		List<Integer> ids = new ArrayList<>();
+		for (Product product : index.search(query, mode, limit)) {
+			ids.add(product.getId());
+		}
+		return ids;
+	}
+}
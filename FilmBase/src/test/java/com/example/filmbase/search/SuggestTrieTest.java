@@ -0,0 +1,70 @@
+package com.example.filmbase.search;
+
+import com.example.filmbase.dto.ProductSuggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SuggestTrieTest {
+
+	private final SuggestTrie trie = SuggestTrie.build(Arrays.asList(
+			new ProductSuggestion(1, "Star Wars", 50L),
+			new ProductSuggestion(2, "Star Trek", 80L),
+			new ProductSuggestion(3, "Stargate", 30L),
+			new ProductSuggestion(4, "Starship Troopers", 90L),
+			new ProductSuggestion(5, "Lone Star", 10L),
+			new ProductSuggestion(6, "Звёздные войны", 40L)), 3);
+
+	@Test
+	void innerNodesKeepTopKOfWholeSubtree() {
+		// Под "sta" пять товаров, в узле остаются три самых тяжелых
+		assertEquals(Arrays.asList(4, 2, 1), ids("sta", 10));
+		assertEquals(Arrays.asList(4, 2, 1), ids("star", 10));
+		assertEquals(Arrays.asList(4), ids("stars", 10));
+		assertEquals(Arrays.asList(3), ids("starg", 10));
+		assertEquals(Arrays.asList(4), ids("sta", 1));
+		assertEquals(Collections.emptyList(), ids("sta", 0));
+	}
+
+	@Test
+	void matchesStartOfAnyWord() {
+		assertEquals(Arrays.asList(4, 2), ids("tr", 10));
+		assertEquals(Arrays.asList(5), ids("lone s", 10));
+		assertEquals(Arrays.asList(1), ids("wa", 10));
+		// Середина слова не ищется
+		assertEquals(Collections.emptyList(), ids("ars", 10));
+		// Пробел в конце - слово введено целиком
+		assertEquals(Arrays.asList(2, 1), ids("star ", 10));
+	}
+
+	@Test
+	void normalizesCaseYoAndSeparators() {
+		assertEquals(Arrays.asList(6), ids("звезд", 10));
+		assertEquals(Arrays.asList(6), ids("ЗВЁЗДНЫЕ  в", 10));
+		assertEquals(Arrays.asList(2), ids("STAR-trek", 10));
+		assertEquals(Collections.emptyList(), ids("  ", 10));
+		assertEquals(Collections.emptyList(), ids(null, 10));
+	}
+
+	@Test
+	void equalWeightsAreOrderedByName() {
+		SuggestTrie sameWeight = SuggestTrie.build(Arrays.asList(
+				new ProductSuggestion(1, "Film B", 5L),
+				new ProductSuggestion(2, "Film A", 5L),
+				new ProductSuggestion(3, "Film C", 7L)), 10);
+
+		assertEquals(Arrays.asList(3, 2, 1), sameWeight.suggest("film", 10).stream()
+				.map(ProductSuggestion::getProductId).collect(Collectors.toList()));
+	}
+
+	private List<Integer> ids(String prefix, int limit) {
+		return trie.suggest(prefix, limit).stream()
+				.map(ProductSuggestion::getProductId)
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,36 @@
+package com.example.filmbase.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextAnalyzerTest {
+
+	@Test
+	void lowercasesReplacesYoAndSplitsOnSeparators() {
+		assertEquals(Arrays.asList("ежик", "в", "туман"), TextAnalyzer.analyze("Ёжик в тумане"));
+		assertEquals(Arrays.asList("matrix", "2", "reloaded"), TextAnalyzer.analyze("Matrix-2: Reloaded!"));
+		assertEquals(Collections.emptyList(), TextAnalyzer.analyze(null));
+		assertEquals(Collections.emptyList(), TextAnalyzer.analyze(" -- "));
+	}
+
+	@Test
+	void wordFormsShareOneStem() {
+		for (String form : Arrays.asList("фильм", "фильма", "фильмы", "фильме", "фильмов", "фильмами")) {
+			assertEquals("фильм", TextAnalyzer.stem(form), form);
+		}
+		// Отрезается самое длинное окончание
+		assertEquals("книг", TextAnalyzer.stem("книгами"));
+	}
+
+	@Test
+	void keepsShortStemsLatinAndNumbers() {
+		assertEquals("кот", TextAnalyzer.stem("коты"));
+		assertEquals("она", TextAnalyzer.stem("она"));
+		assertEquals("movies", TextAnalyzer.stem("movies"));
+		assertEquals("1812", TextAnalyzer.stem("1812"));
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.config.RedisConfig;
+import com.github.fppt.jedismock.RedisServer;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CartServiceTest {
+
+	private static final int USER = 3;
+	private static final int PRODUCT = 7;
+
+	private static RedisServer redis;
+	private static LettuceConnectionFactory connectionFactory;
+
+	private StringRedisTemplate strings;
+	private CartService cartService;
+
+	@BeforeAll
+	static void startRedis() throws IOException {
+		redis = RedisServer.newRedisServer(0, InetAddress.getLoopbackAddress()).start();
+		// Сервер jedis-mock понимает только RESP2
+		LettuceClientConfiguration clientConfiguration = LettuceClientConfiguration.builder()
+				.clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build())
+				.build();
+		connectionFactory = new LettuceConnectionFactory(
+				new RedisStandaloneConfiguration(redis.getHost(), redis.getBindPort()), clientConfiguration);
+		connectionFactory.afterPropertiesSet();
+	}
+
+	@AfterAll
+	static void stopRedis() throws IOException {
+		connectionFactory.destroy();
+		redis.stop();
+	}
+
+	@BeforeEach
+	void setUp() {
+		strings = new StringRedisTemplate(connectionFactory);
+		RedisService redisService = new RedisService();
+		ReflectionTestUtils.setField(redisService, "redisTemplate", new RedisConfig().redisTemplate(connectionFactory));
+		ReflectionTestUtils.setField(redisService, "stringRedisTemplate", strings);
+		ReflectionTestUtils.setField(redisService, "meterRegistry", new SimpleMeterRegistry());
+
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE cart_item (user_id INT, product_id INT, quantity INT)");
+		jdbcTemplate.update("INSERT INTO cart_item VALUES (?, ?, 2)", USER, PRODUCT);
+
+		cartService = new CartService(jdbcTemplate, new DataSourceTransactionManager(dataSource), 3600, 500);
+		ReflectionTestUtils.setField(cartService, "redisService", redisService);
+	}
+
+	@AfterEach
+	void flush() {
+		connectionFactory.getConnection().serverCommands().flushAll();
+	}
+
+	@Test
+	void addQuantityLoadsCartFromDatabaseFirst() {
+		assertEquals(5, cartService.addQuantity(USER, PRODUCT, 3));
+		assertEquals("5", strings.opsForHash().get(cartKey(), String.valueOf(PRODUCT)));
+		assertEquals(Boolean.TRUE, strings.opsForSet().isMember("cart:dirty", String.valueOf(USER)));
+	}
+
+	@Test
+	void addQuantityRemovesProductWhenItDropsToZero() {
+		assertEquals(0, cartService.addQuantity(USER, PRODUCT, -2));
+		assertNull(strings.opsForHash().get(cartKey(), String.valueOf(PRODUCT)));
+		assertEquals(0, cartService.getQuantity(USER, PRODUCT));
+	}
+
+	@Test
+	void concurrentAddsAreNotLost() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> adds = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				adds.add(executor.submit(() -> cartService.addQuantity(USER, PRODUCT, 1)));
+			}
+			for (Future<Integer> add : adds) {
+				add.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(42, cartService.getQuantity(USER, PRODUCT));
+	}
+
+	private static String cartKey() {
+		return "cart:" + USER;
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.cache.CatalogSnapshot;
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.repositories.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CatalogCacheTest {
+
+	private final ProductRepository productRepository = mock(ProductRepository.class);
+	private final Product product = new Product();
+
+	@Test
+	void expiredSnapshotWithSameContentIsReusedWithoutRecompressing() {
+		// Нулевое время жизни: каждый вызов сверяет каталог заново
+		CatalogCache catalogCache = catalogCache(0);
+
+		CatalogSnapshot first = catalogCache.getSnapshot();
+		CatalogSnapshot second = catalogCache.getSnapshot();
+		assertEquals(first.getVersion(), second.getVersion());
+		assertSame(first.getGzip(), second.getGzip());
+
+		catalogCache.invalidateLocal();
+		CatalogSnapshot afterEvent = catalogCache.getSnapshot();
+		assertEquals(first.getVersion(), afterEvent.getVersion());
+		assertSame(first.getGzip(), afterEvent.getGzip());
+
+		product.setStockQuantity(4);
+		CatalogSnapshot changed = catalogCache.getSnapshot();
+		assertEquals(first.getVersion() + 1, changed.getVersion());
+		assertNotEquals(first.getEtag(), changed.getEtag());
+	}
+
+	@Test
+	void freshSnapshotIsCheckedAgainOnlyAfterInvalidation() {
+		CatalogCache catalogCache = catalogCache(60);
+
+		CatalogSnapshot first = catalogCache.getSnapshot();
+		assertSame(first, catalogCache.getSnapshot());
+		verify(productRepository, times(1)).findAll();
+
+		product.setStockQuantity(4);
+		catalogCache.invalidateLocal();
+		CatalogSnapshot changed = catalogCache.getSnapshot();
+		assertEquals(first.getVersion() + 1, changed.getVersion());
+		assertSame(changed, catalogCache.getSnapshot());
+		verify(productRepository, times(2)).findAll();
+	}
+
+	private CatalogCache catalogCache(long ttlSeconds) {
+		product.setId(1);
+		product.setName("Film");
+		product.setStockQuantity(5);
+		when(productRepository.findAll()).thenAnswer(invocation -> new ArrayList<>(Arrays.asList(product)));
+
+		CatalogCache catalogCache = new CatalogCache(64, ttlSeconds, 300);
+		ReflectionTestUtils.setField(catalogCache, "redisService", mock(RedisService.class));
+		ReflectionTestUtils.setField(catalogCache, "productRepository", productRepository);
+		ReflectionTestUtils.setField(catalogCache, "objectMapper", new ObjectMapper());
+		return catalogCache;
+	}
+}
@@ -0,0 +1,145 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.entities.User;
+import com.example.filmbase.repositories.UserRepository;
+import com.example.filmbase.sql.SqlStats;
+import com.example.filmbase.sql.SqlStatsDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Оформление заказа на Postgres со схемой из sql/database.sql: число запросов
+ * (обращений к базе - пакет JDBC идет одним обращением) не зависит от размера корзины
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({CheckoutService.class, CartService.class, InventoryService.class, KafkaProducerService.class,
+		OutboxService.class, SqlStatsService.class, CheckoutQueryCountTest.Config.class})
+@TestPropertySource(properties = "spring.jpa.hibernate.ddl-auto=none")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CheckoutQueryCountTest {
+
+	private static final int PRODUCTS = 20;
+
+	@TestConfiguration
+	static class Config {
+
+		// Останавливается вместе с контекстом, после фоновых задач
+		@Bean(destroyMethod = "close")
+		EmbeddedPostgres embeddedPostgres() throws IOException {
+			return EmbeddedPostgres.builder().start();
+		}
+
+		@Bean
+		DataSource dataSource(EmbeddedPostgres postgres, SqlStatsService sqlStatsService) throws IOException {
+			DataSource dataSource = postgres.getPostgresDatabase();
+			// sql/database.sql лежит в корне репозитория, рядом с каталогом FilmBase
+			new JdbcTemplate(dataSource).execute(new String(
+					Files.readAllBytes(Paths.get("../sql/database.sql")), StandardCharsets.UTF_8));
+			return new SqlStatsDataSource(dataSource, sqlStatsService);
+		}
+	}
+
+	@MockBean
+	private RedisService redisService;
+
+	@MockBean
+	private FlashSaleService flashSaleService;
+
+	@MockBean
+	private KafkaTemplate<String, Object> kafkaTemplate;
+
+	@MockBean
+	private KafkaSendMetrics kafkaSendMetrics;
+
+	@Autowired
+	private CheckoutService checkoutService;
+
+	@Autowired
+	private SqlStatsService sqlStatsService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	// Корзина в Redis: id товара -> количество
+	private final Map<String, String> cart = new HashMap<>();
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		jdbcTemplate.execute("TRUNCATE outbox_event, order_item, orders, cart_item, product, category, \"user\" RESTART IDENTITY");
+		jdbcTemplate.update("INSERT INTO \"user\" (login, password, email) VALUES ('buyer', 'secret', 'buyer@example.com')");
+		jdbcTemplate.update("INSERT INTO category (name) VALUES ('Фильмы')");
+		for (int i = 1; i <= PRODUCTS; i++) {
+			jdbcTemplate.update("INSERT INTO product (name, price, category_id, stock_quantity) VALUES (?, ?, 1, 100)",
+					"Товар " + i, 100 + i);
+		}
+		user = userRepository.findByLogin("buyer");
+		when(redisService.hashEntries(anyString())).thenAnswer(invocation -> new HashMap<>(cart));
+	}
+
+	@Test
+	void checkoutStatementsDoNotGrowWithCart() {
+		// Первые два заказа заполняют пулы id последовательностей; дальше nextval - один на 50 id
+		checkout(1);
+		checkout(1);
+
+		SqlStats oneLine = checkout(1);
+		SqlStats twentyLines = checkout(PRODUCTS);
+
+		assertEquals(oneLine.getStatements(), twentyLines.getStatements());
+		assertEquals(1, oneLine.getMaxOpenConnections());
+		assertEquals(1, twentyLines.getMaxOpenConnections());
+		assertEquals(PRODUCTS + 3, jdbcTemplate.queryForObject("SELECT count(*) FROM order_item", Integer.class));
+		assertEquals(96, jdbcTemplate.queryForObject("SELECT stock_quantity FROM product WHERE id = 1", Integer.class));
+		assertEquals(99, jdbcTemplate.queryForObject(
+				"SELECT stock_quantity FROM product WHERE id = ?", Integer.class, PRODUCTS));
+		assertEquals(4, jdbcTemplate.queryForObject("SELECT count(*) FROM outbox_event", Integer.class));
+	}
+
+	private SqlStats checkout(int lines) {
+		cart.clear();
+		cart.put("_", "1");
+		for (int i = 1; i <= lines; i++) {
+			cart.put(String.valueOf(i), "1");
+		}
+		SqlStats stats = sqlStatsService.begin("checkout " + lines, 1);
+		try {
+			checkoutService.placeOrder(user, "Москва");
+		} finally {
+			sqlStatsService.end(stats, null);
+		}
+		return stats;
+	}
+}
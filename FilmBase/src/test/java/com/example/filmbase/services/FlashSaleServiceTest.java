@@ -0,0 +1,244 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.config.RedisConfig;
+import com.github.fppt.jedismock.RedisServer;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class FlashSaleServiceTest {
+
+	private static final int PRODUCT = 7;
+
+	private static RedisServer redis;
+	private static LettuceConnectionFactory connectionFactory;
+
+	private StringRedisTemplate strings;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+	private FlashSaleService flashSaleService;
+
+	@BeforeAll
+	static void startRedis() throws IOException {
+		redis = RedisServer.newRedisServer(0, InetAddress.getLoopbackAddress()).start();
+		// Сервер jedis-mock понимает только RESP2
+		LettuceClientConfiguration clientConfiguration = LettuceClientConfiguration.builder()
+				.clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build())
+				.build();
+		connectionFactory = new LettuceConnectionFactory(
+				new RedisStandaloneConfiguration(redis.getHost(), redis.getBindPort()), clientConfiguration);
+		connectionFactory.afterPropertiesSet();
+	}
+
+	@AfterAll
+	static void stopRedis() throws IOException {
+		connectionFactory.destroy();
+		redis.stop();
+	}
+
+	@BeforeEach
+	void setUp() {
+		strings = new StringRedisTemplate(connectionFactory);
+		RedisService redisService = new RedisService();
+		ReflectionTestUtils.setField(redisService, "redisTemplate", new RedisConfig().redisTemplate(connectionFactory));
+		ReflectionTestUtils.setField(redisService, "stringRedisTemplate", strings);
+		ReflectionTestUtils.setField(redisService, "meterRegistry", new SimpleMeterRegistry());
+
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		jdbcTemplate.execute("CREATE TABLE product (id INT PRIMARY KEY, stock_quantity INT NOT NULL)");
+		jdbcTemplate.update("INSERT INTO product VALUES (?, 10)", PRODUCT);
+
+		flashSaleService = new FlashSaleService();
+		ReflectionTestUtils.setField(flashSaleService, "redisService", redisService);
+		ReflectionTestUtils.setField(flashSaleService, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(flashSaleService, "catalogCache", mock(CatalogCache.class));
+		ReflectionTestUtils.setField(flashSaleService, "transactionManager", transactionTemplate.getTransactionManager());
+		ReflectionTestUtils.setField(flashSaleService, "enabled", true);
+		ReflectionTestUtils.setField(flashSaleService, "holdSeconds", 600L);
+	}
+
+	@AfterEach
+	void flush() {
+		connectionFactory.getConnection().serverCommands().flushAll();
+	}
+
+	@Test
+	void reserveReplacesHoldAndRefusesMoreThanStock() {
+		assertEquals(FlashSaleService.NOT_ACTIVE, flashSaleService.reserve(PRODUCT, 1, 2));
+
+		assertEquals(10, flashSaleService.start(PRODUCT, null));
+		assertEquals(0, dbStock());
+		assertEquals(7, flashSaleService.reserve(PRODUCT, 1, 3));
+		// Новый резерв заменяет прежний: докупается только разница
+		assertEquals(5, flashSaleService.reserve(PRODUCT, 1, 5));
+		assertEquals(FlashSaleService.INSUFFICIENT, flashSaleService.reserve(PRODUCT, 2, 6));
+		assertEquals(0, flashSaleService.reserve(PRODUCT, 2, 5));
+		assertEquals("5", strings.opsForHash().get(holdsKey(), "1"));
+
+		// Резерв 0 снимает его целиком
+		assertEquals(5, flashSaleService.reserve(PRODUCT, 1, 0));
+		assertNull(strings.opsForHash().get(holdsKey(), "1"));
+		assertNull(strings.opsForZSet().score(expiryKey(), "1"));
+	}
+
+	@Test
+	void commitTurnsHoldIntoSaleAndTopsUpFromStock() {
+		flashSaleService.start(PRODUCT, null);
+		flashSaleService.reserve(PRODUCT, 1, 2);
+
+		assertEquals(3, flashSaleService.commit(PRODUCT, 1, 3));
+		assertEquals("7", strings.opsForValue().get(stockKey()));
+		assertNull(strings.opsForHash().get(holdsKey(), "1"));
+		assertNull(strings.opsForZSet().score(expiryKey(), "1"));
+
+		assertEquals(FlashSaleService.INSUFFICIENT, flashSaleService.commit(PRODUCT, 2, 8));
+		assertEquals("7", strings.opsForValue().get(stockKey()));
+	}
+
+	@Test
+	void commitIsUndoneWhenTransactionRollsBack() {
+		flashSaleService.start(PRODUCT, null);
+
+		assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+			assertEquals(4, flashSaleService.commit(PRODUCT, 1, 4));
+			throw new IllegalStateException("order insert failed");
+		}));
+
+		assertEquals("10", strings.opsForValue().get(stockKey()));
+	}
+
+	@Test
+	void rolledBackCommitGoesToDatabaseWhenSaleStoppedMeanwhile() {
+		flashSaleService.start(PRODUCT, null);
+
+		assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+			assertEquals(4, flashSaleService.commit(PRODUCT, 1, 4));
+			flashSaleService.stop(PRODUCT);
+			throw new IllegalStateException("order insert failed");
+		}));
+
+		assertEquals(10, dbStock());
+	}
+
+	@Test
+	void undoCommitReturnsSaleToStock() {
+		flashSaleService.start(PRODUCT, null);
+		flashSaleService.commit(PRODUCT, 1, 4);
+
+		assertTrue(flashSaleService.returnToStock(PRODUCT, 4));
+		assertEquals("10", strings.opsForValue().get(stockKey()));
+
+		flashSaleService.stop(PRODUCT);
+		assertFalse(flashSaleService.returnToStock(PRODUCT, 4));
+		assertFalse(strings.hasKey(stockKey()));
+		assertEquals(10, dbStock());
+	}
+
+	@Test
+	void cancelledSaleReturnsToStockOnlyAfterCommit() {
+		flashSaleService.start(PRODUCT, null);
+		flashSaleService.commit(PRODUCT, 1, 4);
+
+		transactionTemplate.executeWithoutResult(status -> {
+			assertTrue(flashSaleService.returnToStockAfterCommit(PRODUCT, 4));
+			assertEquals("6", strings.opsForValue().get(stockKey()));
+		});
+		assertEquals("10", strings.opsForValue().get(stockKey()));
+
+		flashSaleService.commit(PRODUCT, 1, 4);
+		transactionTemplate.executeWithoutResult(status -> {
+			flashSaleService.returnToStockAfterCommit(PRODUCT, 4);
+			status.setRollbackOnly();
+		});
+		assertEquals("6", strings.opsForValue().get(stockKey()));
+	}
+
+	@Test
+	void cancelledSaleGoesToDatabaseWhenSaleStoppedBeforeCommit() {
+		flashSaleService.start(PRODUCT, null);
+		flashSaleService.commit(PRODUCT, 1, 4);
+
+		transactionTemplate.executeWithoutResult(status -> {
+			assertTrue(flashSaleService.returnToStockAfterCommit(PRODUCT, 4));
+			// Распродажа завершается, непроданный остаток возвращается на склад в базе
+			flashSaleService.stop(PRODUCT);
+			assertEquals(6, dbStock());
+		});
+
+		assertEquals(10, dbStock());
+		assertFalse(flashSaleService.returnToStockAfterCommit(PRODUCT, 4));
+	}
+
+	@Test
+	void startReservesAllotmentInDatabaseFirst() {
+		assertEquals(FlashSaleService.INSUFFICIENT, flashSaleService.start(PRODUCT, 11));
+		assertFalse(strings.hasKey(stockKey()));
+		assertEquals(10, dbStock());
+
+		assertEquals(4, flashSaleService.start(PRODUCT, 4));
+		assertEquals(6, dbStock());
+		assertEquals("4", strings.opsForValue().get(stockKey()));
+		// Повторный запуск не трогает склад
+		assertEquals(FlashSaleService.ALREADY_ACTIVE, flashSaleService.start(PRODUCT, 2));
+		assertEquals(6, dbStock());
+	}
+
+	@Test
+	void stopReturnsRemainderAndHoldsToDatabase() {
+		flashSaleService.start(PRODUCT, 4);
+		flashSaleService.commit(PRODUCT, 1, 2);
+		flashSaleService.reserve(PRODUCT, 2, 1);
+
+		flashSaleService.stop(PRODUCT);
+
+		// Продано 2 из квоты 4: склад 6 + непроданная единица + резерв
+		assertEquals(8, dbStock());
+		assertFalse(strings.hasKey(stockKey()));
+		assertFalse(strings.hasKey(holdsKey()));
+		assertFalse(strings.hasKey(expiryKey()));
+	}
+
+	private int dbStock() {
+		return jdbcTemplate.queryForObject("SELECT stock_quantity FROM product WHERE id = ?", Integer.class, PRODUCT);
+	}
+
+	private static String stockKey() {
+		return "flash:{" + PRODUCT + "}:stock";
+	}
+
+	private static String holdsKey() {
+		return "flash:{" + PRODUCT + "}:holds";
+	}
+
+	private static String expiryKey() {
+		return "flash:{" + PRODUCT + "}:expiry";
+	}
+}
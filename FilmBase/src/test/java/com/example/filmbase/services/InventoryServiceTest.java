@@ -0,0 +1,131 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.StockShortfall;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryServiceTest {
+
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+	private InventoryService inventoryService;
+
+	@BeforeEach
+	void setUp() {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		inventoryService = new InventoryService(jdbcTemplate);
+
+		jdbcTemplate.execute("CREATE TABLE product (id INT PRIMARY KEY, name VARCHAR(255), stock_quantity INT NOT NULL)");
+		jdbcTemplate.execute("CREATE TABLE order_item (id INT PRIMARY KEY, order_id INT, product_id INT, quantity INT)");
+		jdbcTemplate.update("INSERT INTO product VALUES (1, 'Hot', 100), (2, 'Cold', 1000), (3, 'Rare', 1)");
+	}
+
+	@Test
+	void reportsEveryShortLineAndRollsBackTheRest() {
+		Map<Integer, Integer> lines = new HashMap<>();
+		lines.put(1, 5);
+		lines.put(2, 2000);
+		lines.put(3, 2);
+
+		InsufficientStockException e = assertThrows(InsufficientStockException.class,
+				() -> transactionTemplate.executeWithoutResult(status -> inventoryService.decrement(lines)));
+
+		List<StockShortfall> shortfalls = e.getShortfalls();
+		assertEquals(2, shortfalls.size());
+		assertEquals(new StockShortfall(2, "Cold", 2000, 1000), shortfalls.get(0));
+		assertEquals(new StockShortfall(3, "Rare", 2, 1), shortfalls.get(1));
+		assertEquals(100, stock(1));
+	}
+
+	@Test
+	void restockReturnsAllLinesOfOrder() {
+		jdbcTemplate.update("INSERT INTO order_item VALUES (1, 7, 1, 3), (2, 7, 2, 4), (3, 8, 1, 50)");
+
+		int updated = inventoryService.restockOrder(7);
+
+		assertEquals(2, updated);
+		assertEquals(103, stock(1));
+		assertEquals(1004, stock(2));
+	}
+
+	@Test
+	void restockSkipsExcludedProducts() {
+		jdbcTemplate.update("INSERT INTO order_item VALUES (1, 7, 1, 3), (2, 7, 2, 4)");
+
+		int updated = inventoryService.restockOrder(7, Collections.singleton(1));
+
+		assertEquals(1, updated);
+		assertEquals(100, stock(1));
+		assertEquals(1004, stock(2));
+	}
+
+	@Test
+	void concurrentCheckoutsNeverOversell() throws Exception {
+		int threads = 16;
+		int attemptsPerThread = 50;
+		AtomicInteger hotSold = new AtomicInteger();
+		AtomicInteger coldSold = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(pool.submit(() -> {
+				start.await();
+				for (int i = 0; i < attemptsPerThread; i++) {
+					int cold = ThreadLocalRandom.current().nextInt(1, 4);
+					Map<Integer, Integer> lines = new HashMap<>();
+					lines.put(1, 1);
+					lines.put(2, cold);
+					try {
+						transactionTemplate.executeWithoutResult(status -> inventoryService.decrement(lines));
+						hotSold.incrementAndGet();
+						coldSold.addAndGet(cold);
+					} catch (InsufficientStockException e) {
+						// товар закончился - заказ целиком откатывается
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(60, TimeUnit.SECONDS);
+		}
+		pool.shutdown();
+
+		assertEquals(100, hotSold.get());
+		assertEquals(0, stock(1));
+		assertEquals(1000 - coldSold.get(), stock(2));
+		assertTrue(stock(2) >= 0);
+	}
+
+	private int stock(int productId) {
+		return jdbcTemplate.queryForObject("SELECT stock_quantity FROM product WHERE id = ?", Integer.class, productId);
+	}
+}
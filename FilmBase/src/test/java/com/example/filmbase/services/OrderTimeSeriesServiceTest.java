@@ -0,0 +1,59 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.analytics.OrderTimeline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderTimeSeriesServiceTest {
+
+	private final List<String> readKeys = new ArrayList<>();
+	private OrderTimeSeriesService orderTimeSeriesService;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		RedisService redisService = mock(RedisService.class);
+		when(redisService.rangeByScore(anyList(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+			readKeys.addAll(invocation.getArgument(0));
+			return new ArrayList<>();
+		});
+		orderTimeSeriesService = new OrderTimeSeriesService();
+		ReflectionTestUtils.setField(orderTimeSeriesService, "redisService", redisService);
+		ReflectionTestUtils.setField(orderTimeSeriesService, "retentionDays", 30);
+	}
+
+	@Test
+	void readsDaysOnlyUpToToday() {
+		LocalDate today = LocalDate.now();
+		orderTimeSeriesService.stats(today.minusDays(1).atStartOfDay(), LocalDateTime.of(9999, 12, 31, 0, 0));
+
+		assertEquals(Arrays.asList(OrderTimeline.timeKey(today.minusDays(1)), OrderTimeline.timeKey(today)), readKeys);
+	}
+
+	@Test
+	void readsNothingForFutureInterval() {
+		LocalDateTime tomorrow = LocalDate.now().plusDays(1).atStartOfDay();
+		assertEquals(0, orderTimeSeriesService.stats(tomorrow, tomorrow.plusDays(7)).getCreated());
+		assertEquals(0, readKeys.size());
+	}
+
+	@Test
+	void rejectsReversedInterval() {
+		LocalDateTime now = LocalDateTime.now();
+		assertThrows(IllegalArgumentException.class, () -> orderTimeSeriesService.stats(now, now.minusHours(1)));
+	}
+}
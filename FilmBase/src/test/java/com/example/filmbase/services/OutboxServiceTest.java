@@ -0,0 +1,140 @@
+package com.example.filmbase.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutboxServiceTest {
+
+	private static EmbeddedPostgres postgres;
+
+	private JdbcTemplate jdbcTemplate;
+	private OutboxService outboxService;
+
+	// Отправленные значения в порядке вызова send и значения, отправка которых не удается
+	private final List<String> sent = new ArrayList<>();
+	private final Set<String> failing = new HashSet<>();
+	private boolean sentInTransaction;
+
+	@BeforeAll
+	static void startPostgres() throws IOException {
+		postgres = EmbeddedPostgres.builder().start();
+	}
+
+	@AfterAll
+	static void stopPostgres() throws IOException {
+		postgres.close();
+	}
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		DataSource dataSource = postgres.getPostgresDatabase();
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("DROP TABLE IF EXISTS outbox_event");
+		jdbcTemplate.execute("CREATE TABLE outbox_event (id BIGSERIAL PRIMARY KEY, topic VARCHAR(255) NOT NULL, " +
+				"message_key VARCHAR(255), payload_type VARCHAR(255) NOT NULL, payload TEXT NOT NULL, " +
+				"created_at TIMESTAMP NOT NULL, published_at TIMESTAMP, claimed_until TIMESTAMP)");
+
+		KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+		when(kafkaTemplate.send(anyString(), any(), any())).thenAnswer(invocation -> {
+			String value = invocation.getArgument(2);
+			sent.add(value);
+			sentInTransaction |= TransactionSynchronizationManager.isActualTransactionActive();
+			SettableListenableFuture<SendResult<String, Object>> future = new SettableListenableFuture<>();
+			if (failing.contains(value)) {
+				future.setException(new IllegalStateException("broker unavailable"));
+			} else {
+				future.set(null);
+			}
+			return future;
+		});
+		KafkaSendMetrics kafkaSendMetrics = new KafkaSendMetrics();
+		ReflectionTestUtils.setField(kafkaSendMetrics, "meterRegistry", new SimpleMeterRegistry());
+
+		outboxService = new OutboxService(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+				500, 1000, 24, 60_000);
+		ReflectionTestUtils.setField(outboxService, "kafkaTemplate", kafkaTemplate);
+		ReflectionTestUtils.setField(outboxService, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(outboxService, "kafkaSendMetrics", kafkaSendMetrics);
+	}
+
+	@Test
+	void failedEventHoldsBackLaterEventsOfItsKey() {
+		outboxService.enqueue("orders", "1", "1:CREATED");
+		outboxService.enqueue("orders", "2", "2:CREATED");
+		outboxService.enqueue("orders", "1", "1:CANCELLED");
+		outboxService.enqueue("orders", "2", "2:CANCELLED");
+		outboxService.enqueue("users", null, "user");
+		failing.add("1:CREATED");
+
+		outboxService.relay();
+
+		assertEquals(Arrays.asList("user", "1:CREATED", "2:CREATED", "2:CANCELLED"), sent);
+		assertEquals(Arrays.asList("1:CREATED", "1:CANCELLED"), pending());
+		assertEquals(0, claimed());
+		assertFalse(sentInTransaction);
+
+		sent.clear();
+		failing.clear();
+		outboxService.relay();
+
+		assertEquals(Arrays.asList("1:CREATED", "1:CANCELLED"), sent);
+		assertEquals(0, pending().size());
+	}
+
+	@Test
+	void skipsKeyWhoseEarlierEventIsClaimedByAnotherPass() {
+		outboxService.enqueue("orders", "1", "1:CREATED");
+		outboxService.enqueue("orders", "2", "2:CREATED");
+		outboxService.enqueue("orders", "1", "1:CANCELLED");
+		jdbcTemplate.update("UPDATE outbox_event SET claimed_until = now() + interval '1 minute' WHERE payload = '\"1:CREATED\"'");
+
+		outboxService.relay();
+
+		assertEquals(Arrays.asList("2:CREATED"), sent);
+		assertEquals(Arrays.asList("1:CREATED", "1:CANCELLED"), pending());
+
+		// Аренда истекла - проход того экземпляра считается прерванным
+		jdbcTemplate.update("UPDATE outbox_event SET claimed_until = now() - interval '1 second' WHERE payload = '\"1:CREATED\"'");
+		sent.clear();
+		outboxService.relay();
+
+		assertEquals(Arrays.asList("1:CREATED", "1:CANCELLED"), sent);
+	}
+
+	private List<String> pending() {
+		return jdbcTemplate.queryForList(
+				"SELECT trim(both '\"' from payload) FROM outbox_event WHERE published_at IS NULL ORDER BY id", String.class);
+	}
+
+	private int claimed() {
+		return jdbcTemplate.queryForObject("SELECT count(*) FROM outbox_event WHERE claimed_until IS NOT NULL", Integer.class);
+	}
+}
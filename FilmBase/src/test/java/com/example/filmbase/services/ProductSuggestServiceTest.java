@@ -0,0 +1,83 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.ProductSuggestion;
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSuggestServiceTest {
+
+	private ProductRepository productRepository;
+	private ProductSuggestService productSuggestService;
+
+	@BeforeEach
+	void setUp() {
+		productRepository = mock(ProductRepository.class);
+		when(productRepository.findAll()).thenReturn(Arrays.asList(
+				product(1, "Star Wars", 50),
+				product(2, "Star Trek", 80),
+				product(3, "Stargate", 30)));
+
+		productSuggestService = new ProductSuggestService();
+		ReflectionTestUtils.setField(productSuggestService, "productRepository", productRepository);
+		ReflectionTestUtils.setField(productSuggestService, "topK", 2);
+	}
+
+	@Test
+	void emptyBeforeRebuild() {
+		assertEquals(Collections.emptyList(), productSuggestService.suggest("star", null));
+
+		productSuggestService.rebuild();
+
+		assertEquals(Arrays.asList(2, 1), ids("star", null));
+		assertEquals(Arrays.asList(2), ids("star", 1));
+		assertEquals(Collections.emptyList(), productSuggestService.suggest(null, null));
+	}
+
+	@Test
+	void updateReplacesAndRemovesProducts() {
+		productSuggestService.rebuild();
+
+		// Переименование: старое слово больше не находит товар, новое находит
+		productSuggestService.update(Arrays.asList(product(2, "Space Trek", 80)), Collections.emptyList());
+		assertEquals(Collections.emptyList(), ids("star t", null));
+		assertEquals(Arrays.asList(2), ids("tre", null));
+		assertEquals(Arrays.asList(1, 3), ids("star", null));
+		assertEquals(Arrays.asList(2), ids("spa", null));
+
+		// Новый вес меняет порядок, удаленный товар пропадает
+		productSuggestService.update(Arrays.asList(product(3, "Stargate", 90), product(4, "Starman", 60)),
+				Arrays.asList(1));
+		assertEquals(Arrays.asList(3, 4), ids("star", null));
+		assertEquals(Collections.emptyList(), ids("wars", null));
+
+		productSuggestService.remove(3);
+		productSuggestService.put(product(5, "Starlight", 70));
+		assertEquals(Arrays.asList(5, 4), ids("star", null));
+	}
+
+	private List<Integer> ids(String prefix, Integer limit) {
+		return productSuggestService.suggest(prefix, limit).stream()
+				.map(ProductSuggestion::getProductId)
+				.collect(Collectors.toList());
+	}
+
+	private static Product product(int id, String name, int stock) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName(name);
+		product.setStockQuantity(stock);
+		return product;
+	}
+}
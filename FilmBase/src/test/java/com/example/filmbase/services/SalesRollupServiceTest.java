@@ -0,0 +1,199 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.OrderEvent;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SalesRollupServiceTest {
+
+	private static EmbeddedPostgres postgres;
+
+	private final LocalDate today = LocalDate.now();
+
+	private JdbcTemplate jdbcTemplate;
+	private SalesRollupService salesRollupService;
+
+	@BeforeAll
+	static void startPostgres() throws IOException {
+		postgres = EmbeddedPostgres.builder().start();
+	}
+
+	@AfterAll
+	static void stopPostgres() throws IOException {
+		postgres.close();
+	}
+
+	@BeforeEach
+	void setUp() {
+		DataSource dataSource = postgres.getPostgresDatabase();
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("DROP TABLE IF EXISTS orders, order_item, product, category, sales_daily, " +
+				"sales_daily_category, sales_daily_product, sales_applied_event");
+		jdbcTemplate.execute("CREATE TABLE category (id INT PRIMARY KEY, name VARCHAR(255))");
+		jdbcTemplate.execute("CREATE TABLE product (id INT PRIMARY KEY, name VARCHAR(255), category_id INT)");
+		jdbcTemplate.execute("CREATE TABLE orders (id INT PRIMARY KEY, order_date TIMESTAMP NOT NULL, status VARCHAR(50) NOT NULL)");
+		jdbcTemplate.execute("CREATE TABLE order_item (id SERIAL PRIMARY KEY, order_id INT NOT NULL, product_id INT NOT NULL, " +
+				"quantity INT NOT NULL, price DECIMAL(10, 2) NOT NULL)");
+		jdbcTemplate.execute("CREATE TABLE sales_daily (day DATE PRIMARY KEY, revenue DECIMAL(14, 2) NOT NULL DEFAULT 0, " +
+				"units INT NOT NULL DEFAULT 0, orders INT NOT NULL DEFAULT 0)");
+		jdbcTemplate.execute("CREATE TABLE sales_daily_category (day DATE NOT NULL, category_id INT NOT NULL, " +
+				"revenue DECIMAL(14, 2) NOT NULL DEFAULT 0, units INT NOT NULL DEFAULT 0, orders INT NOT NULL DEFAULT 0, " +
+				"PRIMARY KEY (day, category_id))");
+		jdbcTemplate.execute("CREATE TABLE sales_daily_product (day DATE NOT NULL, product_id INT NOT NULL, " +
+				"category_id INT NOT NULL, revenue DECIMAL(14, 2) NOT NULL DEFAULT 0, units INT NOT NULL DEFAULT 0, " +
+				"orders INT NOT NULL DEFAULT 0, PRIMARY KEY (day, product_id))");
+		jdbcTemplate.execute("CREATE TABLE sales_applied_event (order_id INT NOT NULL, event_type VARCHAR(20) NOT NULL, " +
+				"PRIMARY KEY (order_id, event_type))");
+		jdbcTemplate.update("INSERT INTO category VALUES (1, 'Drama')");
+		jdbcTemplate.update("INSERT INTO product VALUES (1, 'Film', 1), (2, 'Series', NULL)");
+
+		// Окно пересборки - 3 дня, куски по 2 дня, отметки отмен живут 10 дней
+		salesRollupService = new SalesRollupService(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+				3, 2, 10, 100);
+	}
+
+	@Test
+	void createdThenCancelledNetsToZero() {
+		order(1, today, 1, 2, "10.00");
+		order(2, today, 2, 1, "5.00");
+
+		salesRollupService.apply(Arrays.asList(event(1, "CREATED"), event(2, "CREATED")));
+		assertEquals(Arrays.asList(today + " 25.00 3 2"), daily());
+
+		cancel(1);
+		salesRollupService.apply(Arrays.asList(event(1, "CANCELLED")));
+		assertEquals(Arrays.asList(today + " 5.00 1 1"), daily());
+		assertEquals(Arrays.asList(today + " 0 5.00 1 1", today + " 1 0.00 0 0"), byCategory());
+
+		// Создание и отмена в одной пачке
+		order(3, today, 1, 1, "10.00");
+		cancel(3);
+		salesRollupService.apply(Arrays.asList(event(3, "CREATED"), event(3, "CANCELLED")));
+		assertEquals(Arrays.asList(today + " 5.00 1 1"), daily());
+	}
+
+	@Test
+	void redeliveredEventsAreSkipped() {
+		order(1, today, 1, 2, "10.00");
+
+		salesRollupService.apply(Arrays.asList(event(1, "CREATED"), event(1, "CREATED")));
+		salesRollupService.apply(Arrays.asList(event(1, "CREATED")));
+		assertEquals(Arrays.asList(today + " 20.00 2 1"), daily());
+
+		cancel(1);
+		salesRollupService.apply(Arrays.asList(event(1, "CANCELLED")));
+		salesRollupService.apply(Arrays.asList(event(1, "CANCELLED"), event(1, "CREATED")));
+		assertEquals(Arrays.asList(today + " 0.00 0 0"), daily());
+	}
+
+	@Test
+	void rebuildMatchesIncrementalResult() {
+		LocalDate first = today.minusDays(2);
+		order(1, first, 1, 1, "10.00");
+		order(2, first, 1, 3, "10.00");
+		order(3, first.plusDays(1), 2, 2, "7.50");
+		order(4, first.plusDays(1), 1, 1, "10.00");
+		order(5, today, 2, 4, "7.50");
+		salesRollupService.apply(Arrays.asList(event(1, "CREATED"), event(2, "CREATED"), event(3, "CREATED"),
+				event(4, "CREATED"), event(5, "CREATED")));
+		cancel(2);
+		cancel(4);
+		salesRollupService.apply(Arrays.asList(event(2, "CANCELLED"), event(4, "CANCELLED")));
+
+		List<String> daily = nonZero("sales_daily", "day, revenue, units, orders");
+		List<String> byProduct = nonZero("sales_daily_product", "day, product_id, category_id, revenue, units, orders");
+
+		// Три дня кусками по два - две транзакции
+		salesRollupService.rebuild(first, today);
+
+		assertEquals(daily, nonZero("sales_daily", "day, revenue, units, orders"));
+		assertEquals(byProduct, nonZero("sales_daily_product", "day, product_id, category_id, revenue, units, orders"));
+
+		// Повторная доставка после пересборки ничего не меняет
+		salesRollupService.apply(Arrays.asList(event(3, "CREATED"), event(4, "CANCELLED")));
+		assertEquals(daily, nonZero("sales_daily", "day, revenue, units, orders"));
+	}
+
+	@Test
+	void rebuildJobPrunesMarkersOutsideItsWindow() {
+		LocalDate old = today.minusDays(5);
+		order(1, old, 1, 1, "10.00");
+		order(2, old, 1, 2, "10.00");
+		order(3, today, 1, 1, "10.00");
+		order(4, today.minusDays(20), 1, 1, "10.00");
+		cancel(1);
+		// Старые дни уже посчитаны прошлыми пересборками
+		salesRollupService.rebuild(old, today);
+
+		salesRollupService.rebuildRecent();
+
+		// Отметки CREATED старых заказов удалены, отмены и заказы из окна остаются
+		assertEquals(Arrays.asList("1 CANCELLED", "3 CREATED"), markers());
+
+		// Повторное создание старого заказа пропускается, поздняя отмена вычитается один раз
+		salesRollupService.apply(Arrays.asList(event(2, "CREATED"), event(1, "CANCELLED")));
+		assertEquals(Arrays.asList(old + " 20.00 2 1", today + " 10.00 1 1"), daily());
+		cancel(2);
+		salesRollupService.apply(Arrays.asList(event(2, "CANCELLED")));
+		salesRollupService.apply(Arrays.asList(event(2, "CANCELLED")));
+		assertEquals(Arrays.asList(old + " 0.00 0 0", today + " 10.00 1 1"), daily());
+
+		// Заказы старше срока хранения отметок не учитываются
+		salesRollupService.apply(Arrays.asList(event(4, "CREATED"), event(4, "CANCELLED")));
+		assertEquals(Arrays.asList(old + " 0.00 0 0", today + " 10.00 1 1"), daily());
+	}
+
+	private void order(int id, LocalDate day, int productId, int quantity, String price) {
+		jdbcTemplate.update("INSERT INTO orders VALUES (?, ?, ?)", id,
+				Timestamp.valueOf(day.atTime(12, 0)), CheckoutService.STATUS_PROCESSING);
+		jdbcTemplate.update("INSERT INTO order_item (order_id, product_id, quantity, price) VALUES (?, ?, ?, ?)",
+				id, productId, quantity, new BigDecimal(price));
+	}
+
+	private void cancel(int id) {
+		jdbcTemplate.update("UPDATE orders SET status = ? WHERE id = ?", CheckoutService.STATUS_CANCELLED, id);
+	}
+
+	private static OrderEvent event(int orderId, String type) {
+		OrderEvent event = new OrderEvent();
+		event.setOrderId(orderId);
+		event.setEventType(type);
+		return event;
+	}
+
+	private List<String> daily() {
+		return jdbcTemplate.queryForList(
+				"SELECT day || ' ' || revenue || ' ' || units || ' ' || orders FROM sales_daily ORDER BY day", String.class);
+	}
+
+	private List<String> byCategory() {
+		return jdbcTemplate.queryForList("SELECT day || ' ' || category_id || ' ' || revenue || ' ' || units || ' ' || orders " +
+				"FROM sales_daily_category ORDER BY day, category_id", String.class);
+	}
+
+	// Инкрементальный путь оставляет нулевые строки после отмен, пересборка их не создает
+	private List<String> nonZero(String table, String columns) {
+		return jdbcTemplate.queryForList("SELECT concat_ws(' ', " + columns + ") FROM " + table +
+				" WHERE units <> 0 OR orders <> 0 OR revenue <> 0 ORDER BY 1", String.class);
+	}
+
+	private List<String> markers() {
+		return jdbcTemplate.queryForList(
+				"SELECT order_id || ' ' || event_type FROM sales_applied_event ORDER BY order_id, event_type", String.class);
+	}
+}
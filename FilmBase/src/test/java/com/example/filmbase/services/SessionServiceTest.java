@@ -0,0 +1,53 @@
+package com.example.filmbase.services;
+
+import com.example.filmbase.dto.SessionUser;
+import com.example.filmbase.entities.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class SessionServiceTest {
+
+	private static final String SECRET = "test-session-secret-0123456789abcdef";
+
+	@Test
+	void refusesMissingOrShortSecret() {
+		assertThrows(IllegalStateException.class, () -> new SessionService("", 1800, 100, 5));
+		assertThrows(IllegalStateException.class, () -> new SessionService("change-me", 1800, 100, 5));
+	}
+
+	@Test
+	void acceptsOnlyTokensSignedWithOwnSecret() {
+		RedisService redisService = mock(RedisService.class);
+		SessionService sessionService = new SessionService(SECRET, 1800, 100, 5);
+		ReflectionTestUtils.setField(sessionService, "redisService", redisService);
+		User user = new User();
+		user.setId(7);
+		user.setLogin("user");
+
+		String token = sessionService.startSession(user, new MockHttpServletResponse());
+		verify(redisService).set(anyString(), any(SessionUser.class), anyLong());
+		assertEquals(7, sessionService.resolveUser(request(token)).getId());
+
+		SessionService otherSecret = new SessionService(SECRET + "-other", 1800, 100, 5);
+		ReflectionTestUtils.setField(otherSecret, "redisService", redisService);
+		assertNull(otherSecret.resolveUser(request(token)));
+	}
+
+	private static MockHttpServletRequest request(String token) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		return request;
+	}
+}
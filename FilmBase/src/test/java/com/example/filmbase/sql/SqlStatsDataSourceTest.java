@@ -0,0 +1,92 @@
+package com.example.filmbase.sql;
+
+import com.example.filmbase.dto.SqlShapeStats;
+import com.example.filmbase.services.SqlStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SqlStatsDataSourceTest {
+
+	private SqlStatsService stats;
+	private SqlStatsDataSource dataSource;
+
+	@BeforeEach
+	void setUp() {
+		stats = new SqlStatsService();
+		ReflectionTestUtils.setField(stats, "enabled", true);
+		ReflectionTestUtils.setField(stats, "statementBudget", 20);
+		ReflectionTestUtils.setField(stats, "repeatThreshold", 10);
+		ReflectionTestUtils.setField(stats, "maxShapes", 1000);
+		ReflectionTestUtils.setField(stats, "defaultLimit", 20);
+		dataSource = new SqlStatsDataSource(
+				new DriverManagerDataSource("jdbc:h2:mem:sqlstats;DB_CLOSE_DELAY=-1", "sa", ""), stats);
+	}
+
+	@Test
+	void shapeDropsLiteralsAndFoldsLists() {
+		assertEquals("select p.id from product p where p.id in (?) and p.name = ? and p.price > ?",
+				SqlShape.of("select p.id from product p\n  where p.id in (1, 2,3) and p.name = 'it''s' and p.price > 10.5"));
+		assertEquals("insert into t (a, b) values (?)", SqlShape.of("insert into t (a,b) values (1,'x'), (2,'y')"));
+		assertEquals("select * from order_item2 where id = $1", SqlShape.of("select * from order_item2 where id = $1"));
+	}
+
+	@Test
+	void countsStatementsRowsAndShapesOfUnit() throws Exception {
+		SqlStats unit = stats.begin("GET /api/cart", 1);
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute("create table item (id int primary key, name varchar(20))");
+			statement.executeUpdate("insert into item values (1, 'a'), (2, 'b'), (3, 'c')");
+			for (int id = 1; id <= 3; id++) {
+				try (PreparedStatement select = connection.prepareStatement("select name from item where id = ?")) {
+					select.setInt(1, id);
+					try (ResultSet rows = select.executeQuery()) {
+						while (rows.next()) {
+							rows.getString(1);
+						}
+					}
+				}
+			}
+			statement.execute("drop table item");
+		}
+		stats.end(unit, null);
+
+		assertEquals(6, unit.getStatements());
+		assertEquals(6, unit.getRows()); // 3 вставлено + 3 прочитано
+		assertEquals("select name from item where id = ?", unit.getMostRepeatedShape());
+		assertEquals(3, unit.executionsOf("select name from item where id = ?"));
+		assertEquals(1, unit.getMaxOpenConnections());
+		assertNull(stats.current());
+
+		List<SqlShapeStats> top = stats.top(SqlStatsService.SORT_COUNT, 1);
+		assertEquals(1, top.size());
+		assertEquals("select name from item where id = ?", top.get(0).getShape());
+		assertEquals(3L, top.get(0).getExecutions());
+		assertEquals(3L, top.get(0).getRows());
+	}
+
+	@Test
+	void tracksConnectionsHeldAtOnce() throws Exception {
+		SqlStats unit = stats.begin("POST /api/cart/add", 1);
+		try (Connection first = dataSource.getConnection()) {
+			try (Connection second = dataSource.getConnection()) {
+				assertEquals(2, unit.getMaxOpenConnections());
+			}
+		}
+		try (Connection third = dataSource.getConnection()) {
+			assertEquals(2, unit.getMaxOpenConnections());
+		}
+		stats.end(unit, null);
+	}
+}
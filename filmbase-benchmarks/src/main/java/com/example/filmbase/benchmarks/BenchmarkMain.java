@@ -0,0 +1,44 @@
+package com.example.filmbase.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Запуск бенчмарков: java -jar target/benchmarks.jar [параметры JMH].
+ * Если формат и файл результатов не заданы (-rf, -rff), результаты пишутся
+ * в JSON в target/jmh-result.json - этот файл сравнивается между релизами.
+ */
+public class BenchmarkMain {
+
+    private static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        Runner listing = new Runner(options);
+        if (options.shouldList()) {
+            listing.list();
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (!options.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        String result = options.getResult().hasValue() ? options.getResult().get() : DEFAULT_RESULT;
+        File parent = new File(result).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        builder.result(result);
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.filmbase.benchmarks;
+
+import com.example.filmbase.entities.CartItem;
+import com.example.filmbase.services.CheckoutService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сумма заказа по корзине при оформлении (CheckoutService.placeOrder)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CartTotalBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int items;
+
+    private List<CartItem> cart;
+
+    @Setup
+    public void setUp() {
+        cart = Fixtures.cart(items);
+    }
+
+    @Benchmark
+    public double totalAmount() {
+        return CheckoutService.totalAmount(cart);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.filmbase.benchmarks;
+
+import com.example.filmbase.config.RedisConfig;
+import com.example.filmbase.entities.Product;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализатор значений Redis (RedisConfig) на списке товаров - ключ products:all
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogSerializationBenchmark {
+
+    @Param({"100", "1000"})
+    private int products;
+
+    private GenericJackson2JsonRedisSerializer serializer;
+    private List<Product> catalog;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        serializer = RedisConfig.valueSerializer();
+        catalog = Fixtures.products(products);
+        encoded = serializer.serialize(catalog);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(catalog);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(encoded);
+    }
+}
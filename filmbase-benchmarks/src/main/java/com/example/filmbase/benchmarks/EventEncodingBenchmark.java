@@ -0,0 +1,96 @@
+package com.example.filmbase.benchmarks;
+
+import com.example.filmbase.codec.BinaryEventDeserializer;
+import com.example.filmbase.codec.BinaryEventSerializer;
+import com.example.filmbase.dto.CartEvent;
+import com.example.filmbase.dto.OrderEvent;
+import com.example.filmbase.dto.ProductEvent;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодирование событий Kafka теми же сериализаторами, что у продюсера и потребителя:
+ * JSON (Jackson, с заголовками типа) и двоичный формат EventCodec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventEncodingBenchmark {
+
+    private static final String JSON_TOPIC = "events-json";
+    private static final String BINARY_TOPIC = "events-binary";
+
+    @Param({"order", "cart", "product"})
+    private String event;
+
+    private BinaryEventSerializer serializer;
+    private BinaryEventDeserializer deserializer;
+    private Object value;
+    private RecordHeaders jsonHeaders;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> producerConfig = new HashMap<>();
+        producerConfig.put(BinaryEventSerializer.BINARY_TOPICS_CONFIG, BINARY_TOPIC);
+        serializer = new BinaryEventSerializer();
+        serializer.configure(producerConfig, false);
+
+        Map<String, Object> consumerConfig = new HashMap<>();
+        consumerConfig.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+        deserializer = new BinaryEventDeserializer();
+        deserializer.configure(consumerConfig, false);
+
+        value = sample(event);
+        jsonHeaders = new RecordHeaders();
+        json = serializer.serialize(JSON_TOPIC, jsonHeaders, value);
+        binary = serializer.serialize(BINARY_TOPIC, new RecordHeaders(), value);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return serializer.serialize(JSON_TOPIC, new RecordHeaders(), value);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return serializer.serialize(BINARY_TOPIC, new RecordHeaders(), value);
+    }
+
+    @Benchmark
+    public Object decodeJson() {
+        return deserializer.deserialize(JSON_TOPIC, jsonHeaders, json);
+    }
+
+    @Benchmark
+    public Object decodeBinary() {
+        return deserializer.deserialize(BINARY_TOPIC, new RecordHeaders(), binary);
+    }
+
+    private static Object sample(String event) {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 3, 15, 12, 30, 45);
+        switch (event) {
+            case "order":
+                return new OrderEvent("CREATED", 104233, 5120, "ivan.petrov", 4599.9, "В обработке",
+                        "г. Москва, ул. Тверская, д. 7, кв. 12", timestamp);
+            case "cart":
+                return new CartEvent("ADDED", 5120, "ivan.petrov", 877, "Сталкер (ремастер, blu-ray)", 2,
+                        1299.0, timestamp);
+            case "product":
+                return new ProductEvent("UPDATED", 877, "Сталкер (ремастер, blu-ray)", 1299.0, 3, "Классика",
+                        41, timestamp);
+            default:
+                throw new IllegalArgumentException("Неизвестное событие: " + event);
+        }
+    }
+}
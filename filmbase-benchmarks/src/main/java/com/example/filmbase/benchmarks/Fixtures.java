@@ -0,0 +1,75 @@
+package com.example.filmbase.benchmarks;
+
+import com.example.filmbase.entities.CartItem;
+import com.example.filmbase.entities.Category;
+import com.example.filmbase.entities.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Синтетические данные для бенчмарков: каталог, похожий на настоящий,
+ * и корзины. Генератор детерминирован, чтобы прогоны были сравнимы.
+ */
+final class Fixtures {
+
+    static final String[] WORDS = {
+            "фильм", "сериал", "коллекция", "издание", "режиссер", "драма", "комедия", "триллер",
+            "фантастика", "документальный", "классика", "ремастер", "blu-ray", "dvd", "4k", "box",
+            "приключения", "детектив", "мелодрама", "анимация", "мюзикл", "вестерн", "нуар", "ужасы",
+            "space", "odyssey", "matrix", "godfather", "casablanca", "vertigo", "alien", "stalker",
+            "солярис", "зеркало", "андрей", "рублев", "иваново", "детство", "брат", "сибирский",
+            "цирюльник", "москва", "слезам", "верит", "ирония", "судьбы", "кавказская", "пленница"
+    };
+
+    private static final int CATEGORY_COUNT = 12;
+
+    private Fixtures() {
+    }
+
+    static List<Product> products(int count) {
+        Random random = new Random(42);
+        List<Category> categories = new ArrayList<>(CATEGORY_COUNT);
+        for (int i = 1; i <= CATEGORY_COUNT; i++) {
+            categories.add(new Category(i, "Категория " + i, null));
+        }
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Product product = new Product();
+            product.setId(i);
+            product.setName(words(random, 2 + random.nextInt(3)) + " " + i);
+            product.setDescription(words(random, 20 + random.nextInt(40)));
+            product.setPrice(Math.round((99 + random.nextDouble() * 4900) * 100) / 100.0);
+            product.setImageUrl("/images/products/" + i + ".jpg");
+            product.setStockQuantity(random.nextInt(500));
+            product.setCategory(categories.get(random.nextInt(CATEGORY_COUNT)));
+            products.add(product);
+        }
+        return products;
+    }
+
+    static List<CartItem> cart(int size) {
+        List<Product> products = products(size);
+        Random random = new Random(7);
+        List<CartItem> items = new ArrayList<>(size);
+        for (Product product : products) {
+            CartItem item = new CartItem();
+            item.setProduct(product);
+            item.setQuantity(1 + random.nextInt(5));
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.filmbase.benchmarks;
+
+import com.example.filmbase.entities.Product;
+import com.example.filmbase.search.InvertedIndex;
+import com.example.filmbase.search.ScoringMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск товаров по инвертированному индексу, как в /api/products/search
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductSearchBenchmark {
+
+    private static final int LIMIT = 20;
+
+    @Param({"1000", "10000"})
+    private int products;
+
+    @Param({"солярис ремастер", "драма классика", "фант"})
+    private String query;
+
+    @Param({"BM25", "TFIDF"})
+    private ScoringMode mode;
+
+    private InvertedIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new InvertedIndex();
+        index.replaceAll(Fixtures.products(products));
+    }
+
+    @Benchmark
+    public List<Product> search() {
+        return index.search(query, mode, LIMIT);
+    }
+}
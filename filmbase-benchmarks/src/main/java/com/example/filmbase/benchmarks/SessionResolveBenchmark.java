@@ -0,0 +1,89 @@
+package com.example.filmbase.benchmarks;
+
+import com.example.filmbase.dto.SessionUser;
+import com.example.filmbase.entities.User;
+import com.example.filmbase.services.RedisService;
+import com.example.filmbase.services.SessionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение пользователя по токену сессии: проверка подписи и ближний кэш
+ * (путь каждого авторизованного запроса), а также отказ по поддельному токену
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SessionResolveBenchmark {
+
+    private SessionService sessionService;
+    private HttpServletRequest validRequest;
+    private HttpServletRequest forgedRequest;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        sessionService = new SessionService("benchmark-session-secret-0123456789abcdef", 1800, 10000, 5);
+        Field redisService = SessionService.class.getDeclaredField("redisService");
+        redisService.setAccessible(true);
+        redisService.set(sessionService, new InMemoryRedisService());
+        User user = new User();
+        user.setId(5120);
+        user.setLogin("benchmark");
+        String token = sessionService.startSession(user, stub(HttpServletResponse.class, null));
+
+        validRequest = stub(HttpServletRequest.class, "Bearer " + token);
+        forgedRequest = stub(HttpServletRequest.class,
+                "Bearer " + token.substring(0, token.indexOf('.') + 1) + "forged-signature");
+    }
+
+    @Benchmark
+    public SessionUser resolveValid() {
+        return sessionService.resolveUser(validRequest);
+    }
+
+    @Benchmark
+    public SessionUser resolveForged() {
+        return sessionService.resolveUser(forgedRequest);
+    }
+
+    /**
+     * Заглушка запроса или ответа: отдает только заголовок Authorization,
+     * остальные вызовы (cookie, запись заголовков ответа) ничего не делают
+     */
+    private static <T> T stub(Class<T> type, String authorization) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> "getHeader".equals(method.getName())
+                        && HttpHeaders.AUTHORIZATION.equalsIgnoreCase((String) args[0]) ? authorization : null));
+    }
+
+    /**
+     * Redis в памяти: сессия после startSession берется из ближнего кэша,
+     * сюда обращения идут только при его промахе
+     */
+    private static class InMemoryRedisService extends RedisService {
+
+        private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+        @Override
+        public void set(String key, Object value, long timeout) {
+            values.put(key, value);
+        }
+
+        @Override
+        public Object get(String key) {
+            return values.get(key);
+        }
+    }
+}
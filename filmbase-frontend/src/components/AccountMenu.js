@@ -27,7 +27,7 @@ const AccountMenu = () => {
 
   const checkUser = async () => {
     try {
-      const response = await fetch('http://localhost:8080/api/current-user');
+      const response = await fetch('http://localhost:8080/api/current-user', { credentials: 'include' });
       const role = await response.text();
       setUserRole(role);
     } catch (error) {
@@ -37,7 +37,7 @@ const AccountMenu = () => {
 
   const fetchCartCount = async () => {
     try {
-      const response = await fetch('http://localhost:8080/api/cart');
+      const response = await fetch('http://localhost:8080/api/cart', { credentials: 'include' });
       if (response.ok) {
         const data = await response.json();
         const count = data.reduce((sum, item) => sum + item.quantity, 0);
@@ -65,7 +65,7 @@ const AccountMenu = () => {
   };
 
   const handleLogout = async () => {
-    await fetch('http://localhost:8080/api/logout');
+    await fetch('http://localhost:8080/api/logout', { credentials: 'include' });
     setUserRole('NULL');
     setCartCount(0);
     navigate('/');
@@ -29,7 +29,7 @@ const AccountSettings = () => {
 
   const fetchUserData = async () => {
     try {
-      const response = await fetch('http://localhost:8080/api/account');
+      const response = await fetch('http://localhost:8080/api/account', { credentials: 'include' });
       if (!response.ok) throw new Error('Ошибка загрузки данных');
       
       const data = await response.json();
@@ -65,6 +65,7 @@ const AccountSettings = () => {
       setSuccess('');
       
       const response = await fetch('http://localhost:8080/api/account/update', {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify(accountForm)
@@ -107,6 +108,7 @@ const AccountSettings = () => {
       setSuccess('');
       
       const response = await fetch('http://localhost:8080/api/account/password', {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify(passwordForm)
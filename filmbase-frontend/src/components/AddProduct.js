@@ -29,7 +29,7 @@ const AddProduct = () => {
 
   const fetchCategories = async () => {
     try {
-      const response = await fetch('http://localhost:8080/api/categories');
+      const response = await fetch('http://localhost:8080/api/categories', { credentials: 'include' });
       const data = await response.json();
       setCategories(data);
     } catch (err) {
@@ -105,6 +105,7 @@ const AddProduct = () => {
       };
       
       const response = await fetch('http://localhost:8080/api/products/add', {
+        credentials: 'include',
         method: 'POST',
         headers: {
           'Content-Type': 'application/json',
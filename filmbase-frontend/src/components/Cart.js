@@ -43,7 +43,7 @@ const Cart = () => {
   const fetchCart = async () => {
     try {
       setLoading(true);
-      const response = await fetch('http://localhost:8080/api/cart');
+      const response = await fetch('http://localhost:8080/api/cart', { credentials: 'include' });
       if (!response.ok) throw new Error('Ошибка загрузки корзины');
       
       const data = await response.json();
@@ -67,6 +67,7 @@ const Cart = () => {
 
     try {
       const response = await fetch('http://localhost:8080/api/cart/update', {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify({ id: cartItem.id, quantity: newQuantity })
@@ -88,6 +89,7 @@ const Cart = () => {
   const handleDelete = async (cartItem) => {
     try {
       const response = await fetch('http://localhost:8080/api/cart/delete', {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify({ id: cartItem.id })
@@ -120,6 +122,7 @@ const Cart = () => {
 
     try {
       const response = await fetch('http://localhost:8080/api/orders/create', {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify({ deliveryAddress })
@@ -36,7 +36,7 @@ const HomePage = () => {
 
   const checkUser = async () => {
     try {
-      const response = await fetch('http://localhost:8080/api/current-user');
+      const response = await fetch('http://localhost:8080/api/current-user', { credentials: 'include' });
       const role = await response.text();
       setUserRole(role);
     } catch (error) {
@@ -46,7 +46,7 @@ const HomePage = () => {
 
   const fetchProducts = async () => {
     try {
-      const response = await fetch('http://localhost:8080/api/products');
+      const response = await fetch('http://localhost:8080/api/products', { credentials: 'include' });
       const data = await response.json();
       // Берем только 4 товара для главной страницы
       setProducts(data.slice(0, 4));
@@ -28,7 +28,7 @@ const Orders = () => {
   const fetchOrders = async () => {
     try {
       setLoading(true);
-      const response = await fetch('http://localhost:8080/api/orders');
+      const response = await fetch('http://localhost:8080/api/orders', { credentials: 'include' });
       if (!response.ok) throw new Error('Ошибка загрузки заказов');
       
       const data = await response.json();
@@ -46,7 +46,7 @@ const Orders = () => {
     }
 
     try {
-      const response = await fetch(`http://localhost:8080/api/orders/${orderId}/items`);
+      const response = await fetch(`http://localhost:8080/api/orders/${orderId}/items`, { credentials: 'include' });
       if (!response.ok) throw new Error('Ошибка загрузки позиций заказа');
       
       const data = await response.json();
@@ -63,6 +63,7 @@ const Orders = () => {
 
     try {
       const response = await fetch(`http://localhost:8080/api/orders/${order.id}/cancel`, {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' }
       });
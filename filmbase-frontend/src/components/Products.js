@@ -62,7 +62,7 @@ const Products = () => {
 
   const checkUser = async () => {
     try {
-      const response = await fetch('http://localhost:8080/api/current-user');
+      const response = await fetch('http://localhost:8080/api/current-user', { credentials: 'include' });
       const role = await response.text();
       setUserRole(role);
     } catch (error) {
@@ -72,7 +72,7 @@ const Products = () => {
 
   const fetchCategories = async () => {
     try {
-      const response = await fetch('http://localhost:8080/api/categories');
+      const response = await fetch('http://localhost:8080/api/categories', { credentials: 'include' });
       const data = await response.json();
       setCategories(data);
     } catch (err) {
@@ -83,7 +83,7 @@ const Products = () => {
   const fetchProducts = async () => {
     try {
       setLoading(true);
-      const response = await fetch('http://localhost:8080/api/products');
+      const response = await fetch('http://localhost:8080/api/products', { credentials: 'include' });
       if (!response.ok) throw new Error('Ошибка загрузки товаров');
       
       const data = await response.json();
@@ -121,6 +121,7 @@ const Products = () => {
     
     try {
       const response = await fetch('http://localhost:8080/api/products/search', {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify({ name: searchTerm })
@@ -146,6 +147,7 @@ const Products = () => {
     
     try {
       const response = await fetch('http://localhost:8080/api/cart/add', {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify({ productId: product.id, quantity })
@@ -194,6 +196,7 @@ const Products = () => {
       };
       
       const response = await fetch('http://localhost:8080/api/products/edit', {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify(productData)
@@ -219,6 +222,7 @@ const Products = () => {
     
     try {
       const response = await fetch('http://localhost:8080/api/products/delete', {
+        credentials: 'include',
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify({ id: product.id })
@@ -30,6 +30,7 @@ const SignIn = () => {
 
     try {
       const response = await fetch('http://localhost:8080/api/login', {
+        credentials: 'include',
         method: 'POST',
         headers: {
           'Content-Type': 'application/json',
@@ -71,6 +71,7 @@ const SignUp = () => {
       };
       
       const response = await fetch('http://localhost:8080/api/register', {
+        credentials: 'include',
         method: 'POST',
         headers: {
           'Content-Type': 'application/json',
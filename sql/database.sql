@@ -35,8 +35,9 @@ CREATE TABLE IF NOT EXISTS cart_item (
 );
 
 
+-- id заказов и позиций выдает приложение из последовательностей ниже, без SERIAL
 CREATE TABLE IF NOT EXISTS orders (
-    id SERIAL PRIMARY KEY,
+    id INT PRIMARY KEY,
     user_id INT NOT NULL,
     order_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     status VARCHAR(50) NOT NULL DEFAULT 'В обработке',
@@ -47,7 +48,7 @@ CREATE TABLE IF NOT EXISTS orders (
 
 
 CREATE TABLE IF NOT EXISTS order_item (
-    id SERIAL PRIMARY KEY,
+    id INT PRIMARY KEY,
     order_id INT NOT NULL,
     product_id INT NOT NULL,
     quantity INT NOT NULL,
@@ -57,6 +58,56 @@ CREATE TABLE IF NOT EXISTS order_item (
 );
 
 
+-- Outbox: события Kafka пишутся в одной транзакции с изменением данных,
+-- фоновый ретранслятор отправляет их пачками и проставляет published_at;
+-- claimed_until - аренда строки проходом ретранслятора на время отправки
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id BIGSERIAL PRIMARY KEY,
+    topic VARCHAR(255) NOT NULL,
+    message_key VARCHAR(255),
+    payload_type VARCHAR(255) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    published_at TIMESTAMP,
+    claimed_until TIMESTAMP
+);
+ALTER TABLE outbox_event ADD COLUMN IF NOT EXISTS claimed_until TIMESTAMP;
+
+-- Витрины продаж по дням, категориям и товарам. Обновляются потребителем событий заказов
+-- и пересобираются из orders (SalesRollupService); category_id = 0 - товар без категории
+CREATE TABLE IF NOT EXISTS sales_daily (
+    day DATE PRIMARY KEY,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    units INT NOT NULL DEFAULT 0,
+    orders INT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS sales_daily_category (
+    day DATE NOT NULL,
+    category_id INT NOT NULL,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    units INT NOT NULL DEFAULT 0,
+    orders INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, category_id)
+);
+
+CREATE TABLE IF NOT EXISTS sales_daily_product (
+    day DATE NOT NULL,
+    product_id INT NOT NULL,
+    category_id INT NOT NULL,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    units INT NOT NULL DEFAULT 0,
+    orders INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, product_id)
+);
+
+-- Учтенные в витринах события заказов: повторная доставка из Kafka пропускается
+CREATE TABLE IF NOT EXISTS sales_applied_event (
+    order_id INT NOT NULL,
+    event_type VARCHAR(20) NOT NULL,
+    PRIMARY KEY (order_id, event_type)
+);
+
 CREATE INDEX IF NOT EXISTS idx_product_category ON product(category_id);
 CREATE INDEX IF NOT EXISTS idx_cart_item_user ON cart_item(user_id);
 CREATE INDEX IF NOT EXISTS idx_cart_item_product ON cart_item(product_id);
@@ -64,6 +115,28 @@ CREATE INDEX IF NOT EXISTS idx_orders_user ON orders(user_id);
 CREATE INDEX IF NOT EXISTS idx_orders_date ON orders(order_date);
 CREATE INDEX IF NOT EXISTS idx_order_item_order ON order_item(order_id);
 
+-- Идентификаторы заказов выдаются приложению пулами по 50 (allocationSize в сущностях).
+-- У столбцов id нет значения по умолчанию: вставка в обход приложения (скрипты, начальные данные)
+-- должна явно взять id из nextval('orders_id_seq') / nextval('order_item_id_seq') - каждый вызов
+-- занимает целый пул из 50 номеров; вставка без id падает, а не сдвигает нумерацию незаметно.
+-- Для баз, созданных с SERIAL, последовательности уже есть и умолчание снимается здесь.
+CREATE SEQUENCE IF NOT EXISTS orders_id_seq INCREMENT BY 50 OWNED BY orders.id;
+CREATE SEQUENCE IF NOT EXISTS order_item_id_seq INCREMENT BY 50 OWNED BY order_item.id;
+ALTER SEQUENCE orders_id_seq INCREMENT BY 50;
+ALTER SEQUENCE order_item_id_seq INCREMENT BY 50;
+ALTER TABLE orders ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE order_item ALTER COLUMN id DROP DEFAULT;
+
+-- Неотправленные события outbox в порядке записи; отправленные удаляются по published_at
+CREATE INDEX IF NOT EXISTS idx_outbox_event_pending ON outbox_event(id) WHERE published_at IS NULL;
+CREATE INDEX IF NOT EXISTS idx_outbox_event_published ON outbox_event(published_at);
+-- Более ранние неотправленные события того же ключа - для сохранения порядка по ключу
+CREATE INDEX IF NOT EXISTS idx_outbox_event_pending_key ON outbox_event(message_key, id) WHERE published_at IS NULL;
+
+-- Индексы для постраничной выборки по ключу (keyset)
+CREATE INDEX IF NOT EXISTS idx_product_category_id ON product(category_id, id);
+CREATE INDEX IF NOT EXISTS idx_orders_user_date_id ON orders(user_id, order_date DESC, id DESC);
+
 
 INSERT INTO "user" (login, password, email, full_name) 
 VALUES ('admin', 'admin', 'admin@shop.com', 'Администратор')